@@ -55,6 +55,19 @@ public class AzureCosmosDBNoSQLLangchainDemo {
     private final static String EMBEDDINGS_MODEL_DEPLOYMENT = System.getenv("AZURE_OPENAI_EMBEDDINGDEPLOYMENTID");
     private final static String COSMOSDB_ENDPOINT = System.getenv("COSMOSDB_ENDPOINT");
     private final static String COSMOSDB_KEY = System.getenv("COSMOSDB_KEY");
+    // float32 or float16; the embedding store writes float values, so the integer types cannot be used here
+    private final static String COSMOSDB_VECTOR_DATA_TYPE =
+            Objects.requireNonNullElse(System.getenv("COSMOSDB_VECTOR_DATA_TYPE"), "float32");
+    // cosine, dotProduct or euclidean
+    private final static String COSMOSDB_VECTOR_DISTANCE_FUNCTION =
+            Objects.requireNonNullElse(System.getenv("COSMOSDB_VECTOR_DISTANCE_FUNCTION"), "cosine");
+    // flat (up to 505 dimensions), quantizedFlat or diskANN
+    private final static String COSMOSDB_VECTOR_INDEX_TYPE =
+            Objects.requireNonNullElse(System.getenv("COSMOSDB_VECTOR_INDEX_TYPE"), "diskANN");
+    // bytes per quantized vector in a quantizedFlat or diskANN index; unset lets the service choose
+    private final static String COSMOSDB_VECTOR_QUANTIZATION_BYTES = System.getenv("COSMOSDB_VECTOR_QUANTIZATION_BYTES");
+    // candidates considered while building a diskANN index (25 to 500); unset lets the service choose
+    private final static String COSMOSDB_VECTOR_INDEXING_SEARCH_LIST_SIZE = System.getenv("COSMOSDB_VECTOR_INDEXING_SEARCH_LIST_SIZE");
     private final static String COSMOSDB_DATABASE = "langchain_java-db";
     private final static String COSMOSDB_COLLECTION = "langchain_java-coll";
 
@@ -155,6 +168,11 @@ public class AzureCosmosDBNoSQLLangchainDemo {
         System.out.println("Azure Open AI Embedding Model initialized");
         List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
         System.out.println("Document chunks are embedded");
+        // the container is sized for the vectors the embedding model actually returns (1536 for ada-002)
+        int dimensions = embeddings.get(0).dimension();
+        if (embeddings.stream().anyMatch(e -> e.dimension() != dimensions)) {
+            throw new IllegalStateException("The embedding model returned vectors of different dimensions");
+        }
 
         CosmosContainerProperties collectionDefinition = new CosmosContainerProperties(COSMOSDB_COLLECTION, "/id");
 
@@ -164,9 +182,9 @@ public class AzureCosmosDBNoSQLLangchainDemo {
         CosmosVectorEmbeddingPolicy cosmosVectorEmbeddingPolicy = new CosmosVectorEmbeddingPolicy();
         CosmosVectorEmbedding embedding = new CosmosVectorEmbedding();
         embedding.setPath("/embedding");
-        embedding.setDataType(CosmosVectorDataType.FLOAT32);
-        embedding.setDimensions(8L);
-        embedding.setDistanceFunction(CosmosVectorDistanceFunction.COSINE);
+        embedding.setDataType(vectorDataType(COSMOSDB_VECTOR_DATA_TYPE));
+        embedding.setEmbeddingDimensions(dimensions);
+        embedding.setDistanceFunction(parse(CosmosVectorDistanceFunction.class, COSMOSDB_VECTOR_DISTANCE_FUNCTION));
         cosmosVectorEmbeddingPolicy.setCosmosVectorEmbeddings(Arrays.asList(embedding));
         collectionDefinition.setVectorEmbeddingPolicy(cosmosVectorEmbeddingPolicy);
 
@@ -180,7 +198,14 @@ public class AzureCosmosDBNoSQLLangchainDemo {
         indexingPolicy.setIncludedPaths(ImmutableList.of(includedPath1, includedPath2));
         CosmosVectorIndexSpec cosmosVectorIndexSpec = new CosmosVectorIndexSpec();
         cosmosVectorIndexSpec.setPath("/embedding");
-        cosmosVectorIndexSpec.setType(CosmosVectorIndexType.DISK_ANN.toString());
+        CosmosVectorIndexType indexType = parse(CosmosVectorIndexType.class, COSMOSDB_VECTOR_INDEX_TYPE);
+        cosmosVectorIndexSpec.setType(indexType.toString());
+        if (indexType != CosmosVectorIndexType.FLAT && COSMOSDB_VECTOR_QUANTIZATION_BYTES != null) {
+            cosmosVectorIndexSpec.setQuantizationSizeInBytes(Integer.parseInt(COSMOSDB_VECTOR_QUANTIZATION_BYTES));
+        }
+        if (indexType == CosmosVectorIndexType.DISK_ANN && COSMOSDB_VECTOR_INDEXING_SEARCH_LIST_SIZE != null) {
+            cosmosVectorIndexSpec.setIndexingSearchListSize(Integer.parseInt(COSMOSDB_VECTOR_INDEXING_SEARCH_LIST_SIZE));
+        }
         indexingPolicy.setVectorIndexes(Arrays.asList(cosmosVectorIndexSpec));
         collectionDefinition.setIndexingPolicy(indexingPolicy);
 
@@ -199,6 +224,8 @@ public class AzureCosmosDBNoSQLLangchainDemo {
                 .build();
 
         System.out.println("Azure CosmosDB NoSQL API Embedding Store initialized");
+        // the policies of an existing container are kept as they are, so check they fit the vectors we are adding
+        validateVectorPolicy(embedding, cosmosVectorIndexSpec);
         embeddingStore.addAll(embeddings, segments);
         System.out.println("Vector embeddings and the chunked documents added to the embedding store");
 
@@ -325,4 +352,41 @@ public class AzureCosmosDBNoSQLLangchainDemo {
         String answer(@V("message") String query);
     }
 
+    private static CosmosVectorDataType vectorDataType(String value) {
+        if (CosmosVectorDataType.FLOAT32.toString().equalsIgnoreCase(value)) {
+            return CosmosVectorDataType.FLOAT32;
+        }
+        if (CosmosVectorDataType.FLOAT16.toString().equalsIgnoreCase(value)) {
+            return CosmosVectorDataType.FLOAT16;
+        }
+        throw new IllegalArgumentException("Unsupported vector data type: " + value);
+    }
+
+    private static void validateVectorPolicy(CosmosVectorEmbedding embedding, CosmosVectorIndexSpec indexSpec) {
+        CosmosContainerProperties existing = cosmosClient.getDatabase(COSMOSDB_DATABASE)
+                .getContainer(COSMOSDB_COLLECTION).read().getProperties();
+        CosmosVectorEmbedding existingEmbedding = existing.getVectorEmbeddingPolicy() == null ? null
+                : existing.getVectorEmbeddingPolicy().getVectorEmbeddings().stream()
+                .filter(e -> embedding.getPath().equals(e.getPath())).findFirst().orElse(null);
+        CosmosVectorIndexSpec existingIndex = existing.getIndexingPolicy().getVectorIndexes() == null ? null
+                : existing.getIndexingPolicy().getVectorIndexes().stream()
+                .filter(i -> indexSpec.getPath().equals(i.getPath())).findFirst().orElse(null);
+        if (existingEmbedding == null || existingIndex == null
+                || !Objects.equals(existingEmbedding.getEmbeddingDimensions(), embedding.getEmbeddingDimensions())
+                || existingEmbedding.getDataType() != embedding.getDataType()
+                || existingEmbedding.getDistanceFunction() != embedding.getDistanceFunction()
+                || !indexSpec.getType().equalsIgnoreCase(existingIndex.getType())) {
+            throw new IllegalStateException("Container " + COSMOSDB_COLLECTION + " was created with another vector "
+                    + "policy than " + embedding.getEmbeddingDimensions() + " " + embedding.getDataType() + " "
+                    + embedding.getDistanceFunction() + " " + indexSpec.getType() + "; delete it or change the settings");
+        }
+    }
+
+    // accepts the service name (diskANN) or the Java name (DISK_ANN) of a Cosmos DB enum constant
+    private static <T extends Enum<T>> T parse(Class<T> type, String value) {
+        return Arrays.stream(type.getEnumConstants())
+                .filter(constant -> constant.toString().equalsIgnoreCase(value) || constant.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown " + type.getSimpleName() + ": " + value));
+    }
 }
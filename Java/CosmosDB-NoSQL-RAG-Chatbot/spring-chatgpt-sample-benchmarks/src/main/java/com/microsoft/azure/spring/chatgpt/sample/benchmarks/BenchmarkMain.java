@@ -0,0 +1,28 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs JMH with its usual command line, but writes the results as JSON by default so that runs can be compared: to
+ * {@code jmh-result.json}, or the file given with {@code -rff}. {@code -rf} still picks another format.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var arguments = new ArrayList<>(List.of(args));
+        if (!hasOption(arguments, "-rf")) {
+            arguments.addAll(0, List.of("-rf", "json"));
+        }
+        Main.main(arguments.toArray(String[]::new));
+    }
+
+    private static boolean hasOption(List<String> arguments, String option) {
+        return arguments.stream().anyMatch(argument -> argument.equals(option) || argument.startsWith(option + "="));
+    }
+}
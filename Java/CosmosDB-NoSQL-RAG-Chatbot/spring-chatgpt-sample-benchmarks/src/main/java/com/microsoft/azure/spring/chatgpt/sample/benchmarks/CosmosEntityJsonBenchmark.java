@@ -0,0 +1,75 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import com.azure.cosmos.models.CosmosVectorDataType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorQuantizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a {@link CosmosEntity} to JSON and back, as done for every document written to or read
+ * from the container, with its embedding stored as each vector data type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CosmosEntityJsonBenchmark {
+
+    @Param({"1536"})
+    public int dimensions;
+
+    @Param({"FLOAT32", "INT8"})
+    public CosmosVectorDataType dataType;
+
+    private ObjectMapper mapper;
+
+    private CosmosEntity entity;
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper();
+        var random = new Random(42);
+        var embedding = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            embedding[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        var quantizer = VectorQuantizer.forDataType(dataType);
+        entity = new CosmosEntity("f4c1b2d0-5b1e-4f3a-9c8e-1a2b3c4d5e6f", "9e107d9d372bb6826bd81d3542a419d6",
+                SampleText.generate(1600, 42), "docs/partitioning.pdf", quantizer.quantize(embedding));
+        json = mapper.writeValueAsBytes(entity);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(entity);
+    }
+
+    @Benchmark
+    public CosmosEntity deserialize() throws IOException {
+        return mapper.readValue(json, CosmosEntity.class);
+    }
+
+    @Benchmark
+    public CosmosEntity roundTrip() throws IOException {
+        return mapper.readValue(mapper.writeValueAsBytes(entity), CosmosEntity.class);
+    }
+}
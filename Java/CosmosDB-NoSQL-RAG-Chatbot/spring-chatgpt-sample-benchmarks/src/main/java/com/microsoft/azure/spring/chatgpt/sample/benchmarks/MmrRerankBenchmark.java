@@ -0,0 +1,70 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.rerank.MmrReranker;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MmrReranker} picking the chunks of a prompt from over-fetched search results, the time reranking adds to a
+ * chat request in place of another service call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MmrRerankBenchmark {
+
+    private static final int DIMENSIONS = 1536;
+
+    private static final int K = 5;
+
+    @Param({"20", "50"})
+    public int candidates;
+
+    private MmrReranker reranker;
+
+    private float[] query;
+
+    private List<CosmosEntity> results;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        reranker = new MmrReranker(candidates, 0.7, 0.95);
+        query = vector(random);
+        results = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            results.add(new CosmosEntity("id-" + i, "hash-" + i, "text", "source", vector(random)));
+        }
+    }
+
+    private static float[] vector(Random random) {
+        var vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        return vector;
+    }
+
+    @Benchmark
+    public List<CosmosEntity> rerank() {
+        return reranker.rerank(query, results, K);
+    }
+}
@@ -0,0 +1,91 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import com.azure.ai.openai.models.ChatMessage;
+import com.azure.ai.openai.models.ChatRole;
+import com.microsoft.azure.spring.chatgpt.sample.common.TextSplitter;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.ContextAssembler;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.PromptProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.PromptTemplate;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PromptTemplate#formatWithContext} with as many retrieved chunks as a chat request puts in the prompt, each
+ * about as long as {@code TextSplitter} makes them, and {@link ContextAssembler} fitting the same chunks in the token
+ * budget, with the token counts stored at ingestion and without.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptTemplateBenchmark {
+
+    private static final int CHUNK_LENGTH = 1600;
+
+    @Param({"1", "5", "20"})
+    public int chunks;
+
+    private List<String> context;
+
+    private String question;
+
+    private ContextAssembler assembler;
+
+    private List<ChatMessage> messages;
+
+    private List<CosmosEntity> counted;
+
+    private List<CosmosEntity> uncounted;
+
+    @Setup
+    public void setUp() {
+        context = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            context.add(SampleText.generate(CHUNK_LENGTH, i));
+        }
+        question = "How do I choose a partition key for a container that stores vector embeddings?";
+
+        var splitter = new TextSplitter();
+        assembler = new ContextAssembler(splitter::countTokens, new PromptProperties());
+        messages = List.of(new ChatMessage(ChatRole.SYSTEM).setContent("You are a helpful assistant."),
+                new ChatMessage(ChatRole.USER).setContent(question));
+        counted = new ArrayList<>(chunks);
+        uncounted = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            String text = context.get(i);
+            counted.add(new CosmosEntity("id-" + i, "hash-" + i, text, "source", splitter.countTokens(text), null));
+            uncounted.add(new CosmosEntity("id-" + i, "hash-" + i, text, "source", null));
+        }
+    }
+
+    @Benchmark
+    public String formatWithContext() {
+        return PromptTemplate.formatWithContext(context, question);
+    }
+
+    @Benchmark
+    public List<ChatMessage> withContext() {
+        return assembler.withContext(messages, counted, question);
+    }
+
+    @Benchmark
+    public List<ChatMessage> withContextUncounted() {
+        return assembler.withContext(messages, uncounted, question);
+    }
+}
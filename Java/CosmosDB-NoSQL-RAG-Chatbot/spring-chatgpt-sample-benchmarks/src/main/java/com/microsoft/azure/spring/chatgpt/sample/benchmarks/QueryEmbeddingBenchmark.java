@@ -0,0 +1,96 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import com.azure.cosmos.models.CosmosVectorDataType;
+import com.microsoft.azure.spring.chatgpt.sample.common.AzureOpenAIClient;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosDBVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorQuantizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The conversions around a vector search: the query embedding from the {@code List<Double>} the OpenAI client
+ * returns to a {@code float[]}, quantized to the container's data type as the query parameter of
+ * {@link CosmosDBVectorStore#searchTopKNearest}, and the embeddings of the results dequantized when they are read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryEmbeddingBenchmark {
+
+    @Param({"1536", "3072"})
+    public int dimensions;
+
+    @Param({"FLOAT32", "FLOAT16", "INT8"})
+    public CosmosVectorDataType dataType;
+
+    @Param({"10"})
+    public int k;
+
+    private List<Double> response;
+
+    private float[] embedding;
+
+    private VectorQuantizer quantizer;
+
+    private List<float[]> results;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        response = new ArrayList<>(dimensions);
+        for (int i = 0; i < dimensions; i++) {
+            response.add(random.nextGaussian() * 0.05);
+        }
+        embedding = AzureOpenAIClient.toFloats(response);
+        quantizer = VectorQuantizer.forDataType(dataType);
+        results = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            var result = new float[dimensions];
+            for (int j = 0; j < dimensions; j++) {
+                result[j] = (float) random.nextGaussian() * 0.05f;
+            }
+            results.add(quantizer.quantize(result));
+        }
+    }
+
+    @Benchmark
+    public float[] toFloats() {
+        return AzureOpenAIClient.toFloats(response);
+    }
+
+    @Benchmark
+    public float[] quantize() {
+        return quantizer.quantize(embedding);
+    }
+
+    @Benchmark
+    public void dequantizeResults(Blackhole blackhole) {
+        for (var result : results) {
+            blackhole.consume(quantizer.dequantize(result));
+        }
+    }
+
+    // from the client's response to the query parameter
+    @Benchmark
+    public float[] query() {
+        return quantizer.quantize(AzureOpenAIClient.toFloats(response));
+    }
+}
@@ -0,0 +1,44 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generated English-like prose, the same for the same seed, so benchmarks don't depend on files on disk.
+ */
+final class SampleText {
+
+    private static final String[] WORDS = {
+            "the", "a", "of", "and", "to", "in", "is", "for", "that", "with", "on", "as", "by", "it", "are", "from",
+            "Azure", "Cosmos", "database", "container", "document", "vector", "index", "search", "query", "partition",
+            "throughput", "request", "unit", "latency", "consistency", "replica", "region", "account", "embedding",
+            "model", "token", "prompt", "context", "answer", "question", "application", "service", "storage",
+            "configure", "deploy", "scale", "read", "write", "returns", "supports", "provides", "multiple", "global",
+    };
+
+    private static final char[] ENDINGS = {'.', '.', '.', '?', '!'};
+
+    private SampleText() {
+    }
+
+    /**
+     * About {@code length} characters of sentences, with a paragraph break every few sentences.
+     */
+    static String generate(int length, long seed) {
+        var random = new Random(seed);
+        var text = new StringBuilder(length + 200);
+        while (text.length() < length) {
+            int words = 8 + random.nextInt(20);
+            for (int i = 0; i < words; i++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                if (i == 0) {
+                    text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                } else {
+                    text.append(' ').append(word);
+                }
+            }
+            text.append(ENDINGS[random.nextInt(ENDINGS.length)]);
+            text.append(random.nextInt(5) == 0 ? "\n\n" : " ");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.TextSplitter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TextSplitter#split(String)} on a paragraph that fits in one chunk, a page, and a long document of a few
+ * hundred chunks, as when indexing, and {@link TextSplitter#splitParallel(String, int)} in segments of
+ * {@value #SEGMENT_SIZE} characters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextSplitterBenchmark {
+
+    private static final int SEGMENT_SIZE = 100_000;
+
+    // characters
+    @Param({"1000", "20000", "500000"})
+    public int length;
+
+    private TextSplitter splitter;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        splitter = new TextSplitter();
+        text = SampleText.generate(length, 42);
+        // loads the encoding, which the first split would otherwise do
+        splitter.countTokens(text);
+    }
+
+    @Benchmark
+    public List<String> split() {
+        return splitter.split(text);
+    }
+
+    @Benchmark
+    public List<String> splitParallel() {
+        return splitter.splitParallel(text, SEGMENT_SIZE);
+    }
+
+    @Benchmark
+    public int countTokens() {
+        return splitter.countTokens(text);
+    }
+}
@@ -0,0 +1,175 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VectorMath} with the Vector API against the naive loops it replaces: one pair of vectors, and one query
+ * against a corpus for top-K. {@link VectorMathScalarBenchmark} runs the same benchmarks on its scalar fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorMathBenchmark {
+
+    private static final int K = 10;
+
+    @Param({"384", "1536", "3072"})
+    public int dimensions;
+
+    @Param({"10000"})
+    public int corpusSize;
+
+    private float[] a;
+
+    private float[] b;
+
+    private byte[] a8;
+
+    private byte[] b8;
+
+    private List<float[]> corpus;
+
+    private float[] matrix;
+
+    @Setup
+    public void setUp() {
+        if (this instanceof VectorMathScalarBenchmark == VectorMath.isAccelerated()) {
+            throw new IllegalStateException("Vector API " + (VectorMath.isAccelerated() ? "in use" : "unavailable")
+                    + " in " + getClass().getSimpleName());
+        }
+        var random = new Random(42);
+        a = randomVector(random);
+        b = randomVector(random);
+        a8 = new byte[dimensions];
+        b8 = new byte[dimensions];
+        random.nextBytes(a8);
+        random.nextBytes(b8);
+        corpus = new ArrayList<>(corpusSize);
+        matrix = new float[corpusSize * dimensions];
+        for (int i = 0; i < corpusSize; i++) {
+            var vector = randomVector(random);
+            corpus.add(vector);
+            System.arraycopy(vector, 0, matrix, i * dimensions, dimensions);
+        }
+    }
+
+    private float[] randomVector(Random random) {
+        var vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    @Benchmark
+    public float dot() {
+        return VectorMath.dot(a, b);
+    }
+
+    @Benchmark
+    public float dotNaive() {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float cosine() {
+        return VectorMath.cosine(a, b);
+    }
+
+    @Benchmark
+    public double cosineNaive() {
+        double dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    @Benchmark
+    public float l2Squared() {
+        return VectorMath.l2Squared(a, b);
+    }
+
+    @Benchmark
+    public float l2SquaredNaive() {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            float d = a[i] - b[i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int dotInt8() {
+        return VectorMath.dot(a8, b8);
+    }
+
+    @Benchmark
+    public int dotInt8Naive() {
+        int sum = 0;
+        for (int i = 0; i < a8.length; i++) {
+            sum += a8[i] * b8[i];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<VectorMath.Match> topK() {
+        return VectorMath.topK(a, matrix, corpusSize, K, VectorMath.Metric.DOT_PRODUCT);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<VectorMath.Match> topKList() {
+        return VectorMath.topK(a, corpus, K, VectorMath.Metric.DOT_PRODUCT);
+    }
+
+    // score everything, sort, take the first k
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] topKNaive() {
+        var scored = new double[corpusSize][];
+        for (int i = 0; i < corpusSize; i++) {
+            var vector = corpus.get(i);
+            double sum = 0;
+            for (int j = 0; j < dimensions; j++) {
+                sum += a[j] * vector[j];
+            }
+            scored[i] = new double[]{sum, i};
+        }
+        Arrays.sort(scored, (x, y) -> Double.compare(y[0], x[0]));
+        var top = new int[K];
+        for (int i = 0; i < K; i++) {
+            top[i] = (int) scored[i][1];
+        }
+        return top;
+    }
+}
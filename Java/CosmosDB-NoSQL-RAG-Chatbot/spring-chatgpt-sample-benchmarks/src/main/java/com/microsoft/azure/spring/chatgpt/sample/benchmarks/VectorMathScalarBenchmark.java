@@ -0,0 +1,10 @@
+package com.microsoft.azure.spring.chatgpt.sample.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+
+/**
+ * {@link VectorMathBenchmark} on the scalar fallback, as on a JVM started without the Vector API module.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dvector-math.scalar=true")
+public class VectorMathScalarBenchmark extends VectorMathBenchmark {
+}
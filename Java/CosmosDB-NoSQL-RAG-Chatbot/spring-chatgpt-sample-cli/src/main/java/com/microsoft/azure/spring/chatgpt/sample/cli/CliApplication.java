@@ -1,33 +1,113 @@
 package com.microsoft.azure.spring.chatgpt.sample.cli;
 
 import com.microsoft.azure.spring.chatgpt.sample.common.DocumentIndexPlanner;
+import com.microsoft.azure.spring.chatgpt.sample.common.snapshot.VectorSnapshot;
+import com.microsoft.azure.spring.chatgpt.sample.common.snapshot.VectorSnapshotWriter;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosDBVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.QuantizationRecall;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorQuantizer;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
 
 @SpringBootApplication
 public class CliApplication implements ApplicationRunner {
 
-	public CliApplication(DocumentIndexPlanner indexPlanner) {
+	private static final String DEFAULT_MANIFEST = "index-manifest.json";
+
+	public CliApplication(DocumentIndexPlanner indexPlanner, CosmosDBVectorStore vectorStore) {
 		this.indexPlanner = indexPlanner;
+		this.vectorStore = vectorStore;
 	}
 
 	private final DocumentIndexPlanner indexPlanner;
 
+	private final CosmosDBVectorStore vectorStore;
+
 	public static void main(String[] args) {
 		SpringApplication.run(CliApplication.class, args);
 	}
 
 	@Override
 	public void run(ApplicationArguments args) throws IOException {
+		var recallCheck = args.getOptionValues("recall-check");
+		if (recallCheck != null && recallCheck.size() == 1) {
+			checkRecall(recallCheck.get(0), intOption(args, "k", 5), intOption(args, "queries", 100));
+			return;
+		}
+		var exportSnapshot = args.getOptionValues("export-snapshot");
+		if (exportSnapshot != null && exportSnapshot.size() == 1) {
+			long count = vectorStore.exportSnapshot(Path.of(exportSnapshot.get(0)));
+			System.out.printf("Exported %d documents to %s%n", count, exportSnapshot.get(0));
+			return;
+		}
+		var convertSnapshot = args.getOptionValues("convert-snapshot");
+		if (convertSnapshot != null && convertSnapshot.size() == 1) {
+			var to = args.getOptionValues("to");
+			if (to == null || to.size() != 1) {
+				System.err.println("argument --to is required with --convert-snapshot.");
+				System.exit(-1);
+			}
+			convertSnapshot(Path.of(convertSnapshot.get(0)), Path.of(to.get(0)));
+			return;
+		}
 		var from = args.getOptionValues("from");
 		if (from == null || from.size() != 1) {
 			System.err.println("argument --from is required.");
 			System.exit(-1);
 		}
+		if (args.containsOption("watch")) {
+			var manifest = args.getOptionValues("manifest");
+			try {
+				indexPlanner.watchFolder(from.get(0),
+						Path.of(manifest == null || manifest.isEmpty() ? DEFAULT_MANIFEST : manifest.get(0)));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return;
+		}
 		indexPlanner.buildFromFolder(from.get(0));
 	}
+
+	/**
+	 * Converts a JSON vector store file to a binary snapshot, reading and writing one document at a time.
+	 */
+	private void convertSnapshot(Path json, Path snapshot) throws IOException {
+		long count;
+		try (var documents = VectorSnapshot.documents(json)) {
+			count = VectorSnapshotWriter.write(snapshot, documents);
+		}
+		System.out.printf("Converted %d documents from %s to %s%n", count, json, snapshot);
+	}
+
+	/**
+	 * Prints the top-k recall of each quantized vector data type against float32 over the vectors of a vector store file,
+	 * JSON or a binary snapshot.
+	 */
+	private void checkRecall(String snapshotPath, int k, int queries) throws IOException {
+		List<float[]> vectors;
+		try (var documents = VectorSnapshot.documents(Path.of(snapshotPath))) {
+			vectors = documents.map(CosmosEntity::getEmbedding)
+					.filter(Objects::nonNull)
+					.toList();
+		}
+		var recall = new QuantizationRecall(vectors, queries, k, 42);
+		System.out.printf("Top-%d recall against float32 over %d vectors and %d queries:%n", k, vectors.size(),
+				Math.min(queries, vectors.size()));
+		for (var quantizer : List.of(VectorQuantizer.FLOAT16, VectorQuantizer.INT8, VectorQuantizer.UINT8)) {
+			System.out.printf("  %-8s %.4f%n", quantizer, recall.recall(quantizer));
+		}
+	}
+
+	private static int intOption(ApplicationArguments args, String name, int defaultValue) {
+		var values = args.getOptionValues(name);
+		return values == null || values.isEmpty() ? defaultValue : Integer.parseInt(values.get(0));
+	}
 }
@@ -8,6 +8,12 @@ import com.azure.spring.data.cosmos.config.AbstractCosmosConfiguration;
 import com.azure.spring.data.cosmos.repository.config.EnableCosmosRepositories;
 import com.microsoft.azure.spring.chatgpt.sample.common.AzureOpenAIClient;
 import com.microsoft.azure.spring.chatgpt.sample.common.DocumentIndexPlanner;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.EmbeddingCache;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.EmbeddingCacheProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.ingest.IngestionProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.ratelimit.AdaptiveRateLimiter;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.BulkWriteProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.VectorIndexProperties;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosDBVectorStore;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntityRepository;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosProperties;
@@ -19,9 +25,11 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 @Configuration
-@EnableConfigurationProperties(CosmosProperties.class)
+@EnableConfigurationProperties({CosmosProperties.class, IngestionProperties.class, BulkWriteProperties.class,
+        EmbeddingCacheProperties.class, VectorIndexProperties.class})
 @EnableCosmosRepositories(basePackages = "com.microsoft.azure.spring.chatgpt.sample.common.store")
 public class Config extends AbstractCosmosConfiguration {
 
@@ -37,9 +45,33 @@ public class Config extends AbstractCosmosConfiguration {
     @Value("${AZURE_OPENAI_APIKEY}")
     private String apiKey;
 
+    @Value("${embedding.tokens-per-minute:120000}")
+    private int embeddingTokensPerMinute;
+
+    @Value("${embedding.requests-per-minute:720}")
+    private int embeddingRequestsPerMinute;
+
+    @Value("${embedding.max-batch-tokens:8000}")
+    private int embeddingMaxBatchTokens;
+
+    @Value("${embedding.max-batch-size:16}")
+    private int embeddingMaxBatchSize;
+
     @Autowired
     private CosmosProperties properties;
 
+    @Autowired
+    private IngestionProperties ingestionProperties;
+
+    @Autowired
+    private BulkWriteProperties bulkWriteProperties;
+
+    @Autowired
+    private VectorIndexProperties vectorIndexProperties;
+
+    @Autowired
+    private EmbeddingCacheProperties embeddingCacheProperties;
+
     @Autowired
     private CosmosEntityRepository cosmosEntityRepository;
 
@@ -56,16 +88,26 @@ public class Config extends AbstractCosmosConfiguration {
 
     @Bean
     public DocumentIndexPlanner planner(AzureOpenAIClient openAIClient, CosmosDBVectorStore vectorStore) {
-        return new DocumentIndexPlanner(openAIClient, vectorStore);
+        var rateLimiter = new AdaptiveRateLimiter(embeddingTokensPerMinute, embeddingRequestsPerMinute);
+        return new DocumentIndexPlanner(openAIClient, vectorStore, rateLimiter,
+                embeddingMaxBatchTokens, embeddingMaxBatchSize, ingestionProperties);
     }
 
     @Bean
-    public AzureOpenAIClient AzureOpenAIClient() {
+    public AzureOpenAIClient AzureOpenAIClient() throws IOException {
         var innerClient = new OpenAIClientBuilder()
                 .endpoint(endpoint)
                 .credential(new AzureKeyCredential(apiKey))
                 .buildClient();
-        return new AzureOpenAIClient(innerClient, embeddingDeploymentId, null);
+        return new AzureOpenAIClient(innerClient, embeddingDeploymentId, null, embeddingCache());
+    }
+
+    private EmbeddingCache embeddingCache() throws IOException {
+        if (!embeddingCacheProperties.isEnabled()) {
+            return null;
+        }
+        return new EmbeddingCache(Paths.get(embeddingCacheProperties.getPath()),
+                embeddingCacheProperties.getMaxEntries(), embeddingCacheProperties.getMemoryEntries());
     }
 
     @Bean
@@ -80,7 +122,7 @@ public class Config extends AbstractCosmosConfiguration {
     @Bean
     public CosmosDBVectorStore vectorStore() {
         CosmosDBVectorStore store = new CosmosDBVectorStore(cosmosEntityRepository, properties.getContainerName(),
-                properties.getDatabaseName(), applicationContext);
+                properties.getDatabaseName(), applicationContext, bulkWriteProperties, vectorIndexProperties);
         return store;
     }
 }
@@ -0,0 +1,116 @@
+package com.microsoft.azure.spring.chatgpt.sample.common;
+
+import com.azure.ai.openai.OpenAIAsyncClient;
+import com.azure.ai.openai.models.ChatCompletions;
+import com.azure.ai.openai.models.ChatMessage;
+import com.azure.ai.openai.models.EmbeddingItem;
+import com.azure.ai.openai.models.EmbeddingsOptions;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.EmbeddingCache;
+import com.microsoft.azure.spring.chatgpt.sample.common.metrics.ChatMetrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.microsoft.azure.spring.chatgpt.sample.common.AzureOpenAIClient.EMBEDDING_MODEL;
+
+/**
+ * Non-blocking counterpart of {@link AzureOpenAIClient} on top of {@link OpenAIAsyncClient}. It uses the same models
+ * and options, and can share its {@link EmbeddingCache}.
+ */
+public class AsyncAzureOpenAIClient {
+
+    private final OpenAIAsyncClient client;
+
+    private final String embeddingDeploymentId;
+
+    private final String chatDeploymentId;
+
+    private final EmbeddingCache embeddingCache;
+
+    private final ChatMetrics metrics;
+
+    public AsyncAzureOpenAIClient(OpenAIAsyncClient client, String embeddingDeploymentId, String chatDeploymentId,
+                                  EmbeddingCache embeddingCache) {
+        this(client, embeddingDeploymentId, chatDeploymentId, embeddingCache, ChatMetrics.NONE);
+    }
+
+    public AsyncAzureOpenAIClient(OpenAIAsyncClient client, String embeddingDeploymentId, String chatDeploymentId,
+                                  EmbeddingCache embeddingCache, ChatMetrics metrics) {
+        this.client = client;
+        this.embeddingDeploymentId = embeddingDeploymentId;
+        this.chatDeploymentId = chatDeploymentId;
+        this.embeddingCache = embeddingCache;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns one embedding per text, in order. Texts found in the embedding cache are not sent to the service.
+     */
+    public Mono<List<float[]>> embed(List<String> texts) {
+        return Mono.defer(() -> {
+            var results = new ArrayList<float[]>(texts.size());
+            var missingIndexes = new ArrayList<Integer>();
+            var keys = new ArrayList<ByteBuffer>(texts.size());
+            for (int i = 0; i < texts.size(); i++) {
+                float[] cached = null;
+                if (embeddingCache != null) {
+                    var key = EmbeddingCache.key(embeddingDeploymentId, EMBEDDING_MODEL, texts.get(i));
+                    keys.add(key);
+                    cached = embeddingCache.get(key);
+                }
+                results.add(cached);
+                if (cached == null) {
+                    missingIndexes.add(i);
+                }
+            }
+            if (missingIndexes.isEmpty()) {
+                return Mono.just(results);
+            }
+
+            var missingTexts = missingIndexes.stream().map(texts::get).toList();
+            long start = System.nanoTime();
+            return client.getEmbeddings(embeddingDeploymentId, new EmbeddingsOptions(missingTexts).setModel(EMBEDDING_MODEL))
+                    .map(response -> {
+                        if (embeddingCache != null) {
+                            embeddingCache.recordRemoteCall(System.nanoTime() - start, missingTexts.size());
+                        }
+                        if (response.getUsage() != null) {
+                            metrics.recordEmbeddingTokens(response.getUsage().getPromptTokens());
+                        }
+                        var items = response.getData().stream()
+                                .sorted(Comparator.comparingInt(EmbeddingItem::getPromptIndex))
+                                .toList();
+                        for (int i = 0; i < items.size(); i++) {
+                            int index = missingIndexes.get(i);
+                            var embedding = AzureOpenAIClient.toFloats(items.get(i).getEmbedding());
+                            results.set(index, embedding);
+                            if (embeddingCache != null) {
+                                embeddingCache.put(keys.get(index), embedding);
+                            }
+                        }
+                        return results;
+                    });
+        });
+    }
+
+    public ChatMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Mono<ChatCompletions> getChatCompletions(List<ChatMessage> messages) {
+        return client.getChatCompletions(chatDeploymentId, AzureOpenAIClient.chatCompletionsOptions(messages))
+                .doOnNext(response -> AzureOpenAIClient.recordUsage(response, metrics));
+    }
+
+    /**
+     * Streams the chat completion as it is generated; each element carries the next content fragment in the delta of
+     * its choices.
+     */
+    public Flux<ChatCompletions> getChatCompletionsStream(List<ChatMessage> messages) {
+        return client.getChatCompletionsStream(chatDeploymentId, AzureOpenAIClient.chatCompletionsOptions(messages));
+    }
+}
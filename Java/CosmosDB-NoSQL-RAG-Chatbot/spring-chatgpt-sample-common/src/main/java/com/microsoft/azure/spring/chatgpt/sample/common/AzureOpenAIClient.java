@@ -4,44 +4,164 @@ import com.azure.ai.openai.OpenAIClient;
 import com.azure.ai.openai.models.ChatCompletions;
 import com.azure.ai.openai.models.ChatCompletionsOptions;
 import com.azure.ai.openai.models.ChatMessage;
+import com.azure.ai.openai.models.EmbeddingItem;
 import com.azure.ai.openai.models.Embeddings;
 import com.azure.ai.openai.models.EmbeddingsOptions;
+import com.azure.core.util.IterableStream;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.EmbeddingCache;
+import com.microsoft.azure.spring.chatgpt.sample.common.metrics.ChatMetrics;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 
-public class AzureOpenAIClient {
+public class AzureOpenAIClient implements AutoCloseable {
 
-    private static final String EMBEDDING_MODEL = "text-embedding-ada-002";
+    public static final String EMBEDDING_MODEL = "text-embedding-ada-002";
 
-    private static final String CHAT_COMPLETION_MODEL = "gpt-35-turbo";
+    static final String CHAT_COMPLETION_MODEL = "gpt-35-turbo";
 
     private static final double TEMPERATURE = 0.7;
 
     private final OpenAIClient client;
 
     public AzureOpenAIClient(OpenAIClient client, String embeddingDeploymentId, String chatDeploymentId) {
+        this(client, embeddingDeploymentId, chatDeploymentId, null);
+    }
+
+    public AzureOpenAIClient(OpenAIClient client, String embeddingDeploymentId, String chatDeploymentId,
+                             EmbeddingCache embeddingCache) {
+        this(client, embeddingDeploymentId, chatDeploymentId, embeddingCache, ChatMetrics.NONE);
+    }
+
+    public AzureOpenAIClient(OpenAIClient client, String embeddingDeploymentId, String chatDeploymentId,
+                             EmbeddingCache embeddingCache, ChatMetrics metrics) {
         this.client = client;
         this.embeddingDeploymentId = embeddingDeploymentId;
         this.chatDeploymentId = chatDeploymentId;
+        this.embeddingCache = embeddingCache;
+        this.metrics = metrics;
     }
 
     private final String embeddingDeploymentId;
 
     private final String chatDeploymentId;
 
+    private final EmbeddingCache embeddingCache;
+
+    private final ChatMetrics metrics;
+
     public Embeddings getEmbeddings(List<String> texts) {
+        long start = System.nanoTime();
         var response = client.getEmbeddings(embeddingDeploymentId,
                 new EmbeddingsOptions(texts).setModel(EMBEDDING_MODEL));
-        //log.info("Finished an embedding call with {} tokens.", response.getUsage().getTotalTokens());
+        if (embeddingCache != null) {
+            embeddingCache.recordRemoteCall(System.nanoTime() - start, texts.size());
+        }
+        if (response.getUsage() != null) {
+            metrics.recordEmbeddingTokens(response.getUsage().getPromptTokens());
+        }
         return response;
     }
 
+    public List<float[]> embed(List<String> texts) {
+        return embed(texts, missing -> {});
+    }
+
+    /**
+     * Returns one embedding per text, in order. Texts found in the embedding cache are not sent to the service;
+     * {@code beforeRemoteCall} receives the texts that are, right before the call, and is not invoked on a full hit.
+     */
+    public List<float[]> embed(List<String> texts, Consumer<List<String>> beforeRemoteCall) {
+        var results = new ArrayList<float[]>(texts.size());
+        var missingIndexes = new ArrayList<Integer>();
+        var keys = new ArrayList<ByteBuffer>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            float[] cached = null;
+            if (embeddingCache != null) {
+                var key = EmbeddingCache.key(embeddingDeploymentId, EMBEDDING_MODEL, texts.get(i));
+                keys.add(key);
+                cached = embeddingCache.get(key);
+            }
+            results.add(cached);
+            if (cached == null) {
+                missingIndexes.add(i);
+            }
+        }
+        if (missingIndexes.isEmpty()) {
+            return results;
+        }
+
+        var missingTexts = missingIndexes.stream().map(texts::get).toList();
+        beforeRemoteCall.accept(missingTexts);
+        var items = getEmbeddings(missingTexts).getData().stream()
+                .sorted(Comparator.comparingInt(EmbeddingItem::getPromptIndex))
+                .toList();
+        for (int i = 0; i < items.size(); i++) {
+            int index = missingIndexes.get(i);
+            var embedding = toFloats(items.get(i).getEmbedding());
+            results.set(index, embedding);
+            if (embeddingCache != null) {
+                embeddingCache.put(keys.get(index), embedding);
+            }
+        }
+        return results;
+    }
+
     public ChatCompletions getChatCompletions(List<ChatMessage> messages) {
-        var chatCompletionsOptions = new ChatCompletionsOptions(messages)
+        var response = client.getChatCompletions(chatDeploymentId, chatCompletionsOptions(messages));
+        recordUsage(response, metrics);
+        return response;
+    }
+
+    /**
+     * Streams the chat completion as it is generated; each element carries the next content fragment in the delta of
+     * its choices. The request is sent when the stream is first iterated.
+     */
+    public IterableStream<ChatCompletions> getChatCompletionsStream(List<ChatMessage> messages) {
+        return client.getChatCompletionsStream(chatDeploymentId, chatCompletionsOptions(messages));
+    }
+
+    // streamed completions carry no usage
+    static void recordUsage(ChatCompletions completions, ChatMetrics metrics) {
+        var usage = completions.getUsage();
+        if (usage != null) {
+            metrics.recordCompletionTokens(usage.getPromptTokens(), usage.getCompletionTokens());
+        }
+    }
+
+    static ChatCompletionsOptions chatCompletionsOptions(List<ChatMessage> messages) {
+        return new ChatCompletionsOptions(messages)
                 .setModel(CHAT_COMPLETION_MODEL)
                 .setTemperature(TEMPERATURE);
-        var response = client.getChatCompletions(chatDeploymentId, chatCompletionsOptions);
-        //log.info("Finished a chat completion call with {} tokens", response.getUsage().getTotalTokens());
-        return response;
+    }
+
+    public EmbeddingCache getEmbeddingCache() {
+        return embeddingCache;
+    }
+
+    public ChatMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embeddingCache != null) {
+            embeddingCache.close();
+        }
+    }
+
+    /**
+     * Converts an embedding as returned by the OpenAI client to the {@code float[]} the vector stores take.
+     */
+    public static float[] toFloats(List<Double> embedding) {
+        var result = new float[embedding.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = embedding.get(i).floatValue();
+        }
+        return result;
     }
 }
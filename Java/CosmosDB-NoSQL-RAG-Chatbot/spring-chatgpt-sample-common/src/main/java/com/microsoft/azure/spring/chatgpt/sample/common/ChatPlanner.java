@@ -1,27 +1,174 @@
 package com.microsoft.azure.spring.chatgpt.sample.common;
 
+import com.azure.ai.openai.models.ChatChoice;
 import com.azure.ai.openai.models.ChatCompletions;
 import com.azure.ai.openai.models.ChatMessage;
 import com.azure.ai.openai.models.ChatRole;
-import com.microsoft.azure.spring.chatgpt.sample.common.prompt.PromptTemplate;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.SemanticAnswerCache;
+import com.microsoft.azure.spring.chatgpt.sample.common.metrics.ChatMetrics;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.ContextAssembler;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.HistoryCompactor;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.HistoryProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.PromptProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.rerank.MmrReranker;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.VectorStore;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
 
+/**
+ * Answers chat requests from the chunks in the vector store, timing each step with the {@link ChatMetrics} of the
+ * client.
+ */
 public class ChatPlanner {
 
+    static final int TOP_K = 5;
+
+    static final double CUT_OFF = 0.4;
+
     private final AzureOpenAIClient client;
 
     public ChatPlanner(AzureOpenAIClient client, VectorStore store) {
+        this(client, store, null);
+    }
+
+    public ChatPlanner(AzureOpenAIClient client, VectorStore store, SemanticAnswerCache answerCache) {
+        this(client, store, answerCache, defaultContextAssembler());
+    }
+
+    private ChatPlanner(AzureOpenAIClient client, VectorStore store, SemanticAnswerCache answerCache,
+                        ContextAssembler contextAssembler) {
+        this(client, store, answerCache, contextAssembler, defaultHistoryCompactor(contextAssembler), null);
+    }
+
+    /**
+     * @param reranker reranks over-fetched search results, or null to use the top {@value #TOP_K} results as they are
+     */
+    public ChatPlanner(AzureOpenAIClient client, VectorStore store, SemanticAnswerCache answerCache,
+                       ContextAssembler contextAssembler, HistoryCompactor historyCompactor, MmrReranker reranker) {
         this.client = client;
         this.store = store;
+        this.answerCache = answerCache;
+        this.contextAssembler = contextAssembler;
+        this.historyCompactor = historyCompactor;
+        this.reranker = reranker;
+        this.metrics = client.getMetrics();
     }
 
     private final VectorStore store;
 
+    private final SemanticAnswerCache answerCache;
+
+    private final ContextAssembler contextAssembler;
+
+    private final HistoryCompactor historyCompactor;
+
+    private final MmrReranker reranker;
+
+    private final ChatMetrics metrics;
+
     public ChatCompletions chat(List<ChatMessage> messages) {
+        long start = System.nanoTime();
+        String outcome = ChatMetrics.ERROR;
+        try {
+            String question = getQuestion(messages);
+
+            // step 1. Convert the user's query text to an embedding
+            var embedding = metrics.time(ChatMetrics.EMBEDDING, () -> client.embed(List.of(question)).get(0));
+
+            // a cached answer only stands in for a fresh one when there is no conversation to take into account
+            boolean cacheable = answerCache != null && isFirstTurn(messages);
+            if (cacheable) {
+                var cached = metrics.time(ChatMetrics.CACHE, () -> answerCache.get(embedding));
+                if (cached != null) {
+                    outcome = ChatMetrics.CACHED;
+                    return cached;
+                }
+            }
+
+            // step 2. Query Top-K nearest text chunks from the vector store
+            var candidates = search(embedding);
+
+            // step 3. Populate the prompt template with the chunks that fit in the token budget, after the
+            // conversation is cut down to its own budget
+            var processedMessages = metrics.time(ChatMetrics.PROMPT, () -> prompt(messages, candidates, question));
+
+            // step 4. Call to OpenAI chat completion API
+            var answer = metrics.time(ChatMetrics.COMPLETION, () -> client.getChatCompletions(processedMessages));
+            if (cacheable) {
+                answerCache.put(embedding, candidates.stream().map(CosmosEntity::getId).toList(), answer);
+            }
+            outcome = ChatMetrics.ANSWERED;
+            return answer;
+        } finally {
+            metrics.recordRequest(false, outcome, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Same as {@link #chat}, but returns the answer as a stream of content fragments in the order they are generated.
+     * Retrieval runs before this method returns, so its failures reach the caller before anything is streamed.
+     * Streamed answers are served from the semantic answer cache but not added to it. The completion and the request
+     * are timed until the stream is closed.
+     */
+    public Stream<String> chatStream(List<ChatMessage> messages) {
+        long start = System.nanoTime();
+        try {
+            String question = getQuestion(messages);
+            var embedding = metrics.time(ChatMetrics.EMBEDDING, () -> client.embed(List.of(question)).get(0));
+
+            if (answerCache != null && isFirstTurn(messages)) {
+                var cached = metrics.time(ChatMetrics.CACHE, () -> answerCache.get(embedding));
+                if (cached != null) {
+                    metrics.recordRequest(true, ChatMetrics.CACHED, System.nanoTime() - start);
+                    return cached.getChoices().stream().limit(1)
+                            .map(choice -> choice.getMessage().getContent());
+                }
+            }
+
+            var candidates = search(embedding);
+            var processedMessages = metrics.time(ChatMetrics.PROMPT, () -> prompt(messages, candidates, question));
+            long completionStart = System.nanoTime();
+            return client.getChatCompletionsStream(processedMessages).stream()
+                    .flatMap(completions -> completions.getChoices().stream())
+                    .map(ChatChoice::getDelta)
+                    .filter(Objects::nonNull)
+                    .map(ChatMessage::getContent)
+                    .filter(Objects::nonNull)
+                    .onClose(() -> {
+                        long end = System.nanoTime();
+                        metrics.recordStage(ChatMetrics.COMPLETION, end - completionStart);
+                        metrics.recordRequest(true, ChatMetrics.ANSWERED, end - start);
+                    });
+        } catch (RuntimeException e) {
+            metrics.recordRequest(true, ChatMetrics.ERROR, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    private List<CosmosEntity> search(float[] embedding) {
+        if (reranker == null) {
+            var results = metrics.time(ChatMetrics.SEARCH, () -> store.searchTopKNearest(embedding, TOP_K, CUT_OFF));
+            metrics.recordRetrieved(results.size());
+            return results;
+        }
+        var results = metrics.time(ChatMetrics.SEARCH,
+                () -> store.searchTopKNearest(embedding, reranker.getCandidates(), CUT_OFF, true));
+        metrics.recordRetrieved(results.size());
+        return metrics.time(ChatMetrics.RERANK, () -> reranker.rerank(embedding, results, TOP_K));
+    }
+
+    private List<ChatMessage> prompt(List<ChatMessage> messages, List<CosmosEntity> candidates, String question) {
+        var compaction = historyCompactor.compact(messages);
+        var prompt = contextAssembler.assemble(compaction.messages(), candidates, question);
+        metrics.recordHistorySaved(compaction.savedTokens());
+        metrics.recordPrompt(prompt.tokens(), prompt.chunks());
+        return prompt.messages();
+    }
+
+    static String getQuestion(List<ChatMessage> messages) {
         if (messages == null || messages.isEmpty()) {
             throw new IllegalArgumentException("message shouldn't be empty.");
         }
@@ -30,23 +177,19 @@ public class ChatPlanner {
         if (lastUserMessage.getRole() != ChatRole.USER) {
             throw new IllegalArgumentException("The last message should be in user role.");
         }
-        String question = lastUserMessage.getContent();
-
-        // step 1. Convert the user's query text to an embedding
-        var response = client.getEmbeddings(List.of(question));
-        var embedding = response.getData().get(0).getEmbedding();
+        return lastUserMessage.getContent();
+    }
 
-        // step 2. Query Top-K nearest text chunks from the vector store
-        var candidateDocs = store.searchTopKNearest(embedding, 5, 0.4).stream()
-                .map(CosmosEntity::getText).toList();
+    static ContextAssembler defaultContextAssembler() {
+        return new ContextAssembler(new TextSplitter()::countTokens, new PromptProperties());
+    }
 
-        // step 3. Populate the prompt template with the chunks
-        var prompt = PromptTemplate.formatWithContext(candidateDocs, question);
-        var processedMessages = new ArrayList<>(messages);
-        processedMessages.set(messages.size() - 1, new ChatMessage(ChatRole.USER).setContent(prompt));
+    static HistoryCompactor defaultHistoryCompactor(ContextAssembler contextAssembler) {
+        return new HistoryCompactor(contextAssembler::countTokens, new HistoryProperties());
+    }
 
-        // step 4. Call to OpenAI chat completion API
-        var answer = client.getChatCompletions(processedMessages);
-        return answer;
+    static boolean isFirstTurn(List<ChatMessage> messages) {
+        return messages.subList(0, messages.size() - 1).stream()
+                .allMatch(message -> message.getRole() == ChatRole.SYSTEM);
     }
 }
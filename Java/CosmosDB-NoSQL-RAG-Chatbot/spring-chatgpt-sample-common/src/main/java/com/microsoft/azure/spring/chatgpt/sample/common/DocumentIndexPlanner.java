@@ -1,59 +1,85 @@
 package com.microsoft.azure.spring.chatgpt.sample.common;
 
+import com.microsoft.azure.spring.chatgpt.sample.common.ingest.FolderWatcher;
+import com.microsoft.azure.spring.chatgpt.sample.common.ingest.IndexedFolder;
+import com.microsoft.azure.spring.chatgpt.sample.common.ingest.IngestionPipeline;
+import com.microsoft.azure.spring.chatgpt.sample.common.ingest.IngestionProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.ratelimit.AdaptiveRateLimiter;
 import com.microsoft.azure.spring.chatgpt.sample.common.reader.SimpleFolderReader;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosDBVectorStore;
-import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.UUID;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.logging.Logger;
 
 public class DocumentIndexPlanner {
+    private static final int DEFAULT_TOKENS_PER_MINUTE = 120000;
+    private static final int DEFAULT_REQUESTS_PER_MINUTE = 720;
+
     public DocumentIndexPlanner(AzureOpenAIClient client, CosmosDBVectorStore vectorStore) {
+        this(client, vectorStore, new AdaptiveRateLimiter(DEFAULT_TOKENS_PER_MINUTE, DEFAULT_REQUESTS_PER_MINUTE),
+                EmbeddingBatcher.DEFAULT_MAX_BATCH_TOKENS, EmbeddingBatcher.DEFAULT_MAX_BATCH_SIZE,
+                new IngestionProperties());
+    }
+
+    public DocumentIndexPlanner(AzureOpenAIClient client, CosmosDBVectorStore vectorStore, AdaptiveRateLimiter rateLimiter,
+                                int maxBatchTokens, int maxBatchSize, IngestionProperties ingestionProperties) {
         this.client = client;
         this.vectorStore = vectorStore;
+        this.rateLimiter = rateLimiter;
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxBatchSize = maxBatchSize;
+        this.ingestionProperties = ingestionProperties;
     }
     private final AzureOpenAIClient client;
     private final CosmosDBVectorStore vectorStore;
+    private final AdaptiveRateLimiter rateLimiter;
+    private final int maxBatchTokens;
+    private final int maxBatchSize;
+    private final IngestionProperties ingestionProperties;
 
     private Logger log = Logger.getLogger(DocumentIndexPlanner.class.getName());
     public void buildFromFolder(String folderPath) throws IOException {
         if (folderPath == null) {
             throw new IllegalArgumentException("folderPath shouldn't be empty.");
         }
-        final int[] dimensions = {0};
-        vectorStore.createVectorIndex(100, dimensions[0], "COS");
+        vectorStore.createVectorIndex();
         SimpleFolderReader reader = new SimpleFolderReader(folderPath);
-        TextSplitter splitter = new TextSplitter();
+        IngestionPipeline pipeline = newPipeline();
 
-        reader.run((fileName, content) -> {
-
-            log.info("String to process: "+ fileName);
-            var textChunks = splitter.split(content);
-            for (var chunk: textChunks) {
-                try {
-                    //sleep to help avoid azure openai rate limiting for P0 tier
-                    //remove this if you a higher rate limit
-                    log.info("Sleeping for 5000ms to avoid Azure OpenAI rate limiting");
-                    Thread.sleep(5000);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
-                var response = client.getEmbeddings(List.of(chunk));
-                var embedding = response.getData().get(0).getEmbedding();
-                if (dimensions[0] == 0) {
-                    dimensions[0] = embedding.size();
-                } else if (dimensions[0] != embedding.size()) {
-                    throw new IllegalStateException("Embedding size is not consistent.");
-                }
-                String key = UUID.randomUUID().toString();
-                CosmosEntity docEntry = new CosmosEntity(key, "", chunk,  embedding);
-                vectorStore.saveDocument(key, docEntry);
-            }
-            return null;
-        });
+        var files = reader.listFiles();
+        log.info("Found " + files.size() + " files to process.");
+        try {
+            pipeline.run(IndexedFolder.of(Paths.get(folderPath), ingestionProperties.getSourceName()), files);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
 
         log.info("All documents are loaded to Cosmos DB NoSQL API vector store.");
     }
+
+    /**
+     * Indexes what changed in the folder since the manifest was last saved, then keeps indexing changes as they happen
+     * until the thread is interrupted.
+     */
+    public void watchFolder(String folderPath, Path manifestPath) throws IOException, InterruptedException {
+        if (folderPath == null) {
+            throw new IllegalArgumentException("folderPath shouldn't be empty.");
+        }
+        vectorStore.createVectorIndex();
+        var folder = IndexedFolder.of(Paths.get(folderPath), ingestionProperties.getSourceName());
+        var watcher = new FolderWatcher(folder, manifestPath, new SimpleFolderReader(folderPath), newPipeline(),
+                Duration.ofMillis(ingestionProperties.getWatchQuietPeriodMillis()));
+        watcher.run();
+    }
+
+    private IngestionPipeline newPipeline() {
+        TextSplitter splitter = new TextSplitter();
+        EmbeddingBatcher batcher = new EmbeddingBatcher(client, rateLimiter, splitter::countTokens,
+                maxBatchTokens, maxBatchSize);
+        return new IngestionPipeline(splitter, batcher, vectorStore, ingestionProperties);
+    }
 }
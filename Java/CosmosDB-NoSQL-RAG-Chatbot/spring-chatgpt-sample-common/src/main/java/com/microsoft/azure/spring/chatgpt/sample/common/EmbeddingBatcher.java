@@ -0,0 +1,96 @@
+package com.microsoft.azure.spring.chatgpt.sample.common;
+
+import com.azure.core.exception.HttpResponseException;
+import com.microsoft.azure.spring.chatgpt.sample.common.ratelimit.AdaptiveRateLimiter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+
+/**
+ * Packs text chunks into token-budgeted batches and embeds each batch with a single, rate-limited call.
+ */
+public class EmbeddingBatcher {
+    public static final int DEFAULT_MAX_BATCH_TOKENS = 8000;  // Total input tokens per embedding call
+    public static final int DEFAULT_MAX_BATCH_SIZE = 16;  // Inputs per embedding call accepted by Azure OpenAI
+    private static final int MAX_RETRIES = 10;  // Give up on a batch after this many throttled attempts
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(10);
+
+    public EmbeddingBatcher(AzureOpenAIClient client, AdaptiveRateLimiter limiter, ToIntFunction<String> tokenCounter,
+                            int maxBatchTokens, int maxBatchSize) {
+        this.client = client;
+        this.limiter = limiter;
+        this.tokenCounter = tokenCounter;
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    private final AzureOpenAIClient client;
+    private final AdaptiveRateLimiter limiter;
+    private final ToIntFunction<String> tokenCounter;
+    private final int maxBatchTokens;
+    private final int maxBatchSize;
+
+    private Logger log = Logger.getLogger(EmbeddingBatcher.class.getName());
+
+    /**
+     * Tells whether a batch of {@code batchSize} texts and {@code batchTokens} tokens has to be sent before a text of
+     * {@code nextTokens} tokens can be added to it.
+     */
+    public boolean isFull(int batchSize, int batchTokens, int nextTokens) {
+        return batchSize > 0 && (batchTokens + nextTokens > maxBatchTokens || batchSize >= maxBatchSize);
+    }
+
+    /**
+     * Embeds one batch, waiting for the rate limiter before each attempt and backing off on 429 responses.
+     * Embeddings are returned in the order of the input texts. Thread-safe.
+     */
+    public List<float[]> embed(List<String> texts, int tokens) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // cached texts cost nothing, so only the ones actually sent are charged to the limiter
+                var embeddings = client.embed(texts, missing -> acquire(missing.size() == texts.size()
+                        ? tokens : missing.stream().mapToInt(tokenCounter::applyAsInt).sum()));
+                limiter.onSuccess();
+                return embeddings;
+            } catch (HttpResponseException e) {
+                if (e.getResponse() == null || e.getResponse().getStatusCode() != 429 || attempt >= MAX_RETRIES) {
+                    throw e;
+                }
+                var retryAfter = getRetryAfter(e);
+                log.info("Embedding batch of " + texts.size() + " chunks throttled, attempt " + attempt);
+                limiter.onThrottled(retryAfter);
+            }
+        }
+    }
+
+    public int countTokens(String text) {
+        return tokenCounter.applyAsInt(text);
+    }
+
+    private void acquire(int tokens) {
+        try {
+            limiter.acquire(tokens);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Duration getRetryAfter(HttpResponseException e) {
+        try {
+            var retryAfterMs = e.getResponse().getHeaderValue("retry-after-ms");
+            if (retryAfterMs != null) {
+                return Duration.ofMillis(Long.parseLong(retryAfterMs.trim()));
+            }
+            var retryAfter = e.getResponse().getHeaderValue("Retry-After");
+            if (retryAfter != null) {
+                return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+            }
+        } catch (NumberFormatException ignored) {
+            // fall through to the default back-off
+        }
+        return DEFAULT_RETRY_AFTER;
+    }
+}
@@ -0,0 +1,199 @@
+package com.microsoft.azure.spring.chatgpt.sample.common;
+
+import com.azure.ai.openai.models.ChatChoice;
+import com.azure.ai.openai.models.ChatCompletions;
+import com.azure.ai.openai.models.ChatMessage;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.SemanticAnswerCache;
+import com.microsoft.azure.spring.chatgpt.sample.common.metrics.ChatMetrics;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.ContextAssembler;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.HistoryCompactor;
+import com.microsoft.azure.spring.chatgpt.sample.common.rerank.MmrReranker;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.InMemoryVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.ReactiveCosmosVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.VectorStore;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Non-blocking variant of {@link ChatPlanner}: the same retrieval and prompt steps, built on
+ * {@link AsyncAzureOpenAIClient} and {@link ReactiveCosmosVectorStore}, so no thread waits on I/O.
+ */
+public class ReactiveChatPlanner {
+
+    private final AsyncAzureOpenAIClient client;
+
+    // search results, with their embeddings when reranking
+    private final Function<float[], Mono<List<CosmosEntity>>> search;
+
+    private final SemanticAnswerCache answerCache;
+
+    private final ContextAssembler contextAssembler;
+
+    private final HistoryCompactor historyCompactor;
+
+    private final MmrReranker reranker;
+
+    private final ChatMetrics metrics;
+
+    public ReactiveChatPlanner(AsyncAzureOpenAIClient client, ReactiveCosmosVectorStore store,
+                               SemanticAnswerCache answerCache) {
+        this(client, store, answerCache, ChatPlanner.defaultContextAssembler());
+    }
+
+    private ReactiveChatPlanner(AsyncAzureOpenAIClient client, ReactiveCosmosVectorStore store,
+                                SemanticAnswerCache answerCache, ContextAssembler contextAssembler) {
+        this(client, store, answerCache, contextAssembler, ChatPlanner.defaultHistoryCompactor(contextAssembler),
+                null);
+    }
+
+    /**
+     * @param reranker reranks over-fetched search results, or null to use the top results as they are
+     */
+    public ReactiveChatPlanner(AsyncAzureOpenAIClient client, ReactiveCosmosVectorStore store,
+                               SemanticAnswerCache answerCache, ContextAssembler contextAssembler,
+                               HistoryCompactor historyCompactor, MmrReranker reranker) {
+        this(client, embedding -> store.searchTopKNearest(embedding, fetched(reranker), ChatPlanner.CUT_OFF,
+                reranker != null).collectList(), answerCache, contextAssembler, historyCompactor, reranker);
+    }
+
+    /**
+     * Searches a {@link VectorStore} on the subscribing thread, so only use it with a store that doesn't block, such
+     * as {@link InMemoryVectorStore}.
+     */
+    public ReactiveChatPlanner(AsyncAzureOpenAIClient client, VectorStore store, SemanticAnswerCache answerCache) {
+        this(client, store, answerCache, ChatPlanner.defaultContextAssembler());
+    }
+
+    private ReactiveChatPlanner(AsyncAzureOpenAIClient client, VectorStore store, SemanticAnswerCache answerCache,
+                                ContextAssembler contextAssembler) {
+        this(client, store, answerCache, contextAssembler, ChatPlanner.defaultHistoryCompactor(contextAssembler),
+                null);
+    }
+
+    public ReactiveChatPlanner(AsyncAzureOpenAIClient client, VectorStore store, SemanticAnswerCache answerCache,
+                               ContextAssembler contextAssembler, HistoryCompactor historyCompactor,
+                               MmrReranker reranker) {
+        this(client, embedding -> Mono.fromCallable(() -> store.searchTopKNearest(embedding, fetched(reranker),
+                ChatPlanner.CUT_OFF, reranker != null)), answerCache, contextAssembler, historyCompactor, reranker);
+    }
+
+    private ReactiveChatPlanner(AsyncAzureOpenAIClient client, Function<float[], Mono<List<CosmosEntity>>> search,
+                                SemanticAnswerCache answerCache, ContextAssembler contextAssembler,
+                                HistoryCompactor historyCompactor, MmrReranker reranker) {
+        this.client = client;
+        this.search = search;
+        this.answerCache = answerCache;
+        this.contextAssembler = contextAssembler;
+        this.historyCompactor = historyCompactor;
+        this.reranker = reranker;
+        this.metrics = client.getMetrics();
+    }
+
+    public Mono<ChatCompletions> chat(List<ChatMessage> messages) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            String[] outcome = {ChatMetrics.ERROR};
+            String question = ChatPlanner.getQuestion(messages);
+            boolean cacheable = answerCache != null && ChatPlanner.isFirstTurn(messages);
+            return embed(question)
+                    .flatMap(embedding -> {
+                        var cached = cacheable ? metrics.time(ChatMetrics.CACHE, () -> answerCache.get(embedding))
+                                : null;
+                        if (cached != null) {
+                            outcome[0] = ChatMetrics.CACHED;
+                            return Mono.just(cached);
+                        }
+                        return search(embedding).flatMap(candidates ->
+                                timed(ChatMetrics.COMPLETION, client.getChatCompletions(prompt(messages, candidates,
+                                        question)))
+                                        .doOnNext(answer -> {
+                                            if (cacheable) {
+                                                answerCache.put(embedding,
+                                                        candidates.stream().map(CosmosEntity::getId).toList(), answer);
+                                            }
+                                            outcome[0] = ChatMetrics.ANSWERED;
+                                        }));
+                    })
+                    .doFinally(signal -> metrics.recordRequest(false, outcome[0], System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Same as {@link #chat}, but emits the answer as content fragments in the order they are generated. Nothing is
+     * emitted before retrieval has completed.
+     */
+    public Flux<String> chatStream(List<ChatMessage> messages) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            String[] outcome = {ChatMetrics.ERROR};
+            String question = ChatPlanner.getQuestion(messages);
+            boolean cacheable = answerCache != null && ChatPlanner.isFirstTurn(messages);
+            return embed(question)
+                    .flatMapMany(embedding -> {
+                        var cached = cacheable ? metrics.time(ChatMetrics.CACHE, () -> answerCache.get(embedding))
+                                : null;
+                        if (cached != null) {
+                            outcome[0] = ChatMetrics.CACHED;
+                            return Flux.fromIterable(cached.getChoices()).take(1)
+                                    .map(choice -> choice.getMessage().getContent());
+                        }
+                        return search(embedding).flatMapMany(candidates -> {
+                            var processedMessages = prompt(messages, candidates, question);
+                            Flux<ChatCompletions> completions = Flux.defer(() -> {
+                                long completionStart = System.nanoTime();
+                                return client.getChatCompletionsStream(processedMessages)
+                                        .doFinally(signal -> metrics.recordStage(ChatMetrics.COMPLETION,
+                                                System.nanoTime() - completionStart));
+                            });
+                            return completions
+                                    .concatMapIterable(ChatCompletions::getChoices)
+                                    .map(ChatChoice::getDelta)
+                                    .filter(Objects::nonNull)
+                                    .map(ChatMessage::getContent)
+                                    .filter(Objects::nonNull)
+                                    .doOnComplete(() -> outcome[0] = ChatMetrics.ANSWERED);
+                        });
+                    })
+                    .doFinally(signal -> metrics.recordRequest(true, outcome[0], System.nanoTime() - start));
+        });
+    }
+
+    private Mono<float[]> embed(String question) {
+        return timed(ChatMetrics.EMBEDDING, client.embed(List.of(question)).map(embeddings -> embeddings.get(0)));
+    }
+
+    private Mono<List<CosmosEntity>> search(float[] embedding) {
+        return timed(ChatMetrics.SEARCH, search.apply(embedding)).map(results -> {
+            metrics.recordRetrieved(results.size());
+            return reranker == null ? results
+                    : metrics.time(ChatMetrics.RERANK, () -> reranker.rerank(embedding, results, ChatPlanner.TOP_K));
+        });
+    }
+
+    private List<ChatMessage> prompt(List<ChatMessage> messages, List<CosmosEntity> candidates, String question) {
+        return metrics.time(ChatMetrics.PROMPT, () -> {
+            var compaction = historyCompactor.compact(messages);
+            var prompt = contextAssembler.assemble(compaction.messages(), candidates, question);
+            metrics.recordHistorySaved(compaction.savedTokens());
+            metrics.recordPrompt(prompt.tokens(), prompt.chunks());
+            return prompt.messages();
+        });
+    }
+
+    // times the mono from subscription to completion, error or cancellation
+    private <T> Mono<T> timed(String stage, Mono<T> mono) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono.doFinally(signal -> metrics.recordStage(stage, System.nanoTime() - start));
+        });
+    }
+
+    private static int fetched(MmrReranker reranker) {
+        return reranker == null ? ChatPlanner.TOP_K : reranker.getCandidates();
+    }
+}
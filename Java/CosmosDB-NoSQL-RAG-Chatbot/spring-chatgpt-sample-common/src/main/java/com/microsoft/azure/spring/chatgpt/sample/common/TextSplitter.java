@@ -5,19 +5,56 @@ import com.knuddels.jtokkit.api.Encoding;
 import com.knuddels.jtokkit.api.EncodingRegistry;
 import com.knuddels.jtokkit.api.EncodingType;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Splits text into chunks of about {@code chunkSize} tokens, ending each chunk at its last sentence or line end when
+ * there is one far enough in.
+ * <p>
+ * The text is encoded once. A chunk is decoded from the UTF-8 bytes of the tokens it covers, and when it is cut at a
+ * sentence end that falls on a token boundary, the number of tokens it used is found from the byte offsets of the
+ * tokens. Only when the cut falls inside a token, or the chunk doesn't start right after a sentence or line end, is
+ * the chunk text encoded again to count its tokens, so the chunks are the same as if every chunk were re-encoded.
+ * <p>
+ * {@link #splitParallel} splits very large texts on the common fork-join pool, and {@link #split(Reader, int)} does the
+ * same while reading them.
+ */
 public class TextSplitter {
     private static final int DEFAULT_CHUNK_SIZE = 400;  // The target size of each text chunk in tokens
     private static final int MIN_CHUNK_SIZE_CHARS = 350;  // The minimum size of each text chunk in characters
     private static final int MIN_CHUNK_LENGTH_TO_EMBED = 5;  // Discard chunks shorter than this
     private static final int MAX_NUM_CHUNKS = 10000;  // The maximum number of chunks to generate from a text
+    private static final int MAX_SEGMENT_FACTOR = 4;  // Segments without line breaks are cut at this many times their size
+
+    // covers the token ids of cl100k_base; longer ids are decoded every time
+    private static final int TOKEN_LENGTH_CACHE_SIZE = 1 << 17;
 
     private final EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
 
     private final Encoding encoding = registry.getEncoding(EncodingType.CL100K_BASE);
 
+    // UTF-8 length of each token by id, 0 until first seen; racing threads store the same value
+    private final int[] tokenLengths = new int[TOKEN_LENGTH_CACHE_SIZE];
+
     public List<String> split(String text) {
         return split(text, DEFAULT_CHUNK_SIZE);
     }
@@ -27,16 +64,18 @@ public class TextSplitter {
             return new ArrayList<>();
         }
 
-        List<Integer> tokens = getEncodedTokens(text);
+        EncodedText encoded = encode(text);
+        int tokenCount = encoded.tokenCount();
         List<String> chunks = new ArrayList<>();
+        int start = 0;
         int num_chunks = 0;
-        while (!tokens.isEmpty() && num_chunks < MAX_NUM_CHUNKS) {
-            List<Integer> chunk = tokens.subList(0, Math.min(chunkSize, tokens.size()));
-            String chunkText = decodeTokens(chunk);
+        while (start < tokenCount && num_chunks < MAX_NUM_CHUNKS) {
+            int end = Math.min(start + chunkSize, tokenCount);
+            String chunkText = encoded.decode(start, end);
 
             // Skip the chunk if it is empty or whitespace
             if (chunkText.trim().isEmpty()) {
-                tokens = tokens.subList(chunk.size(), tokens.size());
+                start = end;
                 continue;
             }
 
@@ -52,24 +91,29 @@ public class TextSplitter {
                     )
             );
 
+            int chunkTokens = -1;
             if (lastPunctuation != -1 && lastPunctuation > MIN_CHUNK_SIZE_CHARS) {
                 // Truncate the chunk text at the punctuation mark
                 chunkText = chunkText.substring(0, lastPunctuation + 1);
+                chunkTokens = encoded.tokensIn(start, end, chunkText);
             }
             String chunk_text_to_append = chunkText.replace("\n", " ").trim();
             if (chunk_text_to_append.length() > MIN_CHUNK_LENGTH_TO_EMBED) {
                 chunks.add(chunk_text_to_append);
             }
 
-            // Remove the tokens corresponding to the chunk text from the remaining tokens
-            tokens = tokens.subList(getEncodedTokens(chunkText).size(), tokens.size());
+            // Skip the tokens corresponding to the chunk text
+            if (chunkTokens < 0) {
+                chunkTokens = encoding.countTokens(chunkText);
+            }
+            start = Math.min(start + chunkTokens, tokenCount);
 
             num_chunks++;
         }
 
         // Handle the remaining tokens
-        if (!tokens.isEmpty()) {
-            String remaining_text = decodeTokens(tokens).replace("\n", " ").trim();
+        if (start < tokenCount) {
+            String remaining_text = encoded.decode(start, tokenCount).replace("\n", " ").trim();
             if (remaining_text.length() > MIN_CHUNK_LENGTH_TO_EMBED) {
                 chunks.add(remaining_text);
             }
@@ -78,12 +122,290 @@ public class TextSplitter {
         return chunks;
     }
 
-    private List<Integer> getEncodedTokens(String text) {
-        return encoding.encode(text);
+    public List<String> splitParallel(String text, int segmentSize) {
+        return splitParallel(text, DEFAULT_CHUNK_SIZE, segmentSize);
     }
 
-    private String decodeTokens(List<Integer> tokens) {
-        return encoding.decode(tokens);
+    /**
+     * Splits a text as {@link #split(String, int)} does, after cutting it into segments of about {@code segmentSize}
+     * characters at line breaks, preferably between paragraphs, and splitting the segments in parallel. The chunks
+     * are in text order and don't depend on the number of threads.
+     * <p>
+     * No chunk spans two segments. Where the sequential split ends a chunk at a segment boundary anyway, the chunks
+     * are the same; elsewhere a chunk may end earlier at a boundary, and the following chunks shift. The limit of
+     * chunks applies to each segment.
+     */
+    public List<String> splitParallel(String text, int chunkSize, int segmentSize) {
+        if (text == null || text.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> segments = new ArrayList<>();
+        try {
+            var reader = new SegmentReader(new StringReader(text), segmentSize);
+            for (String segment = reader.next(); segment != null; segment = reader.next()) {
+                segments.add(segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (segments.size() == 1) {
+            return split(text, chunkSize);
+        }
+        return segments.parallelStream()
+                .flatMap(segment -> split(segment, chunkSize).stream())
+                .collect(Collectors.toCollection(ArrayList::new));
     }
-}
 
+    /**
+     * Splits a text read from {@code reader} into the same chunks as {@link #splitParallel(String, int)}, holding only
+     * a few segments in memory: the chunks of the next segments are computed on the common fork-join pool while the
+     * stream is consumed. Closing the stream doesn't close the reader; read errors are thrown as
+     * {@link UncheckedIOException}.
+     */
+    public Stream<String> split(Reader reader, int segmentSize) {
+        var segments = new SegmentReader(reader, segmentSize);
+        int lookahead = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        var chunks = new Iterator<List<String>>() {
+            private final Deque<CompletableFuture<List<String>>> pending = new ArrayDeque<>();
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    for (String segment; pending.size() < lookahead && (segment = segments.next()) != null; ) {
+                        var text = segment;
+                        pending.add(CompletableFuture.supplyAsync(() -> split(text), ForkJoinPool.commonPool()));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public List<String> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return pending.remove().join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED), false)
+                .flatMap(List::stream);
+    }
+
+    public int countTokens(String text) {
+        return encoding.countTokens(text);
+    }
+
+    private EncodedText encode(String text) {
+        List<Integer> tokens = encoding.encode(text);
+        int[] offsets = new int[tokens.size() + 1];
+        int i = 0;
+        for (int token : tokens) {
+            offsets[i + 1] = offsets[i] + tokenLength(token);
+            i++;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length != offsets[tokens.size()]) {
+            // not expected, as tokens are encoded from these bytes; decode them as the tokenizer does
+            bytes = encoding.decodeBytes(tokens);
+        }
+        return new EncodedText(offsets, bytes);
+    }
+
+    private int tokenLength(int token) {
+        if (token < 0 || token >= tokenLengths.length) {
+            return encoding.decodeBytes(List.of(token)).length;
+        }
+        int length = tokenLengths[token];
+        if (length == 0) {
+            length = encoding.decodeBytes(List.of(token)).length;
+            tokenLengths[token] = length;
+        }
+        return length;
+    }
+
+    /**
+     * Reads a text in segments of about {@code segmentSize} characters, each ending after a whole run of line breaks,
+     * where the tokenizer also ends a token: after the last paragraph break in the second half of the segment, or else
+     * the last line break there, or else the first one after it. Text without a line break for
+     * {@value #MAX_SEGMENT_FACTOR} times the segment size is cut before a space, so memory stays bounded.
+     */
+    private static final class SegmentReader {
+
+        private final Reader reader;
+
+        private final int segmentSize;
+
+        private final StringBuilder buffer = new StringBuilder();
+
+        private final char[] block = new char[8192];
+
+        private boolean endOfText;
+
+        SegmentReader(Reader reader, int segmentSize) {
+            if (segmentSize <= 0) {
+                throw new IllegalArgumentException("segmentSize must be positive.");
+            }
+            this.reader = reader;
+            this.segmentSize = segmentSize;
+        }
+
+        /**
+         * The next segment, or null at the end of the text.
+         */
+        String next() throws IOException {
+            while (!endOfText && buffer.length() <= segmentSize) {
+                fill();
+            }
+            if (buffer.length() <= segmentSize) {
+                return take(buffer.length());
+            }
+            int end = segmentEnd();
+            while (end < 0 && !endOfText && buffer.length() < MAX_SEGMENT_FACTOR * segmentSize) {
+                // in steps of a quarter segment, as every attempt scans the buffer again
+                for (int target = buffer.length() + segmentSize / 4; !endOfText && buffer.length() < target; ) {
+                    fill();
+                }
+                end = segmentEnd();
+            }
+            if (end < 0) {
+                end = endOfText ? buffer.length() : lastSpace();
+            }
+            return take(end);
+        }
+
+        private void fill() throws IOException {
+            int read = reader.read(block);
+            if (read < 0) {
+                endOfText = true;
+            } else {
+                buffer.append(block, 0, read);
+            }
+        }
+
+        private String take(int end) {
+            if (end == 0) {
+                return null;
+            }
+            String segment = buffer.substring(0, end);
+            buffer.delete(0, end);
+            return segment;
+        }
+
+        // -1 when the break isn't in the buffer yet, or the run of line breaks after it may go on past the buffer
+        private int segmentEnd() {
+            int length = buffer.length();
+            int end = -1;
+            for (int i = Math.min(segmentSize, length - 1); i > segmentSize / 2; i--) {
+                if (buffer.charAt(i) == '\n') {
+                    if (end < 0) {
+                        end = i;
+                    }
+                    if (buffer.charAt(i - 1) == '\n') {
+                        end = i;
+                        break;
+                    }
+                }
+            }
+            for (int i = segmentSize + 1; end < 0 && i < length; i++) {
+                if (buffer.charAt(i) == '\n') {
+                    end = i;
+                }
+            }
+            if (end < 0) {
+                return -1;
+            }
+            while (end < length && (buffer.charAt(end) == '\n' || buffer.charAt(end) == '\r')) {
+                end++;
+            }
+            return end < length || endOfText ? end : -1;
+        }
+
+        private int lastSpace() {
+            for (int i = segmentSize; i > segmentSize / 2; i--) {
+                if (buffer.charAt(i) == ' ') {
+                    return i;
+                }
+            }
+            return segmentSize;
+        }
+    }
+
+    /**
+     * The UTF-8 bytes of a text and where each of its tokens starts in them; token {@code i} is bytes
+     * {@code offsets[i]} to {@code offsets[i + 1]}.
+     */
+    private static final class EncodedText {
+
+        private final int[] offsets;
+
+        private final byte[] bytes;
+
+        EncodedText(int[] offsets, byte[] bytes) {
+            this.offsets = offsets;
+            this.bytes = bytes;
+        }
+
+        int tokenCount() {
+            return offsets.length - 1;
+        }
+
+        // the same as decoding tokens [from, to), including replacement characters for split code points
+        String decode(int from, int to) {
+            return new String(bytes, offsets[from], offsets[to] - offsets[from], StandardCharsets.UTF_8);
+        }
+
+        /**
+         * The number of tokens from {@code start} that encoding {@code prefix}, a prefix of the chunk of tokens
+         * {@code start} to {@code end} ending at a sentence or line end, gives, or -1 when it can't be told without
+         * encoding it.
+         * <p>
+         * The tokenizer splits text into words, numbers, punctuation and whitespace before encoding each of them. A
+         * chunk starting with a word, a number or a space right after a sentence or line end is split the same as the
+         * text was from there on, and so is a prefix of it ending at one, as long as that end is also the end of a
+         * token; then the prefix encodes to the tokens it covers. A chunk starting in the middle of punctuation or a
+         * line break may be split differently.
+         */
+        int tokensIn(int start, int end, String prefix) {
+            int from = offsets[start];
+            if (start > 0 && !(isSentenceOrLineEnd(bytes[from - 1]) && startsWord(prefix))) {
+                return -1;
+            }
+            int cut = Arrays.binarySearch(offsets, start + 1, end + 1, from + utf8Length(prefix));
+            return cut < 0 ? -1 : cut - start;
+        }
+
+        private static boolean isSentenceOrLineEnd(byte b) {
+            return b == '.' || b == '?' || b == '!' || b == '\n';
+        }
+
+        private static boolean startsWord(String text) {
+            int first = text.codePointAt(0);
+            return Character.isLetterOrDigit(first) || first == ' ' || first == '\t';
+        }
+
+        private static int utf8Length(String text) {
+            int length = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    length++;
+                } else if (c < 0x800) {
+                    length += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    length += 4;
+                    i++;
+                } else {
+                    length += 3;
+                }
+            }
+            return length;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Content-addressed embedding cache backed by a memory-mapped file of fixed-size float32 slots, with an in-heap LRU
+ * front for the hottest entries.
+ * <p>
+ * Entries are keyed by the SHA-256 of deployment id, model and text. The file holds at most {@code maxEntries}
+ * slots, and when it is full the least recently used slot is overwritten. File layout:
+ * <pre>
+ * header: magic (int), version (int), dimensions (int), capacity (int), padded to 64 bytes
+ * slot:   key (32 bytes), last access tick (long), CRC32C of key and embedding (int),
+ *         embedding (dimensions x float32, little-endian)
+ * </pre>
+ * A slot is written key cleared first and key last, and slots whose checksum doesn't match are dropped when the file
+ * is opened, so a slot torn by a crash is never read as the embedding of another text: the pages of a mapping may
+ * reach the disk in any order.
+ * <p>
+ * Embeddings are copied in and out, so callers may change the arrays they pass and get.
+ */
+public class EmbeddingCache implements Closeable {
+
+    private static final int MAGIC = 0x454D4243;  // "EMBC"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int KEY_SIZE = 32;
+    private static final int CRC_OFFSET = KEY_SIZE + Long.BYTES;
+    private static final int SLOT_HEADER_SIZE = CRC_OFFSET + Integer.BYTES;
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;  // A single mapping can't exceed 2 GB
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    private final Path path;
+    private final int maxEntries;
+    private final int memoryEntries;
+
+    private FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int dimensions;
+    private int slotSize;
+    private int slotsPerSegment;
+    private long tick;
+
+    // every slot on disk in access order, eldest first
+    private final LinkedHashMap<ByteBuffer, Integer> slots = new LinkedHashMap<>(16, 0.75f, true);
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final LinkedHashMap<ByteBuffer, float[]> memory;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile double remoteNanosPerText;
+
+    private Logger log = Logger.getLogger(EmbeddingCache.class.getName());
+
+    public EmbeddingCache(Path path, int maxEntries, int memoryEntries) throws IOException {
+        this.path = path;
+        this.maxEntries = maxEntries;
+        this.memoryEntries = memoryEntries;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, float[]> eldest) {
+                return size() > EmbeddingCache.this.memoryEntries;
+            }
+        };
+        if (Files.exists(path) && Files.size(path) >= HEADER_SIZE) {
+            open();
+        }
+    }
+
+    public static ByteBuffer key(String deploymentId, String model, String text) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(deploymentId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest.digest()).asReadOnlyBuffer();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a copy of the cached embedding, or null on a miss.
+     */
+    public synchronized float[] get(ByteBuffer key) {
+        var embedding = memory.get(key);
+        // read the slot on memory hits too, so the hottest entries are the last evicted from disk, and from memory
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            if (embedding == null) {
+                embedding = readSlot(slot);
+                memory.put(key, embedding);
+            }
+            touch(slot);
+        }
+        if (embedding == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return embedding.clone();
+    }
+
+    public synchronized void put(ByteBuffer key, float[] embedding) {
+        if (channel == null) {
+            try {
+                create(embedding.length);
+            } catch (IOException e) {
+                log.warning("Failed to create embedding cache file " + path + ": " + e);
+                return;
+            }
+        }
+        if (embedding.length != dimensions) {
+            return;
+        }
+        embedding = embedding.clone();
+        memory.put(key, embedding);
+        Integer slot = slots.get(key);
+        if (slot == null) {
+            if (!freeSlots.isEmpty()) {
+                slot = freeSlots.poll();
+            } else {
+                var eldest = slots.entrySet().iterator().next();
+                slot = eldest.getValue();
+                slots.remove(eldest.getKey());
+                memory.remove(eldest.getKey());
+                evictions.increment();
+            }
+            slots.put(key, slot);
+        }
+        writeSlot(slot, key, embedding);
+    }
+
+    /**
+     * Records the latency of a remote embedding call, to estimate the time saved by each hit.
+     */
+    public void recordRemoteCall(long nanos, int texts) {
+        if (texts <= 0) {
+            return;
+        }
+        double perText = (double) nanos / texts;
+        double current = remoteNanosPerText;
+        remoteNanosPerText = current == 0 ? perText : current + LATENCY_SMOOTHING * (perText - current);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * Estimated remote embedding time saved by cache hits.
+     */
+    public long getSavedMillis() {
+        return (long) (getHits() * remoteNanosPerText / 1_000_000);
+    }
+
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return String.format("EmbeddingCache{entries=%d, hits=%d, misses=%d, hitRatio=%.2f, evictions=%d, savedMillis=%d}",
+                size(), hits, getMisses(), total == 0 ? 0.0 : (double) hits / total, getEvictions(), getSavedMillis());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            for (var segment : segments) {
+                segment.force();
+            }
+            channel.close();
+            channel = null;
+            segments.clear();
+            slots.clear();
+            freeSlots.clear();
+        }
+        log.info(toString());
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            channel = null;
+            log.warning("Ignoring embedding cache file " + path + " with an unknown format.");
+            Files.delete(path);
+            return;
+        }
+        int capacity = header.getInt(12);
+        map(header.getInt(8));
+
+        // rebuild the access order from the ticks stored with each slot
+        var found = new ArrayList<long[]>();
+        int torn = 0;
+        for (int slot = 0; slot < maxEntries; slot++) {
+            var key = slot < capacity ? readKey(slot) : null;
+            if (key != null && segment(slot).getInt(offset(slot) + CRC_OFFSET) != checksum(slot, bytes(key))) {
+                segment(slot).put(offset(slot), new byte[KEY_SIZE]);
+                key = null;
+                torn++;
+            }
+            if (key != null) {
+                long slotTick = segment(slot).getLong(offset(slot) + KEY_SIZE);
+                found.add(new long[]{slotTick, slot});
+                tick = Math.max(tick, slotTick);
+            } else {
+                freeSlots.add(slot);
+            }
+        }
+        if (torn > 0) {
+            log.warning("Dropped " + torn + " embedding cache entries of " + path + " that were partly written.");
+        }
+        found.sort(Comparator.comparingLong(entry -> entry[0]));
+        for (var entry : found) {
+            slots.put(readKey((int) entry[1]), (int) entry[1]);
+        }
+        log.info("Opened embedding cache " + path + " with " + slots.size() + " entries.");
+    }
+
+    private void create(int dimensions) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(dimensions).putInt(maxEntries).flip();
+        channel.write(header, 0);
+        map(dimensions);
+        for (int slot = 0; slot < maxEntries; slot++) {
+            freeSlots.add(slot);
+        }
+    }
+
+    private void map(int dimensions) throws IOException {
+        int capacity = maxEntries;
+        this.dimensions = dimensions;
+        this.slotSize = SLOT_HEADER_SIZE + dimensions * Float.BYTES;
+        this.slotsPerSegment = (int) Math.max(1, MAX_SEGMENT_SIZE / slotSize);
+        for (int first = 0; first < capacity; first += slotsPerSegment) {
+            long size = (long) Math.min(slotsPerSegment, capacity - first) * slotSize;
+            var segment = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (long) first * slotSize, size);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments.add(segment);
+        }
+        var header = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(capacity).flip();
+        channel.write(header, 12);
+    }
+
+    private MappedByteBuffer segment(int slot) {
+        return segments.get(slot / slotsPerSegment);
+    }
+
+    private int offset(int slot) {
+        return (slot % slotsPerSegment) * slotSize;
+    }
+
+    private ByteBuffer readKey(int slot) {
+        var bytes = new byte[KEY_SIZE];
+        segment(slot).get(offset(slot), bytes);
+        for (byte b : bytes) {
+            if (b != 0) {
+                return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+            }
+        }
+        return null;
+    }
+
+    private float[] readSlot(int slot) {
+        var embedding = new float[dimensions];
+        segment(slot).slice(offset(slot) + SLOT_HEADER_SIZE, dimensions * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(embedding);
+        return embedding;
+    }
+
+    private void writeSlot(int slot, ByteBuffer key, float[] embedding) {
+        var segment = segment(slot);
+        int offset = offset(slot);
+        var keyBytes = bytes(key);
+        segment.put(offset, new byte[KEY_SIZE]);
+        segment.slice(offset + SLOT_HEADER_SIZE, dimensions * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(embedding);
+        segment.putInt(offset + CRC_OFFSET, checksum(slot, keyBytes));
+        segment.putLong(offset + KEY_SIZE, ++tick);
+        segment.put(offset, keyBytes);
+    }
+
+    private int checksum(int slot, byte[] key) {
+        var crc = new CRC32C();
+        crc.update(key);
+        crc.update(segment(slot).slice(offset(slot) + SLOT_HEADER_SIZE, dimensions * Float.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static byte[] bytes(ByteBuffer key) {
+        var bytes = new byte[KEY_SIZE];
+        key.duplicate().rewind().get(bytes);
+        return bytes;
+    }
+
+    private void touch(int slot) {
+        segment(slot).putLong(offset(slot) + KEY_SIZE, ++tick);
+    }
+}
@@ -0,0 +1,47 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "embedding.cache")
+public class EmbeddingCacheProperties {
+
+    private boolean enabled = false;
+
+    private String path = "embedding-cache.bin";
+
+    private int maxEntries = 100000;
+
+    private int memoryEntries = 10000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getMemoryEntries() {
+        return memoryEntries;
+    }
+
+    public void setMemoryEntries(int memoryEntries) {
+        this.memoryEntries = memoryEntries;
+    }
+}
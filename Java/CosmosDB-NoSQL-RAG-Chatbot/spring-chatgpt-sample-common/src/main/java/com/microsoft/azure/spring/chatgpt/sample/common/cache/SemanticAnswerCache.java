@@ -0,0 +1,135 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.cache;
+
+import com.azure.ai.openai.models.ChatCompletions;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorMath;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches chat answers by question embedding. A question whose embedding is within the cosine similarity threshold of
+ * a cached one gets the cached answer without running retrieval or a chat completion.
+ * <p>
+ * Entries expire after the TTL, the least recently used entry is evicted beyond {@code maxEntries}, and every entry
+ * built from a chunk is dropped when that chunk is saved or removed through {@link #invalidate}.
+ */
+public class SemanticAnswerCache {
+
+    private final double similarityThreshold;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SemanticAnswerCache(double similarityThreshold, Duration ttl, int maxEntries) {
+        this.similarityThreshold = similarityThreshold;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the answer of the most similar cached question above the threshold, or null.
+     */
+    public synchronized ChatCompletions get(float[] questionEmbedding) {
+        var query = normalize(questionEmbedding);
+        long now = System.nanoTime();
+        Entry best = null;
+        double bestSimilarity = similarityThreshold;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            var entry = it.next();
+            if (now - entry.createdNanos > ttlNanos) {
+                it.remove();
+                continue;
+            }
+            double similarity = dot(query, entry.embedding);
+            if (similarity >= bestSimilarity) {
+                best = entry;
+                bestSimilarity = similarity;
+            }
+        }
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        // refresh the LRU position
+        entries.get(best.id);
+        hits.increment();
+        return best.answer;
+    }
+
+    public synchronized void put(float[] questionEmbedding, Collection<String> docIds, ChatCompletions answer) {
+        long id = nextId.incrementAndGet();
+        entries.put(id, new Entry(id, normalize(questionEmbedding), new HashSet<>(docIds), answer, System.nanoTime()));
+        if (entries.size() > maxEntries) {
+            var eldest = entries.keySet().iterator().next();
+            entries.remove(eldest);
+        }
+    }
+
+    /**
+     * Drops every answer that was built from one of the given chunks.
+     */
+    public synchronized void invalidate(Collection<String> docIds) {
+        entries.values().removeIf(entry -> docIds.stream().anyMatch(entry.docIds::contains));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static float[] normalize(float[] embedding) {
+        var result = embedding.clone();
+        double norm = 0;
+        for (float value : result) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < result.length; i++) {
+                result[i] *= scale;
+            }
+        }
+        return result;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        return VectorMath.dot(a, b);
+    }
+
+    private record Entry(long id, float[] embedding, HashSet<String> docIds, ChatCompletions answer,
+                         long createdNanos) {
+    }
+
+    @Override
+    public String toString() {
+        return "SemanticAnswerCache{" +
+                "entries=" + size() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                '}';
+    }
+}
@@ -0,0 +1,57 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "chat.semantic-cache")
+public class SemanticCacheProperties {
+
+    private boolean enabled = false;
+
+    private double similarityThreshold = 0.95;
+
+    private long ttlSeconds = 3600;
+
+    private int maxEntries = 1000;
+
+    private long versionCheckSeconds = 30;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSimilarityThreshold() {
+        return similarityThreshold;
+    }
+
+    public void setSimilarityThreshold(double similarityThreshold) {
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getVersionCheckSeconds() {
+        return versionCheckSeconds;
+    }
+
+    public void setVersionCheckSeconds(long versionCheckSeconds) {
+        this.versionCheckSeconds = versionCheckSeconds;
+    }
+}
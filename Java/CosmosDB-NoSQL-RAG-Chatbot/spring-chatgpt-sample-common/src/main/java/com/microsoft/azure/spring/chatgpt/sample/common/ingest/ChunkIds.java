@@ -0,0 +1,33 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Derives stable document ids from a chunk's source, see {@link IndexedFolder#source}, and content, so re-indexing an
+ * unchanged chunk produces the same id and can be skipped.
+ */
+public final class ChunkIds {
+
+    private ChunkIds() {
+    }
+
+    public static String hash(String text) {
+        return sha256(text);
+    }
+
+    public static String id(String source, String hash) {
+        return sha256(source + '\n' + hash);
+    }
+
+    private static String sha256(String value) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.reader.SimpleFolderReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the vector store in step with a folder. First indexes the files added or changed since the manifest was last
+ * saved and removes the chunks of files deleted since, then does the same for the changes the {@link WatchService}
+ * reports, until the thread is interrupted.
+ * <p>
+ * A file whose size and modification time are those in the manifest is taken as unchanged; otherwise its content hash
+ * decides. Changes are recorded in the manifest once a pipeline run indexed them without failures, so after a crash or
+ * a failure they are indexed again, and only the chunks that didn't make it are embedded. Failed changes are retried
+ * every {@link #RETRY_INTERVAL}.
+ */
+public class FolderWatcher {
+
+    private static final Duration RETRY_INTERVAL = Duration.ofMinutes(1);
+
+    public FolderWatcher(IndexedFolder folder, Path manifestPath, SimpleFolderReader reader, IngestionPipeline pipeline,
+                         Duration quietPeriod) {
+        this.folder = folder;
+        this.root = folder.root();
+        this.manifestPath = manifestPath;
+        this.reader = reader;
+        this.pipeline = pipeline;
+        this.quietPeriod = quietPeriod;
+    }
+
+    private final IndexedFolder folder;
+    private final Path root;
+    private final Path manifestPath;
+    private final SimpleFolderReader reader;
+    private final IngestionPipeline pipeline;
+    private final Duration quietPeriod;
+
+    private IndexManifest manifest;
+
+    // files and deleted files of a run that had failures
+    private final Set<Path> retry = new LinkedHashSet<>();
+
+    private Logger log = Logger.getLogger(FolderWatcher.class.getName());
+
+    public void run() throws IOException, InterruptedException {
+        manifest = IndexManifest.load(manifestPath, folder.name());
+        log.info("Loaded the manifest " + manifestPath + " with " + manifest.getFiles().size() + " files");
+        try (WatchService watchService = root.getFileSystem().newWatchService()) {
+            // before the first scan, so that changes made during it are seen
+            register(watchService, root);
+            sync(reader.listFiles(), true);
+            log.info("Watching " + root + " for changes");
+            while (true) {
+                var changed = new LinkedHashSet<Path>();
+                var key = retry.isEmpty() ? watchService.take()
+                        : watchService.poll(RETRY_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                boolean overflow = false;
+                // a file being written reports many events; wait until the folder is quiet
+                while (key != null) {
+                    overflow |= collect(watchService, key, changed);
+                    key = watchService.poll(quietPeriod.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                changed.addAll(retry);
+                retry.clear();
+                if (overflow) {
+                    log.warning("Missed some changes under " + root + ", scanning it again");
+                    sync(reader.listFiles(), true);
+                } else {
+                    sync(changed, false);
+                }
+            }
+        }
+    }
+
+    private void register(WatchService watchService, Path folder) throws IOException {
+        try (Stream<Path> folders = Files.walk(folder)) {
+            for (var path : (Iterable<Path>) folders.filter(Files::isDirectory)::iterator) {
+                path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+    }
+
+    // returns whether events were lost
+    private boolean collect(WatchService watchService, WatchKey key, Set<Path> changed) throws IOException {
+        boolean overflow = false;
+        var folder = (Path) key.watchable();
+        for (var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            var path = folder.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // a folder moved in reports no event for the files already in it
+                register(watchService, path);
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile).forEach(changed::add);
+                }
+            } else {
+                changed.add(path);
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+
+    /**
+     * Indexes the given files that changed, and removes the chunks of files in the manifest that no longer exist:
+     * every one of them when {@code complete}, as {@code paths} then lists every file, or else those among or under
+     * {@code paths}.
+     */
+    private void sync(Collection<Path> paths, boolean complete) throws IOException, InterruptedException {
+        var files = manifest.getFiles();
+        var changed = new ArrayList<Path>();
+        var entries = new HashMap<String, IndexManifest.Entry>();
+        var deleted = new LinkedHashSet<String>();
+        boolean touched = false;
+        for (var path : paths) {
+            String source = folder.source(path);
+            if (!Files.exists(path)) {
+                // a deleted file, or all files under a deleted folder
+                for (var indexed : files.keySet()) {
+                    if (indexed.equals(source) || indexed.startsWith(source + "/")) {
+                        deleted.add(indexed);
+                    }
+                }
+                continue;
+            }
+            if (!Files.isRegularFile(path) || !reader.isSupported(path)) {
+                continue;
+            }
+            var indexed = files.get(source);
+            try {
+                if (indexed != null && indexed.matches(path)) {
+                    continue;
+                }
+                var entry = IndexManifest.Entry.of(path);
+                if (indexed != null && indexed.getHash().equals(entry.getHash())) {
+                    // touched, not changed
+                    files.put(source, entry);
+                    touched = true;
+                    continue;
+                }
+                changed.add(path);
+                entries.put(source, entry);
+            } catch (IOException e) {
+                // deleted or replaced while being looked at, the watch service reports it
+                log.warning("Failed to read " + path + ": " + e);
+            }
+        }
+        if (complete) {
+            var present = new LinkedHashSet<String>();
+            paths.forEach(path -> present.add(folder.source(path)));
+            files.keySet().stream().filter(source -> !present.contains(source)).forEach(deleted::add);
+        }
+        if (!changed.isEmpty() || !deleted.isEmpty()) {
+            log.info("Indexing " + changed.size() + " changed files, removing " + deleted.size() + " deleted files");
+            var stats = pipeline.update(folder, changed, List.copyOf(deleted));
+            log.info("Indexed changes in " + stats.getElapsed().toMillis() + "ms, " + stats);
+            if (stats.getFailures() == 0) {
+                files.putAll(entries);
+                deleted.forEach(files::remove);
+            } else {
+                // a failed run also skips removing chunks that are no longer produced
+                log.warning("Indexing had " + stats.getFailures() + " failures, retrying in " + RETRY_INTERVAL);
+                retry.addAll(changed);
+                deleted.forEach(source -> retry.add(folder.file(source)));
+                if (!touched) {
+                    return;
+                }
+            }
+        } else if (!touched) {
+            return;
+        }
+        manifest.save(manifestPath);
+    }
+}
@@ -0,0 +1,141 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The files of a folder whose chunks are all in the vector store, with the size, modification time and content hash
+ * each had when it was indexed. Saved to a JSON file after every change, replacing it atomically, so an interrupted
+ * watch resumes by indexing only what changed since.
+ */
+public class IndexManifest {
+
+    /**
+     * A file as it was when indexed.
+     */
+    public static class Entry {
+
+        private long size;
+
+        private long modified;
+
+        private String hash;
+
+        public Entry() {}
+
+        public Entry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        /**
+         * Reads the file to hash its content, a block at a time.
+         */
+        public static Entry of(Path file) throws IOException {
+            long size = Files.size(file);
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return new Entry(size, modified, HexFormat.of().formatHex(digest.digest()));
+        }
+
+        /**
+         * Whether the file has the size and modification time it had when indexed, taken as unchanged without
+         * reading it.
+         */
+        public boolean matches(Path file) throws IOException {
+            return size == Files.size(file) && modified == Files.getLastModifiedTime(file).toMillis();
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        public void setModified(long modified) {
+            this.modified = modified;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private String root;
+
+    // by source, see IndexedFolder#source
+    private Map<String, Entry> files = new TreeMap<>();
+
+    public IndexManifest() {}
+
+    public IndexManifest(String root) {
+        this.root = root;
+    }
+
+    /**
+     * Loads the manifest of the folder with the given name, see {@link IndexedFolder#name()}, or returns an empty one
+     * when the file doesn't exist or was written for another folder.
+     */
+    public static IndexManifest load(Path path, String root) throws IOException {
+        if (!Files.exists(path)) {
+            return new IndexManifest(root);
+        }
+        var manifest = MAPPER.readValue(path.toFile(), IndexManifest.class);
+        return root.equals(manifest.getRoot()) ? manifest : new IndexManifest(root);
+    }
+
+    public void save(Path path) throws IOException {
+        var temp = path.resolveSibling(path.getFileName() + ".tmp");
+        MAPPER.writeValue(temp.toFile(), this);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    public void setRoot(String root) {
+        this.root = root;
+    }
+
+    public Map<String, Entry> getFiles() {
+        return files;
+    }
+
+    public void setFiles(Map<String, Entry> files) {
+        this.files = new TreeMap<>(files);
+    }
+}
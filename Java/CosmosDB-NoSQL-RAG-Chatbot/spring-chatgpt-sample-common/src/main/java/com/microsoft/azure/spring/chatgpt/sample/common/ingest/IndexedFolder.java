@@ -0,0 +1,47 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import java.nio.file.Path;
+
+/**
+ * A folder being indexed, which names the sources of the chunks of its files: the source of a file is the name of the
+ * folder followed by the path of the file relative to it. Chunk ids are derived from their source, so they stay the
+ * same when the folder is moved, or indexed from another machine into the same container.
+ *
+ * @param root absolute and normalized
+ * @param name the name of the folder in the sources, unique among the folders indexed into a container
+ */
+public record IndexedFolder(Path root, String name) {
+
+    /**
+     * @param name the name of the folder in the sources; the name of the folder itself when {@code null} or blank
+     */
+    public static IndexedFolder of(Path root, String name) {
+        var absoluteRoot = root.toAbsolutePath().normalize();
+        if (name == null || name.isBlank()) {
+            name = absoluteRoot.getFileName() != null ? absoluteRoot.getFileName().toString() : "root";
+        }
+        return new IndexedFolder(absoluteRoot, name.replace('\\', '/').replaceAll("/+$", ""));
+    }
+
+    /**
+     * Source of a file under the folder, also the prefix of the sources of the files under it when it is a folder.
+     */
+    public String source(Path file) {
+        var relative = root.relativize(file.toAbsolutePath().normalize()).toString().replace('\\', '/');
+        return relative.isEmpty() ? name : name + "/" + relative;
+    }
+
+    /**
+     * Prefix of the sources of every file under the folder.
+     */
+    public String prefix() {
+        return name + "/";
+    }
+
+    /**
+     * The file with the given source, the reverse of {@link #source(Path)}.
+     */
+    public Path file(String source) {
+        return source.equals(name) ? root : root.resolve(source.substring(prefix().length()));
+    }
+}
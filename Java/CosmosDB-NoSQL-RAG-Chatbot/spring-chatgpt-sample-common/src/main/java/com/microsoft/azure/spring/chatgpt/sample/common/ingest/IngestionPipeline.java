@@ -0,0 +1,343 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.EmbeddingBatcher;
+import com.microsoft.azure.spring.chatgpt.sample.common.TextSplitter;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.VectorStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Indexes files through four stages connected by bounded queues, so that reading, embedding and writing overlap:
+ * <ol>
+ *     <li>read and split files on a fixed CPU pool,</li>
+ *     <li>pack chunks into token-budgeted batches on a single dispatcher thread,</li>
+ *     <li>embed batches on virtual threads, at most {@code embedConcurrency} calls in flight,</li>
+ *     <li>write embedded chunks to the vector store in bulk on a fixed pool of writer threads.</li>
+ * </ol>
+ * A full queue blocks the stage feeding it, which caps the memory used on large folders.
+ */
+public class IngestionPipeline {
+
+    private static final Chunk END_OF_CHUNKS = new Chunk(null, null, null, null, 0);
+
+    private static final CosmosEntity END_OF_ENTITIES = new CosmosEntity();
+
+    public IngestionPipeline(TextSplitter splitter, EmbeddingBatcher batcher, VectorStore vectorStore,
+                             IngestionProperties properties) {
+        this.splitter = splitter;
+        this.batcher = batcher;
+        this.vectorStore = vectorStore;
+        this.properties = properties;
+    }
+
+    private final TextSplitter splitter;
+    private final EmbeddingBatcher batcher;
+    private final VectorStore vectorStore;
+    private final IngestionProperties properties;
+
+    private final AtomicInteger dimensions = new AtomicInteger();
+
+    private Logger log = Logger.getLogger(IngestionPipeline.class.getName());
+
+    /**
+     * Indexes the files found under the folder. Chunks whose id is already stored are skipped without being embedded,
+     * and stored chunks of the folder that are no longer produced are deleted once every file was read.
+     */
+    public IngestionStats run(IndexedFolder folder, List<Path> files) throws InterruptedException {
+        String sourcePrefix = folder.prefix();
+        // one query for the ids and hashes of everything indexed under the folder before
+        Map<String, String> existing = vectorStore.getHashes(sourcePrefix);
+        log.info("Found " + existing.size() + " chunks already indexed under " + sourcePrefix);
+        return run(folder, files, existing);
+    }
+
+    /**
+     * Indexes the given files and removes the chunks of files that were deleted, leaving the chunks of every other file
+     * alone. Chunks of a given file that are no longer produced are deleted, as in {@link #run(IndexedFolder, List)}.
+     */
+    public IngestionStats update(IndexedFolder folder, List<Path> files, Collection<String> deletedSources)
+            throws InterruptedException {
+        Map<String, String> existing = new HashMap<>();
+        for (var file : files) {
+            addExisting(folder.source(file), existing);
+        }
+        for (var source : deletedSources) {
+            addExisting(source, existing);
+        }
+        return run(folder, files, existing);
+    }
+
+    // the chunks of exactly this source: the store matches by prefix, and a chunk's id is derived from its source
+    private void addExisting(String source, Map<String, String> existing) {
+        vectorStore.getHashes(source).forEach((id, hash) -> {
+            if (ChunkIds.id(source, hash).equals(id)) {
+                existing.put(id, hash);
+            }
+        });
+    }
+
+    private IngestionStats run(IndexedFolder folder, List<Path> files, Map<String, String> existing)
+            throws InterruptedException {
+        var stats = new IngestionStats();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        BlockingQueue<Chunk> chunkQueue = new ArrayBlockingQueue<>(properties.getChunkQueueCapacity());
+        BlockingQueue<CosmosEntity> writeQueue = new ArrayBlockingQueue<>(properties.getWriteQueueCapacity());
+
+        ExecutorService readPool = Executors.newFixedThreadPool(properties.getReadThreads(), namedThreads("ingest-read"));
+        ExecutorService embedPool = newVirtualThreadExecutor();
+        ExecutorService writePool = Executors.newFixedThreadPool(properties.getWriteThreads(),
+                namedThreads("ingest-write"));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(namedThreads("ingest-report"));
+        reporter.scheduleAtFixedRate(() -> log.info(stats.toString()),
+                properties.getReportIntervalSeconds(), properties.getReportIntervalSeconds(), TimeUnit.SECONDS);
+        try {
+            for (int i = 0; i < properties.getWriteThreads(); i++) {
+                writePool.execute(() -> write(writeQueue, stats));
+            }
+
+            var reads = files.stream()
+                    .map(file -> CompletableFuture.runAsync(() -> read(folder, file, existing, seen, chunkQueue, stats),
+                            readPool))
+                    .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(reads).whenComplete((ignored, e) -> putUninterruptibly(chunkQueue, END_OF_CHUNKS));
+
+            dispatch(chunkQueue, writeQueue, embedPool, stats);
+
+            // the writers stop at their end marker; if the run fails before sending them, shutdownNow interrupts them
+            writePool.shutdown();
+            writePool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+            removeOrphans(existing, seen, stats);
+        } finally {
+            readPool.shutdownNow();
+            embedPool.shutdownNow();
+            writePool.shutdownNow();
+            reporter.shutdownNow();
+        }
+        log.info("Ingestion finished in " + stats.getElapsed().toSeconds() + "s, " + stats);
+        return stats;
+    }
+
+    private void read(IndexedFolder folder, Path file, Map<String, String> existing, Set<String> seen,
+                      BlockingQueue<Chunk> chunkQueue, IngestionStats stats) {
+        String source = folder.source(file);
+        try {
+            if (Files.size(file) >= properties.getParallelSplitThresholdBytes()) {
+                // read in segments, split ahead on the fork-join pool, so a large file neither sits whole in memory
+                // nor keeps one read thread busy long after the others are done
+                try (var reader = Files.newBufferedReader(file);
+                     var textChunks = splitter.split(reader, properties.getSplitSegmentSize())) {
+                    for (var text : (Iterable<String>) textChunks::iterator) {
+                        offer(source, text, existing, seen, chunkQueue, stats);
+                    }
+                }
+            } else {
+                for (var text : splitter.split(Files.readString(file))) {
+                    offer(source, text, existing, seen, chunkQueue, stats);
+                }
+            }
+            stats.filesRead.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            stats.failures.increment();
+            log.warning("Failed to read " + file + ": " + e);
+        }
+    }
+
+    private void offer(String source, String text, Map<String, String> existing, Set<String> seen,
+                       BlockingQueue<Chunk> chunkQueue, IngestionStats stats) throws InterruptedException {
+        stats.chunksSplit.increment();
+        String hash = ChunkIds.hash(text);
+        String id = ChunkIds.id(source, hash);
+        // the same text twice in a file maps to the same id, and a stored id means unchanged content
+        if (!seen.add(id) || existing.containsKey(id)) {
+            stats.chunksUnchanged.increment();
+            return;
+        }
+        chunkQueue.put(new Chunk(id, hash, source, text, splitter.countTokens(text)));
+    }
+
+    private void dispatch(BlockingQueue<Chunk> chunkQueue, BlockingQueue<CosmosEntity> writeQueue,
+                          ExecutorService embedPool, IngestionStats stats) throws InterruptedException {
+        int concurrency = properties.getEmbedConcurrency();
+        var inFlight = new Semaphore(concurrency);
+        var batch = new ArrayList<Chunk>();
+        int batchTokens = 0;
+        while (true) {
+            var chunk = chunkQueue.take();
+            boolean end = chunk == END_OF_CHUNKS;
+            if (!batch.isEmpty() && (end || batcher.isFull(batch.size(), batchTokens, chunk.tokens()))) {
+                inFlight.acquire();
+                var chunks = batch;
+                int tokens = batchTokens;
+                embedPool.execute(() -> {
+                    try {
+                        embed(chunks, tokens, writeQueue, stats);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                batch = new ArrayList<>();
+                batchTokens = 0;
+            }
+            if (end) {
+                break;
+            }
+            batch.add(chunk);
+            batchTokens += chunk.tokens();
+        }
+        // wait for every in-flight embedding call before telling the writers to stop
+        inFlight.acquire(concurrency);
+        for (int i = 0; i < properties.getWriteThreads(); i++) {
+            writeQueue.put(END_OF_ENTITIES);
+        }
+    }
+
+    private void embed(List<Chunk> chunks, int tokens, BlockingQueue<CosmosEntity> writeQueue, IngestionStats stats) {
+        try {
+            var embeddings = batcher.embed(chunks.stream().map(Chunk::text).toList(), tokens);
+            stats.embeddingCalls.increment();
+            if (embeddings.size() != chunks.size()) {
+                throw new IllegalStateException("Got " + embeddings.size() + " embeddings for " + chunks.size()
+                        + " chunks.");
+            }
+            // checked before any is queued, so a failure here never leaves part of the batch written and counted failed
+            var entities = new ArrayList<CosmosEntity>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                var chunk = chunks.get(i);
+                var embedding = embeddings.get(i);
+                // the first embedding sets the size of every other one; the store can't search mixed sizes
+                if (!dimensions.compareAndSet(0, embedding.length) && dimensions.get() != embedding.length) {
+                    stats.failures.increment();
+                    log.warning("Embedding of " + chunk.id() + " has " + embedding.length + " dimensions instead of "
+                            + dimensions.get() + ", skipping it.");
+                    continue;
+                }
+                entities.add(new CosmosEntity(chunk.id(), chunk.hash(), chunk.text(), chunk.source(), chunk.tokens(),
+                        embedding));
+            }
+            stats.chunksEmbedded.add(entities.size());
+            for (var entity : entities) {
+                writeQueue.put(entity);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            stats.failures.add(chunks.size());
+            log.warning("Failed to embed a batch of " + chunks.size() + " chunks: " + e);
+        }
+    }
+
+    private void write(BlockingQueue<CosmosEntity> writeQueue, IngestionStats stats) {
+        var batch = new ArrayList<CosmosEntity>(properties.getWriteBatchSize());
+        try {
+            boolean end = false;
+            while (!end) {
+                // block for the first entity, then take whatever else is already waiting
+                batch.add(writeQueue.take());
+                writeQueue.drainTo(batch, properties.getWriteBatchSize() - 1);
+                int endIndex = batch.indexOf(END_OF_ENTITIES);
+                if (endIndex >= 0) {
+                    // entities after the marker belong to other writers
+                    for (var entity : batch.subList(endIndex + 1, batch.size())) {
+                        writeQueue.put(entity);
+                    }
+                    batch.subList(endIndex, batch.size()).clear();
+                    end = true;
+                }
+                if (!batch.isEmpty()) {
+                    save(batch, stats);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void save(List<CosmosEntity> batch, IngestionStats stats) {
+        try {
+            var result = vectorStore.saveDocuments(batch);
+            stats.chunksWritten.add(result.getSucceeded().size());
+            stats.failures.add(result.getFailed().size());
+        } catch (Exception e) {
+            stats.failures.add(batch.size());
+            log.warning("Failed to save " + batch.size() + " documents to the vector store: " + e);
+        }
+    }
+
+    private void removeOrphans(Map<String, String> existing, Set<String> seen, IngestionStats stats) {
+        var orphans = existing.keySet().stream().filter(id -> !seen.contains(id)).toList();
+        if (orphans.isEmpty()) {
+            return;
+        }
+        if (stats.getFailures() > 0) {
+            // a file that failed to read would look like it had no chunks left
+            log.warning("Skipping removal of " + orphans.size() + " stale chunks because the run had failures.");
+            return;
+        }
+        var result = vectorStore.removeDocuments(orphans);
+        stats.chunksDeleted.add(result.getSucceeded().size());
+        stats.failures.add(result.getFailed().size());
+    }
+
+    private static void putUninterruptibly(BlockingQueue<Chunk> queue, Chunk chunk) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(chunk);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Uses a virtual thread per embedding call when running on Java 21+, and falls back to a cached pool of
+     * platform threads on Java 17, which the project still targets. Concurrency is bounded by the dispatcher either way.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(namedThreads("ingest-embed"));
+        }
+    }
+
+    private record Chunk(String id, String hash, String source, String text, int tokens) {
+    }
+}
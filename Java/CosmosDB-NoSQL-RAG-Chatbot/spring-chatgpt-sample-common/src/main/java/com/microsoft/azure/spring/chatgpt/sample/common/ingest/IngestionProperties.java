@@ -0,0 +1,129 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "ingestion")
+public class IngestionProperties {
+
+    private int readThreads = Runtime.getRuntime().availableProcessors();
+
+    private int chunkQueueCapacity = 1000;
+
+    private int embedConcurrency = 4;
+
+    private int writeQueueCapacity = 1000;
+
+    private int writeThreads = 2;
+
+    private int writeBatchSize = 500;
+
+    private int reportIntervalSeconds = 10;
+
+    private long parallelSplitThresholdBytes = 4_000_000;
+
+    private int splitSegmentSize = 1_000_000;
+
+    private long watchQuietPeriodMillis = 2000;
+
+    private String sourceName;
+
+    public int getReadThreads() {
+        return readThreads;
+    }
+
+    public void setReadThreads(int readThreads) {
+        this.readThreads = readThreads;
+    }
+
+    public int getChunkQueueCapacity() {
+        return chunkQueueCapacity;
+    }
+
+    public void setChunkQueueCapacity(int chunkQueueCapacity) {
+        this.chunkQueueCapacity = chunkQueueCapacity;
+    }
+
+    public int getEmbedConcurrency() {
+        return embedConcurrency;
+    }
+
+    public void setEmbedConcurrency(int embedConcurrency) {
+        this.embedConcurrency = embedConcurrency;
+    }
+
+    public int getWriteQueueCapacity() {
+        return writeQueueCapacity;
+    }
+
+    public void setWriteQueueCapacity(int writeQueueCapacity) {
+        this.writeQueueCapacity = writeQueueCapacity;
+    }
+
+    public int getWriteThreads() {
+        return writeThreads;
+    }
+
+    public void setWriteThreads(int writeThreads) {
+        this.writeThreads = writeThreads;
+    }
+
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public void setWriteBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    public int getReportIntervalSeconds() {
+        return reportIntervalSeconds;
+    }
+
+    public void setReportIntervalSeconds(int reportIntervalSeconds) {
+        this.reportIntervalSeconds = reportIntervalSeconds;
+    }
+
+    /**
+     * Size in bytes from which a file is read in segments that are split in parallel, see
+     * {@link com.microsoft.azure.spring.chatgpt.sample.common.TextSplitter#splitParallel(String, int, int)}. The two
+     * paths may end chunks at different places, so changing the threshold can change the chunks, and the ids, of the
+     * files it moves from one path to the other: they are embedded again on the next run.
+     */
+    public long getParallelSplitThresholdBytes() {
+        return parallelSplitThresholdBytes;
+    }
+
+    public void setParallelSplitThresholdBytes(long parallelSplitThresholdBytes) {
+        this.parallelSplitThresholdBytes = parallelSplitThresholdBytes;
+    }
+
+    /**
+     * Size of the segments in characters.
+     */
+    public int getSplitSegmentSize() {
+        return splitSegmentSize;
+    }
+
+    public void setSplitSegmentSize(int splitSegmentSize) {
+        this.splitSegmentSize = splitSegmentSize;
+    }
+
+    public long getWatchQuietPeriodMillis() {
+        return watchQuietPeriodMillis;
+    }
+
+    public void setWatchQuietPeriodMillis(long watchQuietPeriodMillis) {
+        this.watchQuietPeriodMillis = watchQuietPeriodMillis;
+    }
+
+    /**
+     * Name of the indexed folder in the sources of its chunks; the name of the folder itself when not set.
+     */
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+}
@@ -0,0 +1,79 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live throughput counters of an {@link IngestionPipeline} run, updated concurrently by every stage.
+ */
+public class IngestionStats {
+
+    private final long startNanos = System.nanoTime();
+
+    final LongAdder filesRead = new LongAdder();
+
+    final LongAdder chunksSplit = new LongAdder();
+
+    final LongAdder chunksUnchanged = new LongAdder();
+
+    final LongAdder embeddingCalls = new LongAdder();
+
+    final LongAdder chunksEmbedded = new LongAdder();
+
+    final LongAdder chunksWritten = new LongAdder();
+
+    final LongAdder chunksDeleted = new LongAdder();
+
+    final LongAdder failures = new LongAdder();
+
+    public long getFilesRead() {
+        return filesRead.sum();
+    }
+
+    public long getChunksSplit() {
+        return chunksSplit.sum();
+    }
+
+    public long getChunksUnchanged() {
+        return chunksUnchanged.sum();
+    }
+
+    public long getEmbeddingCalls() {
+        return embeddingCalls.sum();
+    }
+
+    public long getChunksEmbedded() {
+        return chunksEmbedded.sum();
+    }
+
+    public long getChunksWritten() {
+        return chunksWritten.sum();
+    }
+
+    public long getChunksDeleted() {
+        return chunksDeleted.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public Duration getElapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        double seconds = Math.max(getElapsed().toMillis(), 1) / 1000.0;
+        return String.format("files read: %d (%.1f/s), chunks split: %d (%.1f/s), chunks unchanged: %d, "
+                        + "embedding calls: %d, chunks embedded: %d (%.1f/s), chunks written: %d (%.1f/s), "
+                        + "chunks deleted: %d, failures: %d",
+                getFilesRead(), getFilesRead() / seconds,
+                getChunksSplit(), getChunksSplit() / seconds,
+                getChunksUnchanged(),
+                getEmbeddingCalls(),
+                getChunksEmbedded(), getChunksEmbedded() / seconds,
+                getChunksWritten(), getChunksWritten() / seconds,
+                getChunksDeleted(), getFailures());
+    }
+}
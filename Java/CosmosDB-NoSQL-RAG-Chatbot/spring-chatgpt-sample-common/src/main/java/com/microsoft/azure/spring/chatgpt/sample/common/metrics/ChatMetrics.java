@@ -0,0 +1,154 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters of the RAG request path. Timers and distributions publish percentile histograms, so percentiles
+ * such as p99 can be computed, and alerted on, across instances.
+ * <ul>
+ * <li>{@code chat.requests}: whole chat requests, tagged with {@code stream} and an {@code outcome} of
+ * {@code answered}, {@code cached} or {@code error}</li>
+ * <li>{@code chat.stage}: each step of a request, tagged with its {@code stage}: {@code embedding},
+ * {@code cache}, {@code search}, {@code rerank}, {@code prompt} and {@code completion}</li>
+ * <li>{@code openai.tokens}: tokens used by OpenAI calls, tagged with a {@code type} of {@code embedding},
+ * {@code prompt} or {@code completion}</li>
+ * <li>{@code chat.retrieved.chunks}, {@code chat.prompt.chunks} and {@code chat.prompt.tokens}: chunks returned by
+ * the search, chunks put in the prompt, and the tokens of the prompt as counted before it is sent</li>
+ * <li>{@code chat.history.saved.tokens}: prompt tokens left out by compacting the conversation</li>
+ * </ul>
+ */
+public class ChatMetrics {
+
+    public static final String EMBEDDING = "embedding";
+    public static final String CACHE = "cache";
+    public static final String SEARCH = "search";
+    public static final String RERANK = "rerank";
+    public static final String PROMPT = "prompt";
+    public static final String COMPLETION = "completion";
+
+    public static final String ANSWERED = "answered";
+    public static final String CACHED = "cached";
+    public static final String ERROR = "error";
+
+    /**
+     * Records nothing, for clients and planners used without a registry, such as in the CLI.
+     */
+    public static final ChatMetrics NONE = new ChatMetrics(new CompositeMeterRegistry());
+
+    public ChatMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.retrievedChunks = DistributionSummary.builder("chat.retrieved.chunks")
+                .description("Chunks returned by the vector search")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.promptChunks = DistributionSummary.builder("chat.prompt.chunks")
+                .description("Retrieved chunks put in the prompt")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.promptTokens = DistributionSummary.builder("chat.prompt.tokens")
+                .description("Tokens of the prompt sent for a chat completion")
+                .baseUnit("tokens")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.historySavedTokens = Counter.builder("chat.history.saved.tokens")
+                .description("Prompt tokens left out by compacting the conversation")
+                .baseUnit("tokens")
+                .register(registry);
+        this.embeddingTokens = tokens(EMBEDDING);
+        this.completionPromptTokens = tokens(PROMPT);
+        this.completionTokens = tokens(COMPLETION);
+    }
+
+    private final MeterRegistry registry;
+
+    private final DistributionSummary retrievedChunks;
+
+    private final DistributionSummary promptChunks;
+
+    private final DistributionSummary promptTokens;
+
+    private final Counter historySavedTokens;
+
+    private final Counter embeddingTokens;
+
+    private final Counter completionPromptTokens;
+
+    private final Counter completionTokens;
+
+    private final Map<String, Timer> stages = new ConcurrentHashMap<>();
+
+    // by stream and outcome
+    private final Map<String, Timer> requests = new ConcurrentHashMap<>();
+
+    public Timer stage(String stage) {
+        return stages.computeIfAbsent(stage, name -> Timer.builder("chat.stage")
+                .description("Time spent in a step of a chat request")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public <T> T time(String stage, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            recordStage(stage, System.nanoTime() - start);
+        }
+    }
+
+    public void recordStage(String stage, long nanos) {
+        stage(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRequest(boolean stream, String outcome, long nanos) {
+        requests.computeIfAbsent(stream + "/" + outcome, key -> Timer.builder("chat.requests")
+                        .description("Time to answer a chat request")
+                        .tag("stream", String.valueOf(stream))
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRetrieved(int chunks) {
+        retrievedChunks.record(chunks);
+    }
+
+    public void recordPrompt(int tokens, int chunks) {
+        promptTokens.record(tokens);
+        promptChunks.record(chunks);
+    }
+
+    public void recordHistorySaved(int tokens) {
+        if (tokens > 0) {
+            historySavedTokens.increment(tokens);
+        }
+    }
+
+    public void recordEmbeddingTokens(int tokens) {
+        embeddingTokens.increment(tokens);
+    }
+
+    public void recordCompletionTokens(int promptTokens, int completionTokens) {
+        completionPromptTokens.increment(promptTokens);
+        this.completionTokens.increment(completionTokens);
+    }
+
+    private Counter tokens(String type) {
+        return Counter.builder("openai.tokens")
+                .description("Tokens used by OpenAI calls")
+                .baseUnit("tokens")
+                .tag("type", type)
+                .register(registry);
+    }
+}
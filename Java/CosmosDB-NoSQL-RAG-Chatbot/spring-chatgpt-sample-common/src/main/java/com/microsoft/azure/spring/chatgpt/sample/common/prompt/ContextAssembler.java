@@ -0,0 +1,153 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.prompt;
+
+import com.azure.ai.openai.models.ChatMessage;
+import com.azure.ai.openai.models.ChatRole;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Fills the prompt with as many retrieved chunks as fit in a token budget: the context window of the chat model, less
+ * the tokens of the conversation, the question and the template and those reserved for the answer, and no more than
+ * {@link PromptProperties#getMaxContextTokens()}.
+ * <p>
+ * Chunks are taken in the order given, best match first. A chunk with the hash of one already taken, or that mostly
+ * overlaps one, adds nothing and is dropped; a chunk that doesn't fit in what is left of the budget is skipped for the
+ * smaller ones after it. Chunks use the token count stored at ingestion, and are only encoded when it is missing.
+ */
+public class ContextAssembler {
+
+    /**
+     * The messages to send, with the tokens they take and the number of chunks in the prompt.
+     */
+    public record Prompt(List<ChatMessage> messages, int tokens, int chunks) {
+    }
+
+    // the role and delimiters of each message, and the start of the reply, in the chat format of OpenAI models
+    private static final int TOKENS_PER_MESSAGE = 4;
+    private static final int TOKENS_PER_REPLY = 3;
+
+    // the newline between two chunks
+    private static final int TOKENS_PER_SEPARATOR = 1;
+
+    // a chunk is dropped when at least this share of its text is already in the context
+    private static final double MAX_OVERLAP = 0.5;
+
+    // shortest common text between two chunks that counts as an overlap
+    private static final int MIN_OVERLAP_CHARS = 32;
+
+    public ContextAssembler(ToIntFunction<String> tokenCounter, PromptProperties properties) {
+        this.tokenCounter = tokenCounter;
+        this.properties = properties;
+    }
+
+    private final ToIntFunction<String> tokenCounter;
+
+    private final PromptProperties properties;
+
+    /**
+     * Replaces the last message, the question, with the prompt holding the chunks that fit in the budget.
+     */
+    public List<ChatMessage> withContext(List<ChatMessage> messages, List<CosmosEntity> candidates, String question) {
+        return assemble(messages, candidates, question).messages();
+    }
+
+    /**
+     * Same as {@link #withContext}, and also returns the tokens of the messages, counted with the stored token counts
+     * of the chunks, and the number of chunks used.
+     */
+    public Prompt assemble(List<ChatMessage> messages, List<CosmosEntity> candidates, String question) {
+        var history = messages.subList(0, messages.size() - 1);
+        int promptTokens = countTokens(history)
+                + countTokens(new ChatMessage(ChatRole.USER).setContent(PromptTemplate.formatWithContext(List.of(),
+                question)))
+                + TOKENS_PER_REPLY;
+        int budget = Math.min(properties.getMaxContextTokens(),
+                properties.getContextWindow() - properties.getAnswerTokens() - promptTokens);
+        var selected = selectCounted(candidates, Math.max(budget, 0));
+        var prompt = PromptTemplate.formatWithContext(selected.texts(), question);
+        var processedMessages = new ArrayList<>(history);
+        processedMessages.add(new ChatMessage(ChatRole.USER).setContent(prompt));
+        return new Prompt(processedMessages, promptTokens + selected.tokens(), selected.texts().size());
+    }
+
+    /**
+     * Texts of the chunks to put in a context of at most {@code budget} tokens, in the order of the candidates.
+     */
+    public List<String> select(List<CosmosEntity> candidates, int budget) {
+        return selectCounted(candidates, budget).texts();
+    }
+
+    private record Selection(List<String> texts, int tokens) {
+    }
+
+    private Selection selectCounted(List<CosmosEntity> candidates, int budget) {
+        var selected = new ArrayList<String>();
+        var hashes = new HashSet<String>();
+        int left = budget;
+        for (var candidate : candidates) {
+            String text = candidate.getText();
+            if (text == null || text.isEmpty() || (candidate.getHash() != null && !hashes.add(candidate.getHash()))) {
+                continue;
+            }
+            int tokens = (candidate.getTokens() != null ? candidate.getTokens() : tokenCounter.applyAsInt(text))
+                    + (selected.isEmpty() ? 0 : TOKENS_PER_SEPARATOR);
+            if (tokens > left || overlapsSelected(text, selected)) {
+                continue;
+            }
+            selected.add(text);
+            left -= tokens;
+        }
+        return new Selection(selected, budget - left);
+    }
+
+    /**
+     * Tokens the messages take in a chat completion request.
+     */
+    public int countTokens(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (var message : messages) {
+            tokens += countTokens(message);
+        }
+        return tokens;
+    }
+
+    public int countTokens(ChatMessage message) {
+        return TOKENS_PER_MESSAGE + (message.getContent() != null ? tokenCounter.applyAsInt(message.getContent()) : 0);
+    }
+
+    private static boolean overlapsSelected(String text, List<String> selected) {
+        for (var other : selected) {
+            int common;
+            if (other.contains(text)) {
+                common = text.length();
+            } else if (text.contains(other)) {
+                common = other.length();
+            } else {
+                common = Math.max(overlap(other, text), overlap(text, other));
+            }
+            if (common >= text.length() * MAX_OVERLAP) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // length of the longest end of first that is also the start of second, or 0 if shorter than MIN_OVERLAP_CHARS
+    private static int overlap(String first, String second) {
+        if (second.length() < MIN_OVERLAP_CHARS) {
+            return 0;
+        }
+        String probe = second.substring(0, MIN_OVERLAP_CHARS);
+        for (int i = first.indexOf(probe); i >= 0; i = first.indexOf(probe, i + 1)) {
+            int length = first.length() - i;
+            if (length <= second.length() && first.regionMatches(i, second, 0, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,244 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.prompt;
+
+import com.azure.ai.openai.models.ChatMessage;
+import com.azure.ai.openai.models.ChatRole;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the conversation sent with each question within {@link HistoryProperties#getMaxTokens()}. System messages are
+ * always kept; of the other messages, only the most recent ones that fit are, starting at a user message.
+ * <p>
+ * With a summarizer, the turns that no longer fit are replaced by a summary of them. Summaries are made in the
+ * background and cached by the turns they cover, so a request never waits for one: it uses the summary of the longest
+ * run of its older turns already summarized, if any, and asks for the summary of all of them, built from that one and
+ * the turns after it, for the next request of the conversation.
+ */
+public class HistoryCompactor implements AutoCloseable {
+
+    /**
+     * The messages to send, and the tokens they take compared with the whole conversation.
+     */
+    public record Compaction(List<ChatMessage> messages, int originalTokens, int tokens) {
+
+        public int savedTokens() {
+            return originalTokens - tokens;
+        }
+    }
+
+    // summaries waiting for the summarizer thread; more are not asked for until it catches up
+    private static final int MAX_PENDING_SUMMARIES = 100;
+
+    private static final String SUMMARY_PREFIX = "Summary of the earlier conversation: ";
+
+    private static final String SUMMARIZE_INSTRUCTION = """
+            Summarize the conversation below in at most 150 words. Keep the facts, names, numbers and open questions \
+            needed to continue it, and leave out greetings and anything already answered in full.""";
+
+    public HistoryCompactor(ToIntFunction<ChatMessage> tokenCounter, HistoryProperties properties) {
+        this(tokenCounter, properties, null);
+    }
+
+    /**
+     * @param summarizer returns the answer of a chat completion, or null to summarize nothing
+     */
+    public HistoryCompactor(ToIntFunction<ChatMessage> tokenCounter, HistoryProperties properties,
+                            Function<List<ChatMessage>, String> summarizer) {
+        this.tokenCounter = tokenCounter;
+        this.properties = properties;
+        this.summarizer = properties.isSummarize() ? summarizer : null;
+        this.summaryExecutor = this.summarizer == null ? null : newSummaryExecutor();
+        this.summaries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > properties.getSummaryCacheEntries();
+            }
+        };
+    }
+
+    private final ToIntFunction<ChatMessage> tokenCounter;
+
+    private final HistoryProperties properties;
+
+    private final Function<List<ChatMessage>, String> summarizer;
+
+    private final ExecutorService summaryExecutor;
+
+    // by key of the turns summarized, see #keys
+    private final Map<String, String> summaries;
+
+    private final Set<String> summarizing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder savedTokens = new LongAdder();
+
+    private Logger log = Logger.getLogger(HistoryCompactor.class.getName());
+
+    /**
+     * Compacts the conversation before the last message, the question, which is always kept.
+     */
+    public Compaction compact(List<ChatMessage> messages) {
+        var question = messages.get(messages.size() - 1);
+        var pinned = new ArrayList<ChatMessage>();
+        var turns = new ArrayList<ChatMessage>();
+        int originalTokens = tokenCounter.applyAsInt(question);
+        int pinnedTokens = 0;
+        for (var message : messages.subList(0, messages.size() - 1)) {
+            int tokens = tokenCounter.applyAsInt(message);
+            originalTokens += tokens;
+            if (message.getRole() == ChatRole.SYSTEM) {
+                pinned.add(message);
+                pinnedTokens += tokens;
+            } else {
+                turns.add(message);
+            }
+        }
+
+        // the most recent turns that fit, not starting with an answer whose question is left out
+        int kept = 0;
+        int turnTokens = 0;
+        while (kept < turns.size()) {
+            int tokens = tokenCounter.applyAsInt(turns.get(turns.size() - 1 - kept));
+            if (turnTokens + tokens > properties.getMaxTokens()) {
+                break;
+            }
+            turnTokens += tokens;
+            kept++;
+        }
+        while (kept > 0 && kept < turns.size() && turns.get(turns.size() - kept).getRole() != ChatRole.USER) {
+            turnTokens -= tokenCounter.applyAsInt(turns.get(turns.size() - kept));
+            kept--;
+        }
+        if (kept == turns.size()) {
+            return new Compaction(messages, originalTokens, originalTokens);
+        }
+
+        var compacted = new ArrayList<ChatMessage>(pinned);
+        int tokens = pinnedTokens + turnTokens + tokenCounter.applyAsInt(question);
+        var dropped = turns.subList(0, turns.size() - kept);
+        var summary = summarizer != null ? summary(dropped) : null;
+        if (summary != null) {
+            compacted.add(summary);
+            tokens += tokenCounter.applyAsInt(summary);
+        }
+        compacted.addAll(turns.subList(turns.size() - kept, turns.size()));
+        compacted.add(question);
+
+        var compaction = new Compaction(compacted, originalTokens, tokens);
+        savedTokens.add(compaction.savedTokens());
+        log.info("Compacted the conversation from " + originalTokens + " to " + tokens + " prompt tokens, leaving out "
+                + dropped.size() + " messages" + (summary != null ? " for a summary" : ""));
+        return compaction;
+    }
+
+    /**
+     * Prompt tokens left out of all requests so far.
+     */
+    public long getSavedTokens() {
+        return savedTokens.sum();
+    }
+
+    // the summary of the longest run of the dropped turns already summarized, starting a summary of all of them
+    private ChatMessage summary(List<ChatMessage> dropped) {
+        var keys = keys(dropped);
+        int covered = 0;
+        String summary = null;
+        synchronized (summaries) {
+            for (int i = keys.size(); i > 0 && summary == null; i--) {
+                summary = summaries.get(keys.get(i - 1));
+                covered = summary != null ? i : 0;
+            }
+        }
+        if (covered < dropped.size()) {
+            summarize(keys.get(dropped.size() - 1), summary, dropped.subList(covered, dropped.size()));
+        }
+        return summary == null ? null : new ChatMessage(ChatRole.SYSTEM).setContent(SUMMARY_PREFIX + summary);
+    }
+
+    private void summarize(String key, String previous, List<ChatMessage> turns) {
+        if (!summarizing.add(key)) {
+            return;
+        }
+        var transcript = new StringBuilder();
+        if (previous != null) {
+            transcript.append(SUMMARY_PREFIX).append(previous).append("\n\n");
+        }
+        for (var turn : turns) {
+            transcript.append(turn.getRole()).append(": ").append(turn.getContent()).append('\n');
+        }
+        var request = List.of(new ChatMessage(ChatRole.SYSTEM).setContent(SUMMARIZE_INSTRUCTION),
+                new ChatMessage(ChatRole.USER).setContent(transcript.toString()));
+        try {
+            summaryExecutor.execute(() -> {
+                try {
+                    var summary = summarizer.apply(request);
+                    if (summary != null && !summary.isBlank()) {
+                        synchronized (summaries) {
+                            summaries.put(key, summary.strip());
+                        }
+                    }
+                } catch (Exception e) {
+                    log.warning("Failed to summarize the conversation: " + e);
+                } finally {
+                    summarizing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            summarizing.remove(key);
+        }
+    }
+
+    private static ExecutorService newSummaryExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_SUMMARIES),
+                runnable -> {
+                    var thread = new Thread(runnable, "history-summarizer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // one key per run of turns from the first, chained so each is computed from the one before
+    private static List<String> keys(List<ChatMessage> turns) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        var keys = new ArrayList<String>(turns.size());
+        byte[] previous = new byte[0];
+        for (var turn : turns) {
+            digest.update(previous);
+            digest.update(String.valueOf(turn.getRole()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(turn.getContent()).getBytes(StandardCharsets.UTF_8));
+            previous = digest.digest();
+            keys.add(HexFormat.of().formatHex(previous));
+        }
+        return keys;
+    }
+
+    @Override
+    public void close() {
+        if (summaryExecutor != null) {
+            summaryExecutor.shutdownNow();
+        }
+    }
+}
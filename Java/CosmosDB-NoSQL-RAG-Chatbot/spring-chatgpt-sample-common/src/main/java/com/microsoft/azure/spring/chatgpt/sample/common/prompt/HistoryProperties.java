@@ -0,0 +1,37 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.prompt;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "chat.history")
+public class HistoryProperties {
+
+    private int maxTokens = 1000;
+
+    private boolean summarize = false;
+
+    private int summaryCacheEntries = 1000;
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public boolean isSummarize() {
+        return summarize;
+    }
+
+    public void setSummarize(boolean summarize) {
+        this.summarize = summarize;
+    }
+
+    public int getSummaryCacheEntries() {
+        return summaryCacheEntries;
+    }
+
+    public void setSummaryCacheEntries(int summaryCacheEntries) {
+        this.summaryCacheEntries = summaryCacheEntries;
+    }
+}
@@ -0,0 +1,38 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.prompt;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "chat.prompt")
+public class PromptProperties {
+
+    // of gpt-35-turbo
+    private int contextWindow = 4096;
+
+    private int answerTokens = 800;
+
+    private int maxContextTokens = 2000;
+
+    public int getContextWindow() {
+        return contextWindow;
+    }
+
+    public void setContextWindow(int contextWindow) {
+        this.contextWindow = contextWindow;
+    }
+
+    public int getAnswerTokens() {
+        return answerTokens;
+    }
+
+    public void setAnswerTokens(int answerTokens) {
+        this.answerTokens = answerTokens;
+    }
+
+    public int getMaxContextTokens() {
+        return maxContextTokens;
+    }
+
+    public void setMaxContextTokens(int maxContextTokens) {
+        this.maxContextTokens = maxContextTokens;
+    }
+}
@@ -0,0 +1,136 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Paces calls against an Azure OpenAI deployment's tokens-per-minute (TPM) and requests-per-minute (RPM) quota.
+ * Both budgets are token buckets that refill continuously. The refill rate starts at the configured quota,
+ * is halved on every throttled (429) response and creeps back up on every successful call.
+ */
+public class AdaptiveRateLimiter {
+
+    private static final double MIN_RATE_FACTOR = 0.05;  // Never slow down below 5% of the configured quota
+    private static final double RECOVERY_STEP = 0.05;  // Rate factor regained per successful call
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final double tokensPerMinute;
+
+    private final double requestsPerMinute;
+
+    private double availableTokens;
+
+    private double availableRequests;
+
+    private double rateFactor = 1.0;
+
+    private long lastRefillNanos;
+
+    private long pausedUntilNanos;
+
+    private Logger log = Logger.getLogger(AdaptiveRateLimiter.class.getName());
+
+    public AdaptiveRateLimiter(int tokensPerMinute, int requestsPerMinute) {
+        if (tokensPerMinute <= 0 || requestsPerMinute <= 0) {
+            throw new IllegalArgumentException("tokensPerMinute and requestsPerMinute should be positive.");
+        }
+        this.tokensPerMinute = tokensPerMinute;
+        this.requestsPerMinute = requestsPerMinute;
+        this.availableTokens = tokensPerMinute;
+        this.availableRequests = requestsPerMinute;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = lastRefillNanos;
+    }
+
+    /**
+     * Blocks until one request carrying the given number of tokens fits into the current budget.
+     */
+    public void acquire(int tokens) throws InterruptedException {
+        // a single request larger than the whole bucket could never be admitted otherwise
+        double cost = Math.min(tokens, tokensPerMinute);
+        while (true) {
+            long waitNanos;
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                refill(now);
+                if (now - pausedUntilNanos >= 0 && availableTokens >= cost && availableRequests >= 1) {
+                    availableTokens -= cost;
+                    availableRequests -= 1;
+                    return;
+                }
+                waitNanos = Math.max(pausedUntilNanos - now, Math.max(
+                        nanosUntil(cost - availableTokens, tokensPerMinute),
+                        nanosUntil(1 - availableRequests, requestsPerMinute)));
+            } finally {
+                lock.unlock();
+            }
+            // sleep outside the lock so that throttling feedback from other callers is not blocked
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * Records a successful call, slowly restoring the rate towards the configured quota.
+     */
+    public void onSuccess() {
+        lock.lock();
+        try {
+            rateFactor = Math.min(1.0, rateFactor + RECOVERY_STEP);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a throttled (429) call: halves the refill rate, empties both buckets and pauses every caller
+     * for at least the server supplied retry-after interval.
+     */
+    public void onThrottled(Duration retryAfter) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            refill(now);
+            rateFactor = Math.max(MIN_RATE_FACTOR, rateFactor / 2);
+            availableTokens = 0;
+            availableRequests = 0;
+            long resumeAt = now + retryAfter.toNanos();
+            if (resumeAt - pausedUntilNanos > 0) {
+                pausedUntilNanos = resumeAt;
+            }
+            log.warning(String.format("Throttled by Azure OpenAI, pausing for %d ms at %.0f%% of the configured rate.",
+                    retryAfter.toMillis(), rateFactor * 100));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getRateFactor() {
+        lock.lock();
+        try {
+            return rateFactor;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        double elapsedMinutes = (now - lastRefillNanos) / (double) TimeUnit.MINUTES.toNanos(1);
+        lastRefillNanos = now;
+        if (elapsedMinutes <= 0) {
+            return;
+        }
+        availableTokens = Math.min(tokensPerMinute, availableTokens + elapsedMinutes * tokensPerMinute * rateFactor);
+        availableRequests = Math.min(requestsPerMinute, availableRequests + elapsedMinutes * requestsPerMinute * rateFactor);
+    }
+
+    private long nanosUntil(double missing, double perMinute) {
+        if (missing <= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(missing / (perMinute * rateFactor) * TimeUnit.MINUTES.toNanos(1));
+    }
+}
@@ -2,9 +2,10 @@ package com.microsoft.azure.spring.chatgpt.sample.common.reader;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
-import java.util.function.BiFunction;
+import java.util.stream.Stream;
 
 public class SimpleFolderReader {
 
@@ -16,21 +17,19 @@ public class SimpleFolderReader {
 
     private final List<String> allowedExts = List.of("txt", "md");
 
-    public void run(BiFunction<String, String, Void> handler) throws IOException {
-        Files.walk(Paths.get(from))
-                .filter(Files::isRegularFile)
-                .forEach(file -> {
-                    String fileName = file.getFileName().toString();
-                    String ext = getFileExtension(fileName);
-                    if (allowedExts.contains(ext)) {
-                        try {
-                            String content = Files.readString(file);
-                            handler.apply(fileName, content);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                });
+    /**
+     * Lists the supported files under the folder without reading them, so callers can read them in parallel.
+     */
+    public List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(Paths.get(from))) {
+            return files.filter(Files::isRegularFile)
+                    .filter(this::isSupported)
+                    .toList();
+        }
+    }
+
+    public boolean isSupported(Path file) {
+        return allowedExts.contains(getFileExtension(file.getFileName().toString()));
     }
 
     private static String getFileExtension(String fileName) {
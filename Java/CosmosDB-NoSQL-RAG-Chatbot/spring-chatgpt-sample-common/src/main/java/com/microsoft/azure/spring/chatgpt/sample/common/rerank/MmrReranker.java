@@ -0,0 +1,94 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.rerank;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorMath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks the final chunks from an over-fetched set of search results by Maximal Marginal Relevance: each pick is the
+ * candidate with the best {@code lambda * similarity to the query - (1 - lambda) * similarity to the closest chunk
+ * already picked}, so a chunk that repeats one already in the prompt loses to one that adds something. Candidates
+ * at least {@code duplicateThreshold} similar to a picked chunk are left out altogether.
+ * <p>
+ * Similarities are the cosine of the embeddings returned with the search results, so reranking needs no call to
+ * another service.
+ */
+public class MmrReranker {
+
+    public MmrReranker(int candidates, double lambda, double duplicateThreshold) {
+        this.candidates = candidates;
+        this.lambda = lambda;
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    private final int candidates;
+
+    private final double lambda;
+
+    private final double duplicateThreshold;
+
+    /**
+     * Number of search results to rerank.
+     */
+    public int getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Returns at most {@code k} of the candidates in the order picked, best first. Candidates must carry their
+     * embedding; if one doesn't, the first {@code k} are returned as they are.
+     */
+    public List<CosmosEntity> rerank(float[] query, List<CosmosEntity> results, int k) {
+        int n = results.size();
+        if (results.stream().anyMatch(doc -> doc.getEmbedding() == null)) {
+            return results.subList(0, Math.min(k, n));
+        }
+        float queryNorm = VectorMath.norm(query);
+        float[] norms = new float[n];
+        double[] relevance = new double[n];
+        // similarity to the closest picked chunk, NaN once picked or left out
+        double[] redundancy = new double[n];
+        for (int i = 0; i < n; i++) {
+            var embedding = results.get(i).getEmbedding();
+            norms[i] = VectorMath.norm(embedding);
+            relevance[i] = cosine(VectorMath.dot(query, embedding), queryNorm, norms[i]);
+        }
+
+        var picked = new ArrayList<CosmosEntity>(Math.min(k, n));
+        while (picked.size() < k) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(redundancy[i])) {
+                    continue;
+                }
+                double score = lambda * relevance[i] - (1 - lambda) * redundancy[i];
+                if (score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            picked.add(results.get(best));
+            redundancy[best] = Double.NaN;
+            var embedding = results.get(best).getEmbedding();
+            for (int i = 0; i < n; i++) {
+                if (Double.isNaN(redundancy[i])) {
+                    continue;
+                }
+                double similarity = cosine(VectorMath.dot(embedding, results.get(i).getEmbedding()), norms[best],
+                        norms[i]);
+                redundancy[i] = similarity >= duplicateThreshold ? Double.NaN : Math.max(redundancy[i], similarity);
+            }
+        }
+        return picked;
+    }
+
+    private static double cosine(float dot, float norm1, float norm2) {
+        return norm1 == 0 || norm2 == 0 ? 0 : dot / ((double) norm1 * norm2);
+    }
+}
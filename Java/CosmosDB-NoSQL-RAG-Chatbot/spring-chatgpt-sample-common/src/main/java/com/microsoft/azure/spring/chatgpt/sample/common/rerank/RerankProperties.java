@@ -0,0 +1,47 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.rerank;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "chat.rerank")
+public class RerankProperties {
+
+    private boolean enabled = false;
+
+    private int candidates = 20;
+
+    private double lambda = 0.7;
+
+    private double duplicateThreshold = 0.95;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+
+    public void setCandidates(int candidates) {
+        this.candidates = candidates;
+    }
+
+    public double getLambda() {
+        return lambda;
+    }
+
+    public void setLambda(double lambda) {
+        this.lambda = lambda;
+    }
+
+    public double getDuplicateThreshold() {
+        return duplicateThreshold;
+    }
+
+    public void setDuplicateThreshold(double duplicateThreshold) {
+        this.duplicateThreshold = duplicateThreshold;
+    }
+}
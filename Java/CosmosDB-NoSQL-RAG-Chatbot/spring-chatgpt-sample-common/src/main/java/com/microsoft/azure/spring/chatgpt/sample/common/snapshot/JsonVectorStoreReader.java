@@ -0,0 +1,148 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.snapshot;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the documents of a JSON vector store file, {@code {"store": {"<id>": {...}, ...}}}, one at a time, so only
+ * the document being read is held in memory.
+ */
+public class JsonVectorStoreReader implements Iterator<CosmosEntity>, Closeable {
+
+    private final ObjectMapper mapper;
+
+    private final JsonParser parser;
+
+    private CosmosEntity next;
+
+    private boolean done;
+
+    public JsonVectorStoreReader(Path path) throws IOException {
+        this.mapper = new ObjectMapper();
+        this.parser = mapper.getFactory().createParser(path.toFile());
+        try {
+            seekStore();
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    // moves the parser into the "store" object, skipping any other top-level fields
+    private void seekStore() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object at " + parser.getCurrentLocation());
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("store".equals(field)) {
+                if (value != JsonToken.START_OBJECT) {
+                    throw new IOException("Expected \"store\" to be an object at " + parser.getCurrentLocation());
+                }
+                return;
+            }
+            parser.skipChildren();
+        }
+        done = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !done) {
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public CosmosEntity next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        var doc = next;
+        next = null;
+        return doc;
+    }
+
+    private CosmosEntity readNext() throws IOException {
+        if (parser.nextToken() != JsonToken.FIELD_NAME) {
+            done = true;
+            return null;
+        }
+        String key = parser.currentName();
+        parser.nextToken();
+        var doc = mapper.readValue(parser, CosmosEntity.class);
+        if (doc.getId() == null) {
+            doc.setId(key);
+        }
+        return doc;
+    }
+
+    /**
+     * Skips documents without binding them.
+     *
+     * @return the number of documents skipped, less than {@code n} if the file ended first
+     */
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        if (next != null && n > 0) {
+            next = null;
+            skipped++;
+        }
+        while (skipped < n && !done) {
+            if (parser.nextToken() != JsonToken.FIELD_NAME) {
+                done = true;
+                break;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * Number of bytes of the file parsed so far.
+     */
+    public long getBytesRead() {
+        return parser.getCurrentLocation().getByteOffset();
+    }
+
+    /**
+     * Streams the remaining documents; closing the stream closes the reader.
+     */
+    public Stream<CosmosEntity> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+                false).onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public void close() throws IOException {
+        done = true;
+        parser.close();
+    }
+}
@@ -0,0 +1,261 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.snapshot;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Read-only view of a binary vector snapshot, mapped into memory instead of parsed, so opening it costs the same for
+ * any number of documents and only the pages that are read are loaded.
+ * <p>
+ * The file is little-endian and laid out as:
+ * <pre>
+ * header       64 bytes: magic "VSNP", version, dimensions, reserved,
+ *              count, vectors offset, string offsets offset, strings offset, strings length, tokens offset
+ * vectors      count * dimensions float32
+ * tokens       count int32, the token count of each text, -1 if unknown
+ * offsets      count * 4 + 1 longs, the start of each id, hash, text and source in the strings, then their end
+ * strings      UTF-8
+ * </pre>
+ * Snapshots are written by {@link VectorSnapshotWriter}. Version 1 snapshots, which have no tokens block, can still be
+ * read.
+ */
+public class VectorSnapshot implements Closeable {
+
+    static final int MAGIC = 0x56534E50;
+
+    static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 64;
+
+    private static final int FIELDS = 4;
+
+    private final FileChannel channel;
+
+    private final Region region;
+
+    private final int dimensions;
+
+    private final long count;
+
+    private final long vectorsOffset;
+
+    // 0 in a version 1 snapshot
+    private final long tokensOffset;
+
+    private final long offsetsOffset;
+
+    private final long stringsOffset;
+
+    private VectorSnapshot(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.region = new Region(channel);
+        if (region.size < HEADER_SIZE || region.getInt(0) != MAGIC) {
+            throw new IOException("Not a vector snapshot.");
+        }
+        int version = region.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported vector snapshot version " + region.getInt(4) + ".");
+        }
+        this.dimensions = region.getInt(8);
+        this.count = region.getLong(16);
+        this.vectorsOffset = region.getLong(24);
+        this.offsetsOffset = region.getLong(32);
+        this.stringsOffset = region.getLong(40);
+        long stringsLength = region.getLong(48);
+        this.tokensOffset = version == 1 ? 0 : region.getLong(56);
+        long vectorsEnd = vectorsOffset + count * dimensions * Float.BYTES;
+        if (stringsOffset + stringsLength != region.size || (version == 1
+                ? offsetsOffset != vectorsEnd
+                : tokensOffset != vectorsEnd || offsetsOffset != tokensOffset + count * Integer.BYTES)) {
+            throw new IOException("Truncated or corrupt vector snapshot.");
+        }
+    }
+
+    public static VectorSnapshot open(Path path) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new VectorSnapshot(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the file starts with the snapshot magic number, as opposed to, say, a JSON vector store file.
+     */
+    public static boolean isSnapshot(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until the buffer is full or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Streams the documents of a vector store file, either a snapshot or JSON, reading them as the stream is
+     * consumed. Closing the stream closes the file.
+     */
+    public static Stream<CosmosEntity> documents(Path path) throws IOException {
+        if (isSnapshot(path)) {
+            var snapshot = open(path);
+            return snapshot.stream().onClose(() -> {
+                try {
+                    snapshot.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        return new JsonVectorStoreReader(path).stream();
+    }
+
+    public long size() {
+        return count;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Copies the vector of a document out of the mapping.
+     */
+    public float[] getVector(long index) {
+        checkIndex(index);
+        float[] vector = new float[dimensions];
+        long position = vectorsOffset + index * dimensions * Float.BYTES;
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = region.getFloat(position + (long) i * Float.BYTES);
+        }
+        return vector;
+    }
+
+    public CosmosEntity get(long index) {
+        checkIndex(index);
+        return new CosmosEntity(string(index, 0), string(index, 1), string(index, 2), string(index, 3),
+                getTokens(index), getVector(index));
+    }
+
+    /**
+     * The token count of the text of a document, or null if it wasn't known when the snapshot was written.
+     */
+    public Integer getTokens(long index) {
+        checkIndex(index);
+        if (tokensOffset == 0) {
+            return null;
+        }
+        int tokens = region.getInt(tokensOffset + index * Integer.BYTES);
+        return tokens < 0 ? null : tokens;
+    }
+
+    /**
+     * Streams the documents in file order. The snapshot must stay open until the stream is consumed.
+     */
+    public Stream<CosmosEntity> stream() {
+        return stream(0);
+    }
+
+    /**
+     * Streams the documents in file order, starting at the given index.
+     */
+    public Stream<CosmosEntity> stream(long from) {
+        return LongStream.range(Math.min(from, count), count).mapToObj(this::get);
+    }
+
+    private String string(long index, int field) {
+        long slot = offsetsOffset + (index * FIELDS + field) * Long.BYTES;
+        long start = region.getLong(slot);
+        long end = region.getLong(slot + Long.BYTES);
+        if (start == end) {
+            return null;
+        }
+        return new String(region.getBytes(stringsOffset + start, (int) (end - start)), StandardCharsets.UTF_8);
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + count + " documents.");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A file mapped as consecutive segments, since a single mapping is limited to 2 GB; segments overlap by a page so
+     * a value never needs to be read across two of them.
+     */
+    private static final class Region {
+
+        private static final int SEGMENT_SHIFT = 30;
+
+        private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+        private static final long OVERLAP = 1 << 16;
+
+        private final MappedByteBuffer[] segments;
+
+        private final long size;
+
+        Region(FileChannel channel) throws IOException {
+            this.size = channel.size();
+            int n = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            this.segments = new MappedByteBuffer[n];
+            for (int i = 0; i < n; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                long length = Math.min(SEGMENT_SIZE + OVERLAP, size - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        int getInt(long position) {
+            return segment(position).getInt(offset(position));
+        }
+
+        long getLong(long position) {
+            return segment(position).getLong(offset(position));
+        }
+
+        float getFloat(long position) {
+            return segment(position).getFloat(offset(position));
+        }
+
+        byte[] getBytes(long position, int length) {
+            byte[] bytes = new byte[length];
+            for (int done = 0; done < length; ) {
+                var segment = segment(position + done);
+                int offset = offset(position + done);
+                int chunk = Math.min(length - done, segment.limit() - offset);
+                segment.get(offset, bytes, done, chunk);
+                done += chunk;
+            }
+            return bytes;
+        }
+
+        private MappedByteBuffer segment(long position) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)];
+        }
+
+        private static int offset(long position) {
+            return (int) (position & (SEGMENT_SIZE - 1));
+        }
+    }
+}
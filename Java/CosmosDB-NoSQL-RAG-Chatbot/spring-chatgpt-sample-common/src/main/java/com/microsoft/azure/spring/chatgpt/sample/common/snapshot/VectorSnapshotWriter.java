@@ -0,0 +1,217 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.snapshot;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+/**
+ * Writes documents to a file in the {@link VectorSnapshot} format, one at a time, so the number of documents is not
+ * limited by the heap.
+ * <p>
+ * Vectors are written straight to their block in the snapshot; token counts, string offsets and data go to temporary
+ * files next to it and are appended when the writer is closed. The snapshot is only complete after {@link #close()}.
+ */
+public class VectorSnapshotWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+
+    private final Path tokensPath;
+
+    private final Path offsetsPath;
+
+    private final Path stringsPath;
+
+    private final FileChannel out;
+
+    private final FileChannel tokensOut;
+
+    private final FileChannel offsetsOut;
+
+    private final FileChannel stringsOut;
+
+    private final ByteBuffer vectorBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final ByteBuffer tokenBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final ByteBuffer offsetBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final ByteBuffer stringBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private int dimensions;
+
+    private long count;
+
+    private long stringBytes;
+
+    private boolean closed;
+
+    public VectorSnapshotWriter(Path path) throws IOException {
+        this.path = path;
+        this.tokensPath = path.resolveSibling(path.getFileName() + ".tokens.tmp");
+        this.offsetsPath = path.resolveSibling(path.getFileName() + ".offsets.tmp");
+        this.stringsPath = path.resolveSibling(path.getFileName() + ".strings.tmp");
+        this.out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.tokensOut = FileChannel.open(tokensPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.offsetsOut = FileChannel.open(offsetsPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.stringsOut = FileChannel.open(stringsPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        out.position(VectorSnapshot.HEADER_SIZE);
+    }
+
+    /**
+     * Writes the documents to a new snapshot.
+     *
+     * @return the number of documents written
+     */
+    public static long write(Path path, Stream<CosmosEntity> docs) throws IOException {
+        try (var writer = new VectorSnapshotWriter(path)) {
+            var iterator = docs.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+            return writer.getCount();
+        }
+    }
+
+    /**
+     * Appends a document. All documents must have an embedding with the dimensions of the first one.
+     */
+    public void write(CosmosEntity doc) throws IOException {
+        var embedding = doc.getEmbedding();
+        if (embedding == null) {
+            throw new IllegalArgumentException("Document " + doc.getId() + " has no embedding.");
+        }
+        if (count == 0) {
+            dimensions = embedding.length;
+        } else if (embedding.length != dimensions) {
+            throw new IllegalArgumentException("Document " + doc.getId() + " has " + embedding.length
+                    + " dimensions, expected " + dimensions + ".");
+        }
+        for (float value : embedding) {
+            if (vectorBuffer.remaining() < Float.BYTES) {
+                flush(vectorBuffer, out);
+            }
+            vectorBuffer.putFloat(value);
+        }
+        if (tokenBuffer.remaining() < Integer.BYTES) {
+            flush(tokenBuffer, tokensOut);
+        }
+        tokenBuffer.putInt(doc.getTokens() != null ? doc.getTokens() : -1);
+        writeString(doc.getId());
+        writeString(doc.getHash());
+        writeString(doc.getText());
+        writeString(doc.getSource());
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private void writeString(String value) throws IOException {
+        if (offsetBuffer.remaining() < Long.BYTES) {
+            flush(offsetBuffer, offsetsOut);
+        }
+        offsetBuffer.putLong(stringBytes);
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (stringBuffer.remaining() < bytes.length) {
+            flush(stringBuffer, stringsOut);
+        }
+        if (bytes.length > stringBuffer.capacity()) {
+            var wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                stringsOut.write(wrapped);
+            }
+        } else {
+            stringBuffer.put(bytes);
+        }
+        stringBytes += bytes.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (out; tokensOut; offsetsOut; stringsOut) {
+            flush(vectorBuffer, out);
+            flush(tokenBuffer, tokensOut);
+            if (offsetBuffer.remaining() < Long.BYTES) {
+                flush(offsetBuffer, offsetsOut);
+            }
+            offsetBuffer.putLong(stringBytes);
+            flush(offsetBuffer, offsetsOut);
+            flush(stringBuffer, stringsOut);
+
+            long vectorsOffset = VectorSnapshot.HEADER_SIZE;
+            long tokensOffset = vectorsOffset + count * dimensions * Float.BYTES;
+            long offsetsOffset = tokensOffset + count * Integer.BYTES;
+            long stringsOffset = offsetsOffset + offsetsOut.size();
+            transfer(tokensOut, out, tokensOffset);
+            transfer(offsetsOut, out, offsetsOffset);
+            transfer(stringsOut, out, stringsOffset);
+
+            var header = ByteBuffer.allocate(VectorSnapshot.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(VectorSnapshot.MAGIC)
+                    .putInt(VectorSnapshot.VERSION)
+                    .putInt(dimensions)
+                    .putInt(0)
+                    .putLong(count)
+                    .putLong(vectorsOffset)
+                    .putLong(offsetsOffset)
+                    .putLong(stringsOffset)
+                    .putLong(stringBytes)
+                    .putLong(tokensOffset);
+            // write the whole header, reserved bytes included
+            header.clear();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.force(true);
+        } finally {
+            Files.deleteIfExists(tokensPath);
+            Files.deleteIfExists(offsetsPath);
+            Files.deleteIfExists(stringsPath);
+        }
+    }
+
+    /**
+     * Path of the snapshot being written.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void transfer(FileChannel from, FileChannel to, long position) throws IOException {
+        long size = from.size();
+        for (long done = 0; done < size; ) {
+            done += from.transferTo(done, size - done, to.position(position + done));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "vector-store.bulk")
+public class BulkWriteProperties {
+
+    private int initialMicroBatchSize = 100;
+
+    private int maxMicroBatchSize = 100;
+
+    private int maxMicroBatchConcurrency = 1;
+
+    private int maxRetries = 5;
+
+    private int importBatchSize = 1000;
+
+    private int importMaxInFlightBatches = 2;
+
+    public int getInitialMicroBatchSize() {
+        return initialMicroBatchSize;
+    }
+
+    public void setInitialMicroBatchSize(int initialMicroBatchSize) {
+        this.initialMicroBatchSize = initialMicroBatchSize;
+    }
+
+    public int getMaxMicroBatchSize() {
+        return maxMicroBatchSize;
+    }
+
+    public void setMaxMicroBatchSize(int maxMicroBatchSize) {
+        this.maxMicroBatchSize = maxMicroBatchSize;
+    }
+
+    public int getMaxMicroBatchConcurrency() {
+        return maxMicroBatchConcurrency;
+    }
+
+    public void setMaxMicroBatchConcurrency(int maxMicroBatchConcurrency) {
+        this.maxMicroBatchConcurrency = maxMicroBatchConcurrency;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Number of documents read from a vector store file and upserted together when it is loaded.
+     */
+    public int getImportBatchSize() {
+        return importBatchSize;
+    }
+
+    public void setImportBatchSize(int importBatchSize) {
+        this.importBatchSize = importBatchSize;
+    }
+
+    /**
+     * Number of batches written at a time while a vector store file is loaded; one more is being read.
+     */
+    public int getImportMaxInFlightBatches() {
+        return importMaxInFlightBatches;
+    }
+
+    public void setImportMaxInFlightBatches(int importMaxInFlightBatches) {
+        this.importMaxInFlightBatches = importMaxInFlightBatches;
+    }
+}
@@ -0,0 +1,73 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-item outcome of {@link VectorStore#saveDocuments}.
+ */
+public class BulkWriteResult {
+
+    private final List<String> succeeded = new ArrayList<>();
+
+    private final Map<String, Integer> failed = new LinkedHashMap<>();
+
+    private double requestCharge;
+
+    private int retries;
+
+    void addSucceeded(String id, double charge) {
+        succeeded.add(id);
+        requestCharge += charge;
+    }
+
+    void addFailed(String id, int statusCode) {
+        failed.put(id, statusCode);
+    }
+
+    void removeFailed(String id) {
+        failed.remove(id);
+    }
+
+    void addRetry() {
+        retries++;
+    }
+
+    /**
+     * Ids of the documents that were written.
+     */
+    public List<String> getSucceeded() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    /**
+     * Ids of the documents that could not be written, with the status code of their last attempt.
+     */
+    public Map<String, Integer> getFailed() {
+        return Collections.unmodifiableMap(failed);
+    }
+
+    public double getRequestCharge() {
+        return requestCharge;
+    }
+
+    /**
+     * Number of extra rounds needed for items that were throttled.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkWriteResult{" +
+                "succeeded=" + succeeded.size() +
+                ", failed=" + failed.size() +
+                ", requestCharge=" + requestCharge +
+                ", retries=" + retries +
+                '}';
+    }
+}
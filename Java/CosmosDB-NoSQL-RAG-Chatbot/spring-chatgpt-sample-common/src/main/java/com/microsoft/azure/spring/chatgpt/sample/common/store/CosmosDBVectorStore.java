@@ -1,41 +1,68 @@
 package com.microsoft.azure.spring.chatgpt.sample.common.store;
 
 import com.azure.cosmos.CosmosAsyncClient;
+import com.azure.cosmos.CosmosAsyncContainer;
 import com.azure.cosmos.CosmosAsyncDatabase;
-import com.azure.cosmos.implementation.guava25.collect.ImmutableList;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBulkExecutionOptions;
+import com.azure.cosmos.models.CosmosBulkOperations;
 import com.azure.cosmos.models.CosmosContainerProperties;
 import com.azure.cosmos.models.CosmosContainerResponse;
-import com.azure.cosmos.models.CosmosVectorDataType;
-import com.azure.cosmos.models.CosmosVectorDistanceFunction;
-import com.azure.cosmos.models.CosmosVectorEmbedding;
-import com.azure.cosmos.models.CosmosVectorEmbeddingPolicy;
-import com.azure.cosmos.models.CosmosVectorIndexSpec;
-import com.azure.cosmos.models.CosmosVectorIndexType;
-import com.azure.cosmos.models.ExcludedPath;
-import com.azure.cosmos.models.IncludedPath;
-import com.azure.cosmos.models.IndexingMode;
-import com.azure.cosmos.models.IndexingPolicy;
+import com.azure.cosmos.models.CosmosItemOperation;
+import com.azure.cosmos.models.CosmosItemOperationType;
+import com.azure.cosmos.models.CosmosItemRequestOptions;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.PartitionKey;
 import com.azure.cosmos.models.ThroughputProperties;
 import com.azure.spring.data.cosmos.repository.config.EnableCosmosRepositories;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.spring.chatgpt.sample.common.AzureOpenAIClient;
+import com.microsoft.azure.spring.chatgpt.sample.common.snapshot.JsonVectorStoreReader;
+import com.microsoft.azure.spring.chatgpt.sample.common.snapshot.VectorSnapshot;
+import com.microsoft.azure.spring.chatgpt.sample.common.snapshot.VectorSnapshotWriter;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorIndexPolicy;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorQuantizer;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
-import java.io.File;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 @EnableCosmosRepositories (basePackages = "com.microsoft.azure.spring.chatgpt.sample.common.vectorstore")
-public class CosmosDBVectorStore implements VectorStore {
+public class CosmosDBVectorStore implements VectorStore, DisposableBean {
+
+    private static final int VALIDATION_SAMPLE_SIZE = 10;
 
-    private final VectorStoreData data;
+    private static final Duration INDEX_VERSION_DELAY = Duration.ofSeconds(5);
 
     @Autowired
     private CosmosEntityRepository cosmosEntityRepository;
@@ -50,18 +77,152 @@ public class CosmosDBVectorStore implements VectorStore {
 
     public CosmosAsyncClient client;
 
+    private final BulkWriteProperties bulkWriteProperties;
+
+    private final VectorQuantizer quantizer;
+
+    private final VectorIndexPolicy indexPolicy;
+
+    private boolean vectorIndexChecked;
+
+    private final List<Consumer<Collection<String>>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean indexVersionPending = new AtomicBoolean();
+
+    private final ScheduledExecutorService indexVersionUpdater = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "index-version-updater");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public CosmosDBVectorStore(CosmosEntityRepository cosmosEntityRepository, String containerName, String databaseName, ApplicationContext applicationContext) {
+        this(cosmosEntityRepository, containerName, databaseName, applicationContext, new BulkWriteProperties());
+    }
+
+    public CosmosDBVectorStore(CosmosEntityRepository cosmosEntityRepository, String containerName, String databaseName, ApplicationContext applicationContext,
+                               BulkWriteProperties bulkWriteProperties) {
+        this(cosmosEntityRepository, containerName, databaseName, applicationContext, bulkWriteProperties,
+                new VectorIndexProperties());
+    }
+
+    public CosmosDBVectorStore(CosmosEntityRepository cosmosEntityRepository, String containerName, String databaseName, ApplicationContext applicationContext,
+                               BulkWriteProperties bulkWriteProperties, VectorIndexProperties vectorIndexProperties) {
         this.cosmosEntityRepository = cosmosEntityRepository;
+        this.bulkWriteProperties = bulkWriteProperties;
+        this.quantizer = VectorQuantizer.forDataType(vectorIndexProperties.getCosmosDataType());
+        this.indexPolicy = vectorIndexProperties.toPolicy(AzureOpenAIClient.EMBEDDING_MODEL);
         this.applicationContext = applicationContext;
         client = applicationContext.getBean(CosmosAsyncClient.class);
         this.containerName = containerName;
         this.databaseName = databaseName;
-        this.data = new VectorStoreData();
     }
 
     @Override
     public void saveDocument(String key, CosmosEntity doc) {
-        cosmosEntityRepository.save(doc);
+        cosmosEntityRepository.save(toStored(doc));
+        notifyChanged(List.of(doc.getId()));
+    }
+
+    /**
+     * Upserts the documents with Cosmos DB bulk execution, retrying the items that were throttled. Documents whose
+     * vector doesn't fit the policy are not sent, and are reported as failed with status code 400.
+     */
+    @Override
+    public BulkWriteResult saveDocuments(Collection<CosmosEntity> docs) {
+        var result = new BulkWriteResult();
+        var operationsById = new LinkedHashMap<String, CosmosItemOperation>();
+        for (var doc : docs) {
+            CosmosEntity stored;
+            try {
+                stored = toStored(doc);
+            } catch (IllegalArgumentException e) {
+                operationsById.remove(doc.getId());
+                result.addFailed(doc.getId(), 400);
+                log.warning("Not writing document " + doc.getId() + " to Cosmos DB: " + e.getMessage());
+                continue;
+            }
+            result.removeFailed(doc.getId());
+            operationsById.put(doc.getId(),
+                    CosmosBulkOperations.getUpsertItemOperation(stored, new PartitionKey(doc.getId())));
+        }
+        executeBulk(operationsById, result);
+        notifyChanged(result.getSucceeded());
+        return result;
+    }
+
+    /**
+     * Deletes the documents with Cosmos DB bulk execution. Documents that don't exist count as deleted.
+     */
+    @Override
+    public BulkWriteResult removeDocuments(Collection<String> keys) {
+        return executeBulkAndNotify(keys.stream().distinct().collect(Collectors.toMap(key -> key,
+                key -> CosmosBulkOperations.getDeleteItemOperation(key, new PartitionKey(key)))));
+    }
+
+    @Override
+    public Map<String, String> getHashes(String sourcePrefix) {
+        return cosmosEntityRepository.findHashesBySource(sourcePrefix).stream()
+                .collect(Collectors.toMap(CosmosEntity::getId, doc -> doc.getHash() != null ? doc.getHash() : ""));
+    }
+
+    private BulkWriteResult executeBulkAndNotify(Map<String, CosmosItemOperation> operationsById) {
+        var result = executeBulk(operationsById);
+        notifyChanged(result.getSucceeded());
+        return result;
+    }
+
+    private BulkWriteResult executeBulk(Map<String, CosmosItemOperation> operationsById) {
+        return executeBulk(operationsById, new BulkWriteResult());
+    }
+
+    private BulkWriteResult executeBulk(Map<String, CosmosItemOperation> operationsById, BulkWriteResult result) {
+        var options = new CosmosBulkExecutionOptions()
+                .setInitialMicroBatchSize(bulkWriteProperties.getInitialMicroBatchSize())
+                .setMaxMicroBatchSize(bulkWriteProperties.getMaxMicroBatchSize())
+                .setMaxMicroBatchConcurrency(bulkWriteProperties.getMaxMicroBatchConcurrency());
+        CosmosAsyncContainer container = client.getDatabase(databaseName).getContainer(containerName);
+
+        Collection<CosmosItemOperation> pending = operationsById.values();
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            List<CosmosItemOperation> throttled = new ArrayList<>();
+            Duration[] retryAfter = {Duration.ZERO};
+            boolean lastAttempt = attempt >= bulkWriteProperties.getMaxRetries();
+            container.executeBulkOperations(Flux.fromIterable(pending), options).doOnNext(response -> {
+                var operation = response.getOperation();
+                var itemResponse = response.getResponse();
+                int statusCode = itemResponse != null ? itemResponse.getStatusCode()
+                        : response.getException() instanceof CosmosException e ? e.getStatusCode() : 0;
+                boolean deleted = operation.getOperationType() == CosmosItemOperationType.DELETE && statusCode == 404;
+                if ((itemResponse != null && itemResponse.isSuccessStatusCode()) || deleted) {
+                    result.addSucceeded(operation.getId(), itemResponse != null ? itemResponse.getRequestCharge() : 0);
+                } else if (statusCode == 429 && !lastAttempt) {
+                    throttled.add(operation);
+                    var itemRetryAfter = itemResponse != null ? itemResponse.getRetryAfterDuration()
+                            : ((CosmosException) response.getException()).getRetryAfterDuration();
+                    if (itemRetryAfter != null && itemRetryAfter.compareTo(retryAfter[0]) > 0) {
+                        retryAfter[0] = itemRetryAfter;
+                    }
+                } else {
+                    result.addFailed(operation.getId(), statusCode);
+                    log.warning("Failed to " + operation.getOperationType() + " document " + operation.getId()
+                            + " in Cosmos DB, status code " + statusCode
+                            + (response.getException() != null ? ": " + response.getException() : ""));
+                }
+            }).blockLast();
+
+            if (!throttled.isEmpty()) {
+                result.addRetry();
+                log.info(throttled.size() + " documents were throttled, retrying after " + retryAfter[0].toMillis() + "ms");
+                try {
+                    Thread.sleep(Math.max(retryAfter[0].toMillis(), 100));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            pending = throttled;
+        }
+        return result;
     }
 
     @Override
@@ -73,88 +234,377 @@ public class CosmosDBVectorStore implements VectorStore {
     @Override
     public void removeDocument(String key) {
         cosmosEntityRepository.deleteById(key);
+        notifyChanged(List.of(key));
+    }
+
+    @Override
+    public void addChangeListener(Consumer<Collection<String>> listener) {
+        changeListeners.add(listener);
+    }
+
+    private void notifyChanged(Collection<String> keys) {
+        if (!keys.isEmpty()) {
+            changeListeners.forEach(listener -> listener.accept(keys));
+            // other processes only learn that something changed, so the batches of an import or an ingestion run
+            // bump the version once every few seconds, off the write path, instead of once each
+            if (indexVersionPending.compareAndSet(false, true)) {
+                if (indexVersionUpdater.isShutdown()) {
+                    updateIndexVersion();
+                } else {
+                    indexVersionUpdater.schedule(this::updateIndexVersion, INDEX_VERSION_DELAY.toMillis(),
+                            TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Bumps the index version right away if writes are waiting for it, so a process that exits after writing, like
+     * the CLI, doesn't leave the change unseen by the others.
+     */
+    @Override
+    public void destroy() {
+        indexVersionUpdater.shutdownNow();
+        updateIndexVersion();
+    }
+
+    private void updateIndexVersion() {
+        // cleared first, so writes during the upsert schedule another
+        if (!indexVersionPending.getAndSet(false)) {
+            return;
+        }
+        try {
+            container().upsertItem(IndexVersion.next(), new PartitionKey(IndexVersion.ID),
+                    new CosmosItemRequestOptions()).block();
+        } catch (CosmosException e) {
+            log.warning("Failed to update the index version of container " + containerName + ": " + e);
+        }
+    }
+
+    /**
+     * Reads the version that writes of documents through a store of this container change, including in other
+     * processes, within a few seconds of the write.
+     *
+     * @return the version, or {@code null} if no documents were written through a store yet
+     */
+    public String readIndexVersion() {
+        try {
+            return container().readItem(IndexVersion.ID, new PartitionKey(IndexVersion.ID), IndexVersion.class)
+                    .block().getItem().getVersion();
+        } catch (CosmosException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k) {
+        return search(embedding, k, null, false);
     }
 
     @Override
-    public List<CosmosEntity> searchTopKNearest(List<Double> embedding, int k) {
-        return searchTopKNearest(embedding, k, 0);
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff) {
+        return searchTopKNearest(embedding, k, cutOff, false);
     }
 
     @Override
-    public List<CosmosEntity> searchTopKNearest(List<Double> embedding, int k, double cutOff) {
-        Object embeddingParam = embedding.stream().map(aDouble -> (Float) (float) aDouble.doubleValue()).collect(Collectors.toList()).toArray();
-        ArrayList<CosmosEntity> results = cosmosEntityRepository.vectorSearch(embeddingParam);
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff, boolean includeEmbedding) {
+        return search(embedding, k, cutOff, includeEmbedding);
+    }
+
+    // cutOff null for the k nearest whatever their similarity
+    private List<CosmosEntity> search(float[] embedding, int k, Double cutOff, boolean includeEmbedding) {
+        float[] query = quantizer.quantize(embedding);
+        ArrayList<CosmosEntity> results = includeEmbedding
+                ? cosmosEntityRepository.vectorSearchWithEmbedding(query, k)
+                : cosmosEntityRepository.vectorSearch(query, k);
+        // marker documents have no embedding, hence no score
+        results.removeIf(result -> result.getSimilarityScore() == null
+                || cutOff != null && !indexPolicy.isWithinCutOff(result.getSimilarityScore(), cutOff));
+        for (var result : results) {
+            if (result.getEmbedding() != null) {
+                result.setEmbedding(quantizer.dequantize(result.getEmbedding()));
+            }
+        }
         return results;
     }
 
-    public void createVectorIndex(int numLists, int dimensions, String similarity) {
-
-        CosmosContainerProperties collectionDefinition = new CosmosContainerProperties(containerName, "/id");
-
-        //set vector embedding policy
-        CosmosVectorEmbeddingPolicy cosmosVectorEmbeddingPolicy = new CosmosVectorEmbeddingPolicy();
-        CosmosVectorEmbedding embedding = new CosmosVectorEmbedding();
-        embedding.setPath("/embedding");
-        embedding.setDataType(CosmosVectorDataType.FLOAT32);
-        embedding.setDimensions(1536L);
-        embedding.setDistanceFunction(CosmosVectorDistanceFunction.COSINE);
-        cosmosVectorEmbeddingPolicy.setCosmosVectorEmbeddings(Arrays.asList(embedding));
-        collectionDefinition.setVectorEmbeddingPolicy(cosmosVectorEmbeddingPolicy);
-
-        //set vector indexing policy
-        IndexingPolicy indexingPolicy = new IndexingPolicy();
-        indexingPolicy.setIndexingMode(IndexingMode.CONSISTENT);
-        ExcludedPath excludedPath = new ExcludedPath("/*");
-        indexingPolicy.setExcludedPaths(Collections.singletonList(excludedPath));
-        IncludedPath includedPath1 = new IncludedPath("/hash/?");
-        IncludedPath includedPath2 = new IncludedPath("/text/?");
-        indexingPolicy.setIncludedPaths(ImmutableList.of(includedPath1, includedPath2));
-        CosmosVectorIndexSpec cosmosVectorIndexSpec = new CosmosVectorIndexSpec();
-        cosmosVectorIndexSpec.setPath("/embedding");
-        cosmosVectorIndexSpec.setType(CosmosVectorIndexType.DISK_ANN.toString());
-        indexingPolicy.setVectorIndexes(Arrays.asList(cosmosVectorIndexSpec));
-        collectionDefinition.setIndexingPolicy(indexingPolicy);
+    public VectorQuantizer getQuantizer() {
+        return quantizer;
+    }
+
+    /**
+     * Reads every document of the container with its embedding, dequantized, in pages as the stream is consumed.
+     */
+    public Stream<CosmosEntity> streamDocuments() {
+        return client.getDatabase(databaseName).getContainer(containerName)
+                .queryItems("SELECT c.id, c.hash, c.text, c.source, c.tokens, c.embedding FROM c WHERE IS_DEFINED(c.embedding)",
+                        new CosmosQueryRequestOptions(), CosmosEntity.class)
+                .toStream()
+                .peek(doc -> {
+                    if (doc.getEmbedding() != null) {
+                        doc.setEmbedding(quantizer.dequantize(doc.getEmbedding()));
+                    }
+                });
+    }
+
+    public VectorIndexPolicy getIndexPolicy() {
+        return indexPolicy;
+    }
+
+    // the document as written to a container whose vectors use the configured data type
+    private CosmosEntity toStored(CosmosEntity doc) {
+        if (doc.getEmbedding() == null) {
+            return doc;
+        }
+        var stored = quantizer == VectorQuantizer.FLOAT32 ? doc
+                : new CosmosEntity(doc.getId(), doc.getHash(), doc.getText(), doc.getSource(), doc.getTokens(),
+                quantizer.quantize(doc.getEmbedding()));
+        var problem = indexPolicy.validateVector(stored.getEmbedding());
+        if (problem != null) {
+            throw new IllegalArgumentException("The vector of document " + doc.getId() + " " + problem);
+        }
+        return stored;
+    }
+
+    /**
+     * Creates the database and container with the configured vector policy if they don't exist. If the container
+     * exists, checks that its policy and a sample of its stored vectors match the configured policy, and fails if not,
+     * since the policy of an existing container can't be changed.
+     */
+    public synchronized void createVectorIndex() {
+        if (vectorIndexChecked) {
+            return;
+        }
+        var collectionDefinition = indexPolicy.applyTo(new CosmosContainerProperties(containerName, "/id"),
+                "/hash/?", "/text/?", "/source/?");
 
         //create container
         ThroughputProperties throughputProperties = ThroughputProperties.createManualThroughput(400);
         client.createDatabaseIfNotExists(databaseName).block();
         CosmosAsyncDatabase database = client.getDatabase(databaseName);
         CosmosContainerResponse containerResponse = database.createContainerIfNotExists(collectionDefinition, throughputProperties).block();
+
+        var problems = new ArrayList<>(indexPolicy.validate(containerResponse.getProperties()));
+        database.getContainer(containerName)
+                .queryItems("SELECT TOP " + VALIDATION_SAMPLE_SIZE + " c.id, c.embedding FROM c WHERE IS_DEFINED(c.embedding)",
+                        new CosmosQueryRequestOptions(), CosmosEntity.class)
+                .toIterable()
+                .forEach(doc -> {
+                    var problem = indexPolicy.validateVector(doc.getEmbedding());
+                    if (problem != null) {
+                        problems.add("stored vector of document " + doc.getId() + " " + problem);
+                    }
+                });
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Container " + containerName + " doesn't match the vector policy "
+                    + indexPolicy + ": " + String.join("; ", problems));
+        }
+        log.info("Container " + containerName + " matches the vector policy " + indexPolicy);
+        vectorIndexChecked = true;
+    }
+
+    /**
+     * Loads a vector store file into the container, choosing the format by its content: a binary snapshot, or JSON.
+     *
+     * @return the number of documents read
+     */
+    public long loadFromFile(String filePath) {
+        return loadFromFile(filePath, 0, position -> {});
     }
 
-    public List<CosmosEntity> loadFromJsonFile(String filePath) {
-        var reader = new ObjectMapper().reader();
+    /**
+     * Loads a vector store file into the container, starting after its first {@code skip} documents, and reports the
+     * number of documents from the start of the file that have been written each time it grows.
+     *
+     * @return the number of documents read, not counting the skipped ones
+     * @throws IllegalStateException if some documents could not be written; the last position reported is before
+     *                               the first of them
+     */
+    public long loadFromFile(String filePath, long skip, LongConsumer onCommitted) {
         try {
-            int dimensions = 0;
-            var data = reader.readValue(new File(filePath), VectorStoreData.class);
-            List<CosmosEntity> list = new ArrayList<CosmosEntity>(data.store.values());
-            List<CosmosEntity> cosmosEntities = new ArrayList<>();
-            try {
-                createVectorIndex(100, dimensions, "COS");
-                cosmosEntityRepository.saveAll(list);
-            } catch (Exception e) {
-                log.warning("Failed to insertAll documents to Cosmos DB NoSQL API, attempting individual upserts: "+ e.getMessage());
-                for (CosmosEntity cosmosEntity : list) {
-                    log.info("Saving document {} to Cosmos DB NoSQL API" + cosmosEntity.getId());
-                    try {
-                        cosmosEntityRepository.save(cosmosEntity);
-                    } catch (Exception ex) {
-                        log.warning("Failed to upsert document "+ cosmosEntity.getId()+ "to Cosmos DB:" + ex);
-                    }
+            if (VectorSnapshot.isSnapshot(Path.of(filePath))) {
+                return loadFromSnapshot(Path.of(filePath), skip, onCommitted);
+            }
+            return loadFromJsonFile(filePath, skip, onCommitted);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Upserts the documents of a binary snapshot, see {@link #importDocuments}; the rest of the snapshot stays in the
+     * mapped file.
+     */
+    public long loadFromSnapshot(Path path) throws IOException {
+        return loadFromSnapshot(path, 0, position -> {});
+    }
+
+    private long loadFromSnapshot(Path path, long skip, LongConsumer onCommitted) throws IOException {
+        try (var snapshot = VectorSnapshot.open(path)) {
+            long[] read = {skip};
+            var documents = snapshot.stream(skip).peek(doc -> read[0]++).iterator();
+            return importDocuments(documents, path.toString(), () -> read[0], snapshot.size(), skip, onCommitted);
+        }
+    }
+
+    /**
+     * Reads the checkpoint of the last load of a vector store file into the container.
+     *
+     * @return the checkpoint, or {@code null} if no file was loaded with one
+     */
+    public SeedCheckpoint readSeedCheckpoint() {
+        try {
+            return container().readItem(SeedCheckpoint.ID, new PartitionKey(SeedCheckpoint.ID), SeedCheckpoint.class)
+                    .block().getItem();
+        } catch (CosmosException e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    public void saveSeedCheckpoint(SeedCheckpoint checkpoint) {
+        container().upsertItem(checkpoint, new PartitionKey(SeedCheckpoint.ID), new CosmosItemRequestOptions()).block();
+    }
+
+    /**
+     * Whether the container has any document with an embedding.
+     */
+    public boolean hasDocuments() {
+        return container().queryItems("SELECT TOP 1 c.id FROM c WHERE IS_DEFINED(c.embedding)",
+                        new CosmosQueryRequestOptions(), CosmosEntity.class)
+                .toIterable().iterator().hasNext();
+    }
+
+    private CosmosAsyncContainer container() {
+        return client.getDatabase(databaseName).getContainer(containerName);
+    }
+
+    /**
+     * Writes every document of the container to a binary snapshot, as the query pages arrive.
+     *
+     * @return the number of documents written
+     */
+    public long exportSnapshot(Path path) throws IOException {
+        try (var documents = streamDocuments()) {
+            return VectorSnapshotWriter.write(path, documents);
+        }
+    }
+
+    /**
+     * Upserts the documents of a JSON vector store file, see {@link #importDocuments}. The file is parsed one document
+     * at a time, so the heap needed doesn't depend on its size.
+     *
+     * @return the number of documents read
+     */
+    public long loadFromJsonFile(String filePath) {
+        return loadFromJsonFile(filePath, 0, position -> {});
+    }
+
+    private long loadFromJsonFile(String filePath, long skip, LongConsumer onCommitted) {
+        var path = Path.of(filePath);
+        try (var reader = new JsonVectorStoreReader(path)) {
+            if (reader.skip(skip) < skip) {
+                return 0;
+            }
+            return importDocuments(reader, filePath, reader::getBytesRead, Files.size(path), skip, onCommitted);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Upserts documents in batches of {@code import-batch-size} with bulk execution. A batch is read while earlier
+     * ones are written, and at most {@code import-max-in-flight-batches} are written at a time, so at most that many
+     * batches plus one are on the heap. Logs progress after each batch.
+     * <p>
+     * Batches can finish out of order; {@code onCommitted} is only called, in order, with positions up to which every
+     * batch has been written in full, so a load resumed from the last one reported doesn't miss documents. A batch
+     * with documents that could not be written is never committed: the rest of the file is still written, then the
+     * load fails, so it can be resumed from before that batch.
+     *
+     * @param position how far the source has been read, in the unit of {@code total}
+     * @param skip     position in the source of the first document
+     * @return the number of documents read
+     */
+    private long importDocuments(Iterator<CosmosEntity> documents, String source, LongSupplier position, long total,
+                                 long skip, LongConsumer onCommitted) {
+        createVectorIndex();
+        int batchSize = bulkWriteProperties.getImportBatchSize();
+        int maxInFlight = bulkWriteProperties.getImportMaxInFlightBatches();
+        var inFlight = new Semaphore(maxInFlight);
+        var executor = Executors.newFixedThreadPool(maxInFlight);
+        // counts only, so the ids of written documents don't pile up
+        var written = new AtomicLong();
+        var failed = new AtomicLong();
+        var requestCharge = new DoubleAdder();
+        var error = new AtomicReference<Throwable>();
+        // end of each finished batch by its start, until the batches before it finish too
+        var finished = new TreeMap<Long, Long>();
+        long[] committed = {skip};
+        long start = System.nanoTime();
+        long read = 0;
+        if (skip > 0) {
+            log.info("Resuming import from " + source + " after " + skip + " documents");
+        }
+        try {
+            while (documents.hasNext() && error.get() == null) {
+                var batch = new ArrayList<CosmosEntity>(batchSize);
+                while (batch.size() < batchSize && documents.hasNext()) {
+                    batch.add(documents.next());
                 }
+                long batchStart = skip + read;
+                long batchEnd = batchStart + batch.size();
+                read += batch.size();
+                long progress = total > 0 ? 100 * position.getAsLong() / total : 100;
+                inFlight.acquire();
+                CompletableFuture.runAsync(() -> {
+                    var result = saveDocuments(batch);
+                    written.addAndGet(result.getSucceeded().size());
+                    failed.addAndGet(result.getFailed().size());
+                    requestCharge.add(result.getRequestCharge());
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    log.info(String.format("Imported %d documents from %s (%d%%, %.0f/s, %d failed)",
+                            written.get(), source, progress, written.get() / seconds, failed.get()));
+                    if (!result.getFailed().isEmpty()) {
+                        return;
+                    }
+                    synchronized (finished) {
+                        finished.put(batchStart, batchEnd);
+                        long before = committed[0];
+                        while (finished.containsKey(committed[0])) {
+                            committed[0] = finished.remove(committed[0]);
+                        }
+                        if (committed[0] != before) {
+                            onCommitted.accept(committed[0]);
+                        }
+                    }
+                }, executor).whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        error.compareAndSet(null, e);
+                    }
+                    inFlight.release();
+                });
             }
-            return cosmosEntities;
-        } catch (Exception e) {
+            inFlight.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
         }
-    }
-    private static class VectorStoreData {
-        public Map<String, CosmosEntity> getStore() {
-            return store;
+        if (error.get() != null) {
+            throw new RuntimeException("Import from " + source + " failed", error.get());
         }
-        public void setStore(Map<String, CosmosEntity> store) {
-            this.store = store;
+        log.info(String.format("Loaded %s to Cosmos DB NoSQL API: %d documents, %d failed, %.1f RU", source, read,
+                failed.get(), requestCharge.sum()));
+        if (failed.get() > 0) {
+            throw new IllegalStateException(failed.get() + " documents from " + source + " could not be written");
         }
-        private Map<String, CosmosEntity> store = new ConcurrentHashMap<>();
+        return read;
     }
 }
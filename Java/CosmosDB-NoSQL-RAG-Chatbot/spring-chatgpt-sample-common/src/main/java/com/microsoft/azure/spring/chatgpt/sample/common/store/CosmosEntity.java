@@ -2,9 +2,13 @@ package com.microsoft.azure.spring.chatgpt.sample.common.store;
 
 import com.azure.spring.data.cosmos.core.mapping.Container;
 import com.azure.spring.data.cosmos.core.mapping.PartitionKey;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import org.springframework.data.annotation.Id;
 
-import java.util.List;
+import java.util.Arrays;
 
 @Container(containerName = "vectorstore", autoCreateContainer = false)
 public class CosmosEntity {
@@ -13,16 +17,35 @@ public class CosmosEntity {
     private String id;
     private String hash;
     private String text;
-    private List<Double> embedding;
+    private String source;
+    // tokens of the text, counted when it was split; null for documents indexed before counts were stored
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer tokens;
+    @JsonSerialize(using = EmbeddingSerializer.class)
+    @JsonDeserialize(using = EmbeddingDeserializer.class)
+    private float[] embedding;
+    // VectorDistance to the query, set on search results only and never written back
+    @JsonProperty(value = "SimilarityScore", access = JsonProperty.Access.WRITE_ONLY)
+    private Double similarityScore;
 
     public CosmosEntity() {}
-    public CosmosEntity(String id, String hash, String text, List<Double> embedding) {
+    public CosmosEntity(String id, String hash, String text, float[] embedding) {
         this.id = id;
         this.hash = hash;
         this.text = text;
         this.embedding = embedding;
     }
 
+    public CosmosEntity(String id, String hash, String text, String source, float[] embedding) {
+        this(id, hash, text, embedding);
+        this.source = source;
+    }
+
+    public CosmosEntity(String id, String hash, String text, String source, Integer tokens, float[] embedding) {
+        this(id, hash, text, source, embedding);
+        this.tokens = tokens;
+    }
+
     public String getId() {
         return id;
     }
@@ -47,21 +70,51 @@ public class CosmosEntity {
         this.text = text;
     }
 
-    public List<Double> getEmbedding() {
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public Integer getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(Integer tokens) {
+        this.tokens = tokens;
+    }
+
+    public float[] getEmbedding() {
         return embedding;
     }
 
-    public void setEmbedding(List<Double> embedding) {
+    public void setEmbedding(float[] embedding) {
         this.embedding = embedding;
     }
 
+    /**
+     * {@code VectorDistance} between the query and this search result, a similarity or, with the euclidean distance
+     * function, a distance; {@code null} when the document wasn't returned by a vector search.
+     */
+    public Double getSimilarityScore() {
+        return similarityScore;
+    }
+
+    public void setSimilarityScore(Double similarityScore) {
+        this.similarityScore = similarityScore;
+    }
+
     @Override
     public String toString() {
         return "Vector{" +
                 "id='" + id + '\'' +
                 ", hash='" + hash + '\'' +
                 ", text='" + text + '\'' +
-                ", embedding='" + embedding + '\'' +
+                ", source='" + source + '\'' +
+                ", tokens=" + tokens +
+                ", embedding='" + Arrays.toString(embedding) + '\'' +
                 '}';
     }
 }
\ No newline at end of file
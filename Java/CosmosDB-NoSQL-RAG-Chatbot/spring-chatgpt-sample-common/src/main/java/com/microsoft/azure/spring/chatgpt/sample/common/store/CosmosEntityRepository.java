@@ -7,9 +7,18 @@ import java.util.ArrayList;
 
 @Repository
 public interface CosmosEntityRepository extends CosmosRepository<CosmosEntity, String> {
-    @Query(value = "SELECT TOP 3 c.id, c.embedding, c.hash, c.text, VectorDistance(c.embedding,@embedding) AS SimilarityScore FROM c ORDER BY VectorDistance(c.embedding,@embedding)")
-    ArrayList<CosmosEntity> vectorSearch(@Param("embedding") Object embedding);
+    // no WHERE on VectorDistance, so the query is served by the top-k path of the vector index; the cutoff is applied
+    // to SimilarityScore by the caller, which keeps the same documents since they come most similar first
+    String VECTOR_SEARCH_QUERY = "SELECT TOP @k c.id, c.hash, c.text, c.source, c.tokens, VectorDistance(c.embedding,@embedding) AS SimilarityScore FROM c ORDER BY VectorDistance(c.embedding,@embedding)";
 
-    @Query(value = "SELECT c.id FROM c where c.id = @id")
-    ArrayList<CosmosEntity> findRecord(@Param("embedding") String id);
+    String VECTOR_SEARCH_WITH_EMBEDDING_QUERY = "SELECT TOP @k c.id, c.hash, c.text, c.source, c.tokens, c.embedding, VectorDistance(c.embedding,@embedding) AS SimilarityScore FROM c ORDER BY VectorDistance(c.embedding,@embedding)";
+
+    @Query(value = VECTOR_SEARCH_QUERY)
+    ArrayList<CosmosEntity> vectorSearch(@Param("embedding") Object embedding, @Param("k") int k);
+
+    @Query(value = VECTOR_SEARCH_WITH_EMBEDDING_QUERY)
+    ArrayList<CosmosEntity> vectorSearchWithEmbedding(@Param("embedding") Object embedding, @Param("k") int k);
+
+    @Query(value = "SELECT c.id, c.hash, c.source FROM c WHERE STARTSWITH(c.source, @source)")
+    ArrayList<CosmosEntity> findHashesBySource(@Param("source") String source);
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads an embedding as written by {@link EmbeddingSerializer}: a JSON array mixing integers and decimals, such as
+ * the vectors of int8 or uint8 containers, read straight into a {@code float[]} sized for the usual dimensions.
+ */
+public class EmbeddingDeserializer extends JsonDeserializer<float[]> {
+
+    private static final int INITIAL_CAPACITY = 1536;
+
+    @Override
+    public float[] deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartArrayToken()) {
+            return (float[]) context.handleUnexpectedToken(float[].class, parser);
+        }
+        float[] embedding = new float[INITIAL_CAPACITY];
+        int size = 0;
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+                return (float[]) context.handleUnexpectedToken(float[].class, parser);
+            }
+            if (size == embedding.length) {
+                embedding = Arrays.copyOf(embedding, size * 2);
+            }
+            embedding[size++] = parser.getFloatValue();
+        }
+        return size == embedding.length ? embedding : Arrays.copyOf(embedding, size);
+    }
+}
@@ -0,0 +1,27 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+/**
+ * Writes an embedding as a JSON array of numbers, with integral values written as integers so that vectors quantized
+ * to int8 or uint8 are accepted by containers using those data types.
+ */
+public class EmbeddingSerializer extends JsonSerializer<float[]> {
+
+    @Override
+    public void serialize(float[] embedding, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartArray(embedding, embedding.length);
+        for (float value : embedding) {
+            if (value == (int) value) {
+                generator.writeNumber((int) value);
+            } else {
+                generator.writeNumber(value);
+            }
+        }
+        generator.writeEndArray();
+    }
+}
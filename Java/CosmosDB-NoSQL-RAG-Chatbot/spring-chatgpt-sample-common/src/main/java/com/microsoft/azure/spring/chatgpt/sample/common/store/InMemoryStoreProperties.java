@@ -0,0 +1,79 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "vector-store.memory")
+public class InMemoryStoreProperties {
+
+    /**
+     * cosmos: search Cosmos DB. hot: keep Cosmos DB as the store of record and search a copy in memory, loaded at
+     * startup and updated by writes through this application. offline: search the vector store file in memory and
+     * don't use Cosmos DB for documents.
+     */
+    private Mode mode = Mode.COSMOS;
+
+    /**
+     * Neighbors per node of the HNSW graph; twice as many on its bottom level.
+     */
+    private int m = 16;
+
+    /**
+     * Candidates considered when linking a new node.
+     */
+    private int efConstruction = 200;
+
+    /**
+     * Candidates kept while searching; at least k are always kept.
+     */
+    private int efSearch = 100;
+
+    /**
+     * Fraction of the graph's nodes that may belong to replaced or removed documents before the graph is rebuilt
+     * without them; writes wait during the rebuild.
+     */
+    private double compactionThreshold = 0.25;
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public void setM(int m) {
+        this.m = m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public void setEfConstruction(int efConstruction) {
+        this.efConstruction = efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    public enum Mode {
+        COSMOS, HOT, OFFLINE
+    }
+}
@@ -0,0 +1,286 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.HnswIndex;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorIndexPolicy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link VectorStore} held in process memory, searched through an {@link HnswIndex}. It needs no Cosmos DB account,
+ * and answers searches without a network round trip.
+ * <p>
+ * Vectors are kept only in the index, normalized, so the embeddings it returns have unit length. Replaced and removed
+ * documents stay in the graph as nodes that searches still traverse, which keeps it connected, but never return.
+ * Once they make up {@code compaction-threshold} of the nodes, the graph is rebuilt from the live documents: writes
+ * wait for the rebuild, searches keep using the old graph until it is done.
+ */
+public class InMemoryVectorStore implements VectorStore {
+
+    private final int dimensions;
+
+    private final InMemoryStoreProperties properties;
+
+    // null to apply the cutoff to the cosine similarity
+    private final VectorIndexPolicy indexPolicy;
+
+    // writes share the read lock, a rebuild takes the write lock; searches take none
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile Graph graph;
+
+    private final List<Consumer<Collection<String>>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private Logger log = Logger.getLogger(InMemoryVectorStore.class.getName());
+
+    public InMemoryVectorStore(int dimensions, InMemoryStoreProperties properties) {
+        this(dimensions, properties, null);
+    }
+
+    /**
+     * For a copy of a container with the given policy, whose distance function sets how the cutoff is applied, as
+     * {@link CosmosDBVectorStore} does.
+     */
+    public InMemoryVectorStore(VectorIndexPolicy indexPolicy, InMemoryStoreProperties properties) {
+        this(indexPolicy.getDimensions(), properties, indexPolicy);
+    }
+
+    private InMemoryVectorStore(int dimensions, InMemoryStoreProperties properties, VectorIndexPolicy indexPolicy) {
+        this.dimensions = dimensions;
+        this.properties = properties;
+        this.indexPolicy = indexPolicy;
+        this.graph = newGraph();
+    }
+
+    @Override
+    public void saveDocument(String key, CosmosEntity doc) {
+        put(doc);
+        notifyChanged(List.of(doc.getId()));
+        compactIfNeeded();
+    }
+
+    /**
+     * Indexes the documents in parallel.
+     */
+    @Override
+    public BulkWriteResult saveDocuments(Collection<CosmosEntity> docs) {
+        var result = new BulkWriteResult();
+        var ids = docs.parallelStream().map(doc -> {
+            put(doc);
+            return doc.getId();
+        }).collect(Collectors.toList());
+        ids.forEach(id -> result.addSucceeded(id, 0));
+        notifyChanged(ids);
+        compactIfNeeded();
+        return result;
+    }
+
+    /**
+     * Indexes the documents in parallel without notifying change listeners, for filling a new store.
+     */
+    public void load(Stream<CosmosEntity> docs) {
+        docs.parallel().forEach(this::put);
+        compactIfNeeded();
+    }
+
+    private void put(CosmosEntity doc) {
+        if (doc.getEmbedding() == null) {
+            throw new IllegalArgumentException("Document " + doc.getId() + " has no embedding.");
+        }
+        lock.readLock().lock();
+        try {
+            graph.put(doc.getEmbedding(), new CosmosEntity(doc.getId(), doc.getHash(), doc.getText(), doc.getSource(),
+                    doc.getTokens(), null));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CosmosEntity getDocument(String key) {
+        var graph = this.graph;
+        var node = graph.nodesById.get(key);
+        return node != null ? graph.copy(node, true) : null;
+    }
+
+    @Override
+    public void removeDocument(String key) {
+        remove(key);
+        notifyChanged(List.of(key));
+        compactIfNeeded();
+    }
+
+    @Override
+    public BulkWriteResult removeDocuments(Collection<String> keys) {
+        var result = new BulkWriteResult();
+        var ids = keys.stream().distinct().toList();
+        ids.forEach(key -> {
+            remove(key);
+            result.addSucceeded(key, 0);
+        });
+        notifyChanged(ids);
+        compactIfNeeded();
+        return result;
+    }
+
+    private void remove(String key) {
+        lock.readLock().lock();
+        try {
+            graph.remove(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, String> getHashes(String sourcePrefix) {
+        return graph.documentsByNode.values().stream()
+                .filter(doc -> doc.getSource() != null && doc.getSource().startsWith(sourcePrefix))
+                .collect(Collectors.toMap(CosmosEntity::getId, doc -> doc.getHash() != null ? doc.getHash() : "",
+                        (a, b) -> b));
+    }
+
+    @Override
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k) {
+        return searchTopKNearest(embedding, k, Double.NEGATIVE_INFINITY);
+    }
+
+    @Override
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff) {
+        return searchTopKNearest(embedding, k, cutOff, false);
+    }
+
+    @Override
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff, boolean includeEmbedding) {
+        var graph = this.graph;
+        var results = new ArrayList<CosmosEntity>(k);
+        for (var neighbor : graph.index.search(embedding, k, properties.getEfSearch(),
+                graph.documentsByNode::containsKey)) {
+            if (!isWithinCutOff(neighbor.score(), cutOff)) {
+                break;
+            }
+            var doc = graph.copy(neighbor.node(), includeEmbedding);
+            if (doc != null) {
+                results.add(doc);
+            }
+        }
+        return results;
+    }
+
+    // neighbors come by decreasing cosine similarity, and every policy's VectorDistance between unit vectors is
+    // monotonic in it, so the first one cut off ends the results
+    private boolean isWithinCutOff(double similarity, double cutOff) {
+        if (indexPolicy == null || Double.isInfinite(cutOff)) {
+            return similarity >= cutOff;
+        }
+        double score = indexPolicy.isDistance() ? Math.sqrt(Math.max(0, 2 - 2 * similarity)) : similarity;
+        return indexPolicy.isWithinCutOff(score, cutOff);
+    }
+
+    @Override
+    public void addChangeListener(Consumer<Collection<String>> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Number of live documents.
+     */
+    public int size() {
+        return graph.nodesById.size();
+    }
+
+    private void compactIfNeeded() {
+        if (!graph.needsCompaction()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            var old = graph;
+            if (!old.needsCompaction()) {
+                return;
+            }
+            int nodes = old.index.size();
+            var rebuilt = newGraph();
+            old.nodesById.values().parallelStream().forEach(node -> {
+                var doc = old.documentsByNode.get(node);
+                if (doc != null) {
+                    rebuilt.put(old.index.getVector(node), doc);
+                }
+            });
+            graph = rebuilt;
+            log.info("Rebuilt the in-memory vector index from " + nodes + " to " + rebuilt.index.size() + " nodes.");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Graph newGraph() {
+        return new Graph(new HnswIndex(dimensions, properties.getM(), properties.getEfConstruction()),
+                properties.getCompactionThreshold());
+    }
+
+    private void notifyChanged(Collection<String> keys) {
+        if (!keys.isEmpty()) {
+            changeListeners.forEach(listener -> listener.accept(keys));
+        }
+    }
+
+    private static final class Graph {
+
+        final HnswIndex index;
+
+        final double compactionThreshold;
+
+        // the document of each live node, without its embedding
+        final Map<Integer, CosmosEntity> documentsByNode = new ConcurrentHashMap<>();
+
+        final Map<String, Integer> nodesById = new ConcurrentHashMap<>();
+
+        Graph(HnswIndex index, double compactionThreshold) {
+            this.index = index;
+            this.compactionThreshold = compactionThreshold;
+        }
+
+        void put(float[] embedding, CosmosEntity doc) {
+            int node = index.add(embedding);
+            documentsByNode.put(node, doc);
+            var previous = nodesById.put(doc.getId(), node);
+            if (previous != null) {
+                documentsByNode.remove(previous);
+            }
+        }
+
+        void remove(String key) {
+            var node = nodesById.remove(key);
+            if (node != null) {
+                documentsByNode.remove(node);
+            }
+        }
+
+        boolean needsCompaction() {
+            int nodes = index.size();
+            int dead = nodes - nodesById.size();
+            return dead > 0 && dead >= compactionThreshold * nodes;
+        }
+
+        // a copy, so callers can't change the stored document; null if it was removed meanwhile
+        CosmosEntity copy(int node, boolean includeEmbedding) {
+            var doc = documentsByNode.get(node);
+            if (doc == null) {
+                return null;
+            }
+            return new CosmosEntity(doc.getId(), doc.getHash(), doc.getText(), doc.getSource(), doc.getTokens(),
+                    includeEmbedding ? index.getVector(node) : null);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import java.util.UUID;
+
+/**
+ * Marker document whose version every write of documents through a {@link CosmosDBVectorStore} changes, so other
+ * processes using the container, which don't get its change listeners called, can tell that documents changed. The
+ * marker has no embedding, so vector searches never return it.
+ */
+public class IndexVersion {
+
+    public static final String ID = "vector-store-index-version";
+
+    private String id = ID;
+
+    private String version;
+
+    public IndexVersion() {}
+
+    public static IndexVersion next() {
+        var marker = new IndexVersion();
+        marker.setVersion(UUID.randomUUID().toString());
+        return marker;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,69 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import com.azure.cosmos.CosmosAsyncContainer;
+import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorIndexPolicy;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorQuantizer;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking vector search over the same container as {@link CosmosDBVectorStore}, querying the
+ * {@link CosmosAsyncContainer} directly instead of going through the blocking Spring Data repository.
+ */
+public class ReactiveCosmosVectorStore {
+
+    private final CosmosAsyncContainer container;
+
+    private final VectorQuantizer quantizer;
+
+    // null for a container with the cosine distance function
+    private final VectorIndexPolicy indexPolicy;
+
+    public ReactiveCosmosVectorStore(CosmosAsyncContainer container) {
+        this(container, VectorQuantizer.FLOAT32);
+    }
+
+    public ReactiveCosmosVectorStore(CosmosAsyncContainer container, VectorQuantizer quantizer) {
+        this.container = container;
+        this.quantizer = quantizer;
+        this.indexPolicy = null;
+    }
+
+    /**
+     * For a container with the given policy, which sets how vectors are quantized and how the cutoff is applied.
+     */
+    public ReactiveCosmosVectorStore(CosmosAsyncContainer container, VectorIndexPolicy indexPolicy) {
+        this.container = container;
+        this.quantizer = VectorQuantizer.forDataType(indexPolicy.getDataType());
+        this.indexPolicy = indexPolicy;
+    }
+
+    /**
+     * Runs the same query as {@link CosmosDBVectorStore#searchTopKNearest(float[], int, double, boolean)}, so both
+     * return the same documents in the same order.
+     */
+    public Flux<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff) {
+        return searchTopKNearest(embedding, k, cutOff, false);
+    }
+
+    public Flux<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff, boolean includeEmbedding) {
+        String queryText = includeEmbedding
+                ? CosmosEntityRepository.VECTOR_SEARCH_WITH_EMBEDDING_QUERY
+                : CosmosEntityRepository.VECTOR_SEARCH_QUERY;
+        var query = new SqlQuerySpec(queryText,
+                new SqlParameter("@embedding", quantizer.quantize(embedding)),
+                new SqlParameter("@k", k));
+        return container.queryItems(query, new CosmosQueryRequestOptions(), CosmosEntity.class)
+                .filter(result -> result.getSimilarityScore() != null && (indexPolicy != null
+                        ? indexPolicy.isWithinCutOff(result.getSimilarityScore(), cutOff)
+                        : result.getSimilarityScore() >= cutOff))
+                .map(result -> {
+                    if (result.getEmbedding() != null) {
+                        result.setEmbedding(quantizer.dequantize(result.getEmbedding()));
+                    }
+                    return result;
+                });
+    }
+}
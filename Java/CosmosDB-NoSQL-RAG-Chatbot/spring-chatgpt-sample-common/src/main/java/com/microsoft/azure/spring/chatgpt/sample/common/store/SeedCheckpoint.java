@@ -0,0 +1,83 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+/**
+ * Progress of loading a vector store file into a container, kept in the container itself as a marker document so an
+ * interrupted load resumes where it stopped. The marker has no embedding, so vector searches never return it.
+ */
+public class SeedCheckpoint {
+
+    public static final String ID = "vector-store-seed-checkpoint";
+
+    private String id = ID;
+
+    private String file;
+
+    private String fingerprint;
+
+    private long position;
+
+    private boolean complete;
+
+    public SeedCheckpoint() {}
+
+    public SeedCheckpoint(String file, String fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    /**
+     * Identifies the content of the file being loaded, so a checkpoint isn't resumed against another file.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Number of documents from the start of the file that have been written.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    @Override
+    public String toString() {
+        return "SeedCheckpoint{" +
+                "file='" + file + '\'' +
+                ", fingerprint='" + fingerprint + '\'' +
+                ", position=" + position +
+                ", complete=" + complete +
+                '}';
+    }
+}
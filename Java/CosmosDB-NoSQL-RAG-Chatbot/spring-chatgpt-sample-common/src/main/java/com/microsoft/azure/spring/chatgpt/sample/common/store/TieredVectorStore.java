@@ -0,0 +1,85 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Serves searches from an {@link InMemoryVectorStore} copy of a primary store, such as {@link CosmosDBVectorStore}.
+ * <p>
+ * Writes go to the primary store first and are applied to the copy once they succeed. The copy doesn't see writes
+ * made to the primary store by other processes until it is reloaded.
+ */
+public class TieredVectorStore implements VectorStore {
+
+    private final VectorStore primary;
+
+    private final InMemoryVectorStore hot;
+
+    public TieredVectorStore(VectorStore primary, InMemoryVectorStore hot) {
+        this.primary = primary;
+        this.hot = hot;
+    }
+
+    @Override
+    public void saveDocument(String key, CosmosEntity doc) {
+        primary.saveDocument(key, doc);
+        hot.saveDocument(key, doc);
+    }
+
+    @Override
+    public BulkWriteResult saveDocuments(Collection<CosmosEntity> docs) {
+        var result = primary.saveDocuments(docs);
+        var succeeded = new HashSet<>(result.getSucceeded());
+        hot.saveDocuments(docs.stream().filter(doc -> succeeded.contains(doc.getId())).toList());
+        return result;
+    }
+
+    @Override
+    public CosmosEntity getDocument(String key) {
+        return primary.getDocument(key);
+    }
+
+    @Override
+    public void removeDocument(String key) {
+        primary.removeDocument(key);
+        hot.removeDocument(key);
+    }
+
+    @Override
+    public BulkWriteResult removeDocuments(Collection<String> keys) {
+        var result = primary.removeDocuments(keys);
+        hot.removeDocuments(result.getSucceeded());
+        return result;
+    }
+
+    @Override
+    public Map<String, String> getHashes(String sourcePrefix) {
+        return primary.getHashes(sourcePrefix);
+    }
+
+    @Override
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k) {
+        return hot.searchTopKNearest(embedding, k);
+    }
+
+    @Override
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff) {
+        return hot.searchTopKNearest(embedding, k, cutOff);
+    }
+
+    @Override
+    public List<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff, boolean includeEmbedding) {
+        return hot.searchTopKNearest(embedding, k, cutOff, includeEmbedding);
+    }
+
+    /**
+     * Listeners are notified once per change, by the primary store.
+     */
+    @Override
+    public void addChangeListener(Consumer<Collection<String>> listener) {
+        primary.addChangeListener(listener);
+    }
+}
@@ -0,0 +1,124 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import com.azure.cosmos.models.CosmosVectorDataType;
+import com.azure.cosmos.models.CosmosVectorDistanceFunction;
+import com.azure.cosmos.models.CosmosVectorIndexType;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorIndexPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "vector-store.index")
+public class VectorIndexProperties {
+
+    /**
+     * Dimensions of the stored vectors; those of the embedding model when not set.
+     */
+    private Integer dimensions;
+
+    /**
+     * float32, float16, int8 or uint8.
+     */
+    private String dataType = "float32";
+
+    /**
+     * cosine, dotProduct or euclidean.
+     */
+    private String distanceFunction = "cosine";
+
+    /**
+     * flat, quantizedFlat or diskANN.
+     */
+    private String indexType = "diskANN";
+
+    /**
+     * Size of the quantized vectors kept by quantizedFlat and diskANN indexes; the service default when not set.
+     */
+    private Integer quantizationSizeInBytes;
+
+    /**
+     * Candidates considered while building a diskANN index; the service default when not set.
+     */
+    private Integer indexingSearchListSize;
+
+    /**
+     * Paths that split a quantizedFlat or diskANN index; none when not set.
+     */
+    private List<String> vectorIndexShardKey;
+
+    public Integer getDimensions() {
+        return dimensions;
+    }
+
+    public void setDimensions(Integer dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    public String getDataType() {
+        return dataType;
+    }
+
+    public void setDataType(String dataType) {
+        this.dataType = dataType;
+    }
+
+    public String getDistanceFunction() {
+        return distanceFunction;
+    }
+
+    public void setDistanceFunction(String distanceFunction) {
+        this.distanceFunction = distanceFunction;
+    }
+
+    public String getIndexType() {
+        return indexType;
+    }
+
+    public void setIndexType(String indexType) {
+        this.indexType = indexType;
+    }
+
+    public Integer getQuantizationSizeInBytes() {
+        return quantizationSizeInBytes;
+    }
+
+    public void setQuantizationSizeInBytes(Integer quantizationSizeInBytes) {
+        this.quantizationSizeInBytes = quantizationSizeInBytes;
+    }
+
+    public Integer getIndexingSearchListSize() {
+        return indexingSearchListSize;
+    }
+
+    public void setIndexingSearchListSize(Integer indexingSearchListSize) {
+        this.indexingSearchListSize = indexingSearchListSize;
+    }
+
+    public List<String> getVectorIndexShardKey() {
+        return vectorIndexShardKey;
+    }
+
+    public void setVectorIndexShardKey(List<String> vectorIndexShardKey) {
+        this.vectorIndexShardKey = vectorIndexShardKey;
+    }
+
+    public CosmosVectorDataType getCosmosDataType() {
+        return VectorIndexPolicy.parse(CosmosVectorDataType.class, dataType);
+    }
+
+    /**
+     * Builds the policy these properties describe.
+     *
+     * @param embeddingModel the model that produces the stored vectors, used when no dimensions are set
+     */
+    public VectorIndexPolicy toPolicy(String embeddingModel) {
+        return VectorIndexPolicy.builder(dimensions != null ? dimensions : VectorIndexPolicy.dimensionsOf(embeddingModel))
+                .dataType(getCosmosDataType())
+                .distanceFunction(VectorIndexPolicy.parse(CosmosVectorDistanceFunction.class, distanceFunction))
+                .indexType(VectorIndexPolicy.parse(CosmosVectorIndexType.class, indexType))
+                .quantizationSizeInBytes(quantizationSizeInBytes)
+                .indexingSearchListSize(indexingSearchListSize)
+                .vectorIndexShardKey(vectorIndexShardKey)
+                .build();
+    }
+}
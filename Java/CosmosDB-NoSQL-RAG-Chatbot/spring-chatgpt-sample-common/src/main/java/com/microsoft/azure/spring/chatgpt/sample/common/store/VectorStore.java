@@ -1,15 +1,45 @@
 package com.microsoft.azure.spring.chatgpt.sample.common.store;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface VectorStore {
     void saveDocument(String key, CosmosEntity doc);
 
+    BulkWriteResult saveDocuments(Collection<CosmosEntity> docs);
+
     CosmosEntity getDocument(String key);
 
     void removeDocument(String key);
 
-    List<CosmosEntity> searchTopKNearest(List<Double> embedding, int k);
+    BulkWriteResult removeDocuments(Collection<String> keys);
+
+    /**
+     * Returns the id and content hash of every document whose source starts with the given prefix.
+     */
+    Map<String, String> getHashes(String sourcePrefix);
+
+    /**
+     * Returns the {@code k} documents nearest to the embedding, most similar first, however dissimilar they are.
+     */
+    List<CosmosEntity> searchTopKNearest(float[] embedding, int k);
+
+    /**
+     * Returns at most {@code k} documents whose cosine similarity to the embedding is at least {@code cutOff}, most
+     * similar first. The returned documents don't carry their embedding.
+     */
+    List<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff);
+
+    /**
+     * Same as {@link #searchTopKNearest(float[], int, double)}, and also returns the embedding of each document when
+     * {@code includeEmbedding} is set.
+     */
+    List<CosmosEntity> searchTopKNearest(float[] embedding, int k, double cutOff, boolean includeEmbedding);
 
-    List<CosmosEntity> searchTopKNearest(List<Double> embedding, int k, double cutOff);
+    /**
+     * Registers a listener called with the ids of documents saved or removed through this store.
+     */
+    void addChangeListener(Consumer<Collection<String>> listener);
 }
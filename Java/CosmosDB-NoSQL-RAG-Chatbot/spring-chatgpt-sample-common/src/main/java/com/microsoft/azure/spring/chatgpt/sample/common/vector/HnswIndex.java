@@ -0,0 +1,521 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph for approximate nearest neighbor search by cosine similarity.
+ * <p>
+ * Vectors are normalized and kept in contiguous pages of {@code float}s, so similarity is a dot product over one
+ * array. Nodes are never removed; callers that delete documents filter them out of search results instead, and
+ * build a new index once too many are deleted.
+ * <p>
+ * Inserts may run concurrently: each one locks only the nodes whose neighbor lists it changes. Searches take no
+ * locks. Neighbor lists are immutable arrays that writers replace, so a search always sees a consistent list, though
+ * possibly one from before a concurrent insert.
+ */
+public class HnswIndex {
+
+    private static final int PAGE_BITS = 12;
+
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final int MAX_LEVEL = 16;
+
+    private final int dimensions;
+
+    private final int maxConnections;
+
+    private final int maxConnectionsLevel0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Object growLock = new Object();
+
+    private final Object entryLock = new Object();
+
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    private volatile float[][] vectorPages = new float[0][];
+
+    private volatile Node[][] nodePages = new Node[0][];
+
+    private volatile EntryPoint entryPoint;
+
+    /**
+     * @param dimensions     length of the indexed vectors
+     * @param m              neighbors kept per node on the upper levels, twice as many on the bottom level; larger
+     *                       values raise recall and memory use
+     * @param efConstruction candidates considered when linking a new node; larger values build a better graph, slower
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction) {
+        if (dimensions <= 0 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("dimensions and efConstruction must be positive and m at least 2.");
+        }
+        this.dimensions = dimensions;
+        this.maxConnections = m;
+        this.maxConnectionsLevel0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Number of nodes, including those whose documents were deleted.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Adds a vector to the graph.
+     *
+     * @return the node of the vector, numbered from 0 in insertion order
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length + ".");
+        }
+        float[] query = normalize(vector);
+        int id = size.getAndIncrement();
+        ensurePage(id >> PAGE_BITS);
+        System.arraycopy(query, 0, vectorPages[id >> PAGE_BITS], (id & PAGE_MASK) * dimensions, dimensions);
+        int level = randomLevel();
+        Node node = new Node(level);
+        nodePages[id >> PAGE_BITS][id & PAGE_MASK] = node;
+
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            synchronized (entryLock) {
+                if (entryPoint == null) {
+                    entryPoint = new EntryPoint(id, level);
+                    return id;
+                }
+                entry = entryPoint;
+            }
+        }
+
+        int current = entry.node;
+        for (int lc = entry.level; lc > level; lc--) {
+            current = greedySearch(query, current, lc);
+        }
+        for (int lc = Math.min(level, entry.level); lc >= 0; lc--) {
+            var candidates = searchLayer(query, current, efConstruction, lc);
+            int max = lc == 0 ? maxConnectionsLevel0 : maxConnections;
+            int[] neighbors = selectNeighbors(candidates, max);
+            for (int neighbor : neighbors) {
+                connect(id, neighbor, lc, max);
+            }
+            for (int neighbor : neighbors) {
+                connect(neighbor, id, lc, max);
+            }
+            current = candidates.bestNode();
+        }
+
+        if (level > entry.level) {
+            synchronized (entryLock) {
+                if (level > entryPoint.level) {
+                    entryPoint = new EntryPoint(id, level);
+                }
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns up to {@code k} accepted nodes most similar to the query, most similar first.
+     *
+     * @param ef     candidates kept while searching the bottom level; larger values raise recall and latency
+     * @param accept nodes that may be returned, e.g. those whose documents were not deleted; others are still
+     *               traversed
+     */
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + query.length + ".");
+        }
+        EntryPoint entry = entryPoint;
+        if (entry == null || k <= 0) {
+            return List.of();
+        }
+        float[] normalized = normalize(query);
+        int current = entry.node;
+        for (int lc = entry.level; lc > 0; lc--) {
+            current = greedySearch(normalized, current, lc);
+        }
+
+        // widen the search until enough accepted nodes are found, so deleted documents don't shrink the results
+        for (int width = Math.max(ef, k); ; width *= 2) {
+            var candidates = searchLayer(normalized, current, width, 0);
+            var results = new ArrayList<Neighbor>(k);
+            for (var candidate : candidates.sortedDescending()) {
+                if (accept.test(candidate.node())) {
+                    results.add(candidate);
+                    if (results.size() == k) {
+                        break;
+                    }
+                }
+            }
+            if (results.size() == k || candidates.size() < width || width >= size()) {
+                return results;
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the normalized vector of a node.
+     */
+    public float[] getVector(int node) {
+        float[] vector = new float[dimensions];
+        System.arraycopy(vectorPages[node >> PAGE_BITS], (node & PAGE_MASK) * dimensions, vector, 0, dimensions);
+        return vector;
+    }
+
+    private int greedySearch(float[] query, int entry, int level) {
+        int best = entry;
+        float bestScore = similarity(query, entry);
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int neighbor : neighbors(best, level)) {
+                float score = similarity(query, neighbor);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    private Candidates searchLayer(float[] query, int entry, int ef, int level) {
+        var visited = visitedSets.get();
+        visited.reset(size());
+        var toVisit = new NodeHeap(ef);
+        var results = new Candidates(ef);
+        float entryScore = similarity(query, entry);
+        visited.add(entry);
+        toVisit.push(entry, -entryScore);
+        results.offer(entry, entryScore);
+
+        while (toVisit.size() > 0) {
+            float score = -toVisit.peekKey();
+            if (results.size() >= ef && score < results.worstScore()) {
+                break;
+            }
+            int node = toVisit.pop();
+            for (int neighbor : neighbors(node, level)) {
+                if (!visited.add(neighbor)) {
+                    continue;
+                }
+                float neighborScore = similarity(query, neighbor);
+                if (results.size() < ef || neighborScore > results.worstScore()) {
+                    toVisit.push(neighbor, -neighborScore);
+                    results.offer(neighbor, neighborScore);
+                }
+            }
+        }
+        return results;
+    }
+
+    // keeps a candidate only if it is closer to the base node than to any already kept neighbor, which spreads the
+    // links in different directions, then fills up with the closest of the pruned ones
+    private int[] selectNeighbors(Candidates candidates, int max) {
+        var sorted = candidates.sortedDescending();
+        if (sorted.size() <= max) {
+            return sorted.stream().mapToInt(Neighbor::node).toArray();
+        }
+        int[] selected = new int[max];
+        int count = 0;
+        var pruned = new ArrayList<Neighbor>();
+        for (var candidate : sorted) {
+            if (count == max) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < count && diverse; i++) {
+                diverse = similarity(candidate.node(), selected[i]) < candidate.score();
+            }
+            if (diverse) {
+                selected[count++] = candidate.node();
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; count < max && i < pruned.size(); i++) {
+            selected[count++] = pruned.get(i).node();
+        }
+        return count == max ? selected : Arrays.copyOf(selected, count);
+    }
+
+    // adds a link from node to neighbor, pruning the links of node if it has too many; concurrent inserts may link
+    // to a new node before it has linked to its own neighbors, so this is also how a new node gets its links
+    private void connect(int node, int neighbor, int level, int max) {
+        Node target = node(node);
+        synchronized (target) {
+            int[] current = target.neighbors.get(level);
+            for (int existing : current) {
+                if (existing == neighbor) {
+                    return;
+                }
+            }
+            int[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = neighbor;
+            if (updated.length > max) {
+                float[] base = getVector(node);
+                var candidates = new Candidates(updated.length);
+                for (int candidate : updated) {
+                    candidates.offer(candidate, similarity(base, candidate));
+                }
+                updated = selectNeighbors(candidates, max);
+            }
+            target.neighbors.set(level, updated);
+        }
+    }
+
+    private int[] neighbors(int node, int level) {
+        var neighbors = node(node).neighbors;
+        return level < neighbors.length() ? neighbors.get(level) : Node.NONE;
+    }
+
+    private Node node(int node) {
+        return nodePages[node >> PAGE_BITS][node & PAGE_MASK];
+    }
+
+    private float similarity(float[] query, int node) {
+        float[] page = vectorPages[node >> PAGE_BITS];
+        return VectorMath.dot(query, 0, page, (node & PAGE_MASK) * dimensions, dimensions);
+    }
+
+    private float similarity(int a, int b) {
+        float[] pageA = vectorPages[a >> PAGE_BITS];
+        float[] pageB = vectorPages[b >> PAGE_BITS];
+        return VectorMath.dot(pageA, (a & PAGE_MASK) * dimensions, pageB, (b & PAGE_MASK) * dimensions, dimensions);
+    }
+
+    private void ensurePage(int page) {
+        if (page < vectorPages.length) {
+            return;
+        }
+        synchronized (growLock) {
+            int pages = vectorPages.length;
+            if (page < pages) {
+                return;
+            }
+            int newPages = Math.max(page + 1, pages * 2);
+            var newNodePages = Arrays.copyOf(nodePages, newPages);
+            var newVectorPages = Arrays.copyOf(vectorPages, newPages);
+            for (int i = pages; i < newPages; i++) {
+                newNodePages[i] = new Node[PAGE_SIZE];
+                newVectorPages[i] = new float[PAGE_SIZE * dimensions];
+            }
+            nodePages = newNodePages;
+            vectorPages = newVectorPages;
+        }
+    }
+
+    private int randomLevel() {
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        return Math.min((int) (-Math.log(random) * levelMultiplier), MAX_LEVEL);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] result = new float[vector.length];
+        if (norm == 0) {
+            return result;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i] * scale;
+        }
+        return result;
+    }
+
+    public record Neighbor(int node, float score) {
+    }
+
+    private record EntryPoint(int node, int level) {
+    }
+
+    private static final class Node {
+
+        static final int[] NONE = new int[0];
+
+        final AtomicReferenceArray<int[]> neighbors;
+
+        Node(int level) {
+            neighbors = new AtomicReferenceArray<>(level + 1);
+            for (int i = 0; i <= level; i++) {
+                neighbors.set(i, NONE);
+            }
+        }
+    }
+
+    // binary min-heap of nodes keyed by a float
+    private static final class NodeHeap {
+
+        private int[] nodes;
+
+        private float[] keys;
+
+        private int size;
+
+        NodeHeap(int capacity) {
+            nodes = new int[Math.max(capacity, 16)];
+            keys = new float[nodes.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekKey() {
+            return keys[0];
+        }
+
+        void push(int node, float key) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            keys[i] = key;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            int lastNode = nodes[size];
+            float lastKey = keys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= lastKey) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            keys[i] = lastKey;
+            return top;
+        }
+    }
+
+    // the best nodes seen so far, at most a given number, with the worst on top of the heap
+    private static final class Candidates {
+
+        private final NodeHeap heap;
+
+        private final int capacity;
+
+        private int best = -1;
+
+        private float bestScore = Float.NEGATIVE_INFINITY;
+
+        Candidates(int capacity) {
+            this.heap = new NodeHeap(capacity + 1);
+            this.capacity = capacity;
+        }
+
+        int size() {
+            return heap.size();
+        }
+
+        float worstScore() {
+            return heap.peekKey();
+        }
+
+        int bestNode() {
+            return best;
+        }
+
+        void offer(int node, float score) {
+            if (score > bestScore) {
+                best = node;
+                bestScore = score;
+            }
+            heap.push(node, score);
+            if (heap.size() > capacity) {
+                heap.pop();
+            }
+        }
+
+        List<Neighbor> sortedDescending() {
+            var copy = new NodeHeap(heap.size());
+            for (int i = 0; i < heap.size(); i++) {
+                copy.push(heap.nodes[i], heap.keys[i]);
+            }
+            var result = new Neighbor[copy.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                float score = copy.peekKey();
+                result[i] = new Neighbor(copy.pop(), score);
+            }
+            return Arrays.asList(result);
+        }
+    }
+
+    // marks nodes visited by one search; reset in constant time by moving to a new generation
+    private static final class VisitedSet {
+
+        private int[] generations = new int[0];
+
+        private int generation;
+
+        void reset(int capacity) {
+            if (generations.length < capacity) {
+                generations = new int[Math.max(capacity, generations.length * 2)];
+                generation = 0;
+            }
+            if (++generation == 0) {
+                Arrays.fill(generations, 0);
+                generation = 1;
+            }
+        }
+
+        boolean add(int node) {
+            if (node >= generations.length) {
+                generations = Arrays.copyOf(generations, Math.max(node + 1, generations.length * 2));
+            }
+            if (generations[node] == generation) {
+                return false;
+            }
+            generations[node] = generation;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the Vector API, using the widest vectors the CPU supports. Only loaded by {@link VectorMath} when the
+ * {@code jdk.incubator.vector} module is present; the remainder after the last full vector is done with plain loops.
+ * <p>
+ * Float loops keep two accumulators so consecutive fused multiply-adds don't wait on each other. Int8 loops widen
+ * bytes to ints, which needs int vectors of at least 8 lanes; on narrower CPUs they fall back to plain loops.
+ */
+final class PanamaVectorKernels implements VectorKernels {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    private static final boolean WIDEN_BYTES = INTS.length() >= 8;
+
+    // as many bytes as INTS has lanes
+    private static final VectorSpecies<Byte> BYTES = WIDEN_BYTES
+            ? VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.length() * Byte.SIZE)) : null;
+
+    private final ScalarVectorKernels scalar = new ScalarVectorKernels();
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int step = FLOATS.length();
+        var acc0 = FloatVector.zero(FLOATS);
+        var acc1 = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = length - 2 * step; i <= bound; i += 2 * step) {
+            acc0 = FloatVector.fromArray(FLOATS, a, aOffset + i)
+                    .fma(FloatVector.fromArray(FLOATS, b, bOffset + i), acc0);
+            acc1 = FloatVector.fromArray(FLOATS, a, aOffset + i + step)
+                    .fma(FloatVector.fromArray(FLOATS, b, bOffset + i + step), acc1);
+        }
+        for (int bound = length - step; i <= bound; i += step) {
+            acc0 = FloatVector.fromArray(FLOATS, a, aOffset + i)
+                    .fma(FloatVector.fromArray(FLOATS, b, bOffset + i), acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float cosine(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int step = FLOATS.length();
+        var dot = FloatVector.zero(FLOATS);
+        var normA = FloatVector.zero(FLOATS);
+        var normB = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = length - step; i <= bound; i += step) {
+            var x = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            var y = FloatVector.fromArray(FLOATS, b, bOffset + i);
+            dot = x.fma(y, dot);
+            normA = x.fma(x, normA);
+            normB = y.fma(y, normB);
+        }
+        float d = dot.reduceLanes(VectorOperators.ADD);
+        float na = normA.reduceLanes(VectorOperators.ADD);
+        float nb = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float x = a[aOffset + i];
+            float y = b[bOffset + i];
+            d += x * y;
+            na += x * x;
+            nb += y * y;
+        }
+        return VectorMath.cosine(d, na, nb);
+    }
+
+    @Override
+    public float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int step = FLOATS.length();
+        var acc0 = FloatVector.zero(FLOATS);
+        var acc1 = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = length - 2 * step; i <= bound; i += 2 * step) {
+            var d0 = FloatVector.fromArray(FLOATS, a, aOffset + i)
+                    .sub(FloatVector.fromArray(FLOATS, b, bOffset + i));
+            var d1 = FloatVector.fromArray(FLOATS, a, aOffset + i + step)
+                    .sub(FloatVector.fromArray(FLOATS, b, bOffset + i + step));
+            acc0 = d0.fma(d0, acc0);
+            acc1 = d1.fma(d1, acc1);
+        }
+        for (int bound = length - step; i <= bound; i += step) {
+            var d = FloatVector.fromArray(FLOATS, a, aOffset + i)
+                    .sub(FloatVector.fromArray(FLOATS, b, bOffset + i));
+            acc0 = d.fma(d, acc0);
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float d = a[aOffset + i] - b[bOffset + i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (!WIDEN_BYTES) {
+            return scalar.dot(a, aOffset, b, bOffset, length);
+        }
+        int step = INTS.length();
+        var acc = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = length - step; i <= bound; i += step) {
+            var x = (IntVector) ByteVector.fromArray(BYTES, a, aOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            var y = (IntVector) ByteVector.fromArray(BYTES, b, bOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            acc = acc.add(x.mul(y));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        return sum + scalar.dot(a, aOffset + i, b, bOffset + i, length - i);
+    }
+
+    @Override
+    public int l2Squared(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (!WIDEN_BYTES) {
+            return scalar.l2Squared(a, aOffset, b, bOffset, length);
+        }
+        int step = INTS.length();
+        var acc = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = length - step; i <= bound; i += step) {
+            var x = (IntVector) ByteVector.fromArray(BYTES, a, aOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            var y = (IntVector) ByteVector.fromArray(BYTES, b, bOffset + i).convertShape(VectorOperators.B2I, INTS, 0);
+            var d = x.sub(y);
+            acc = acc.add(d.mul(d));
+        }
+        int sum = acc.reduceLanes(VectorOperators.ADD);
+        return sum + scalar.l2Squared(a, aOffset + i, b, bOffset + i, length - i);
+    }
+}
@@ -0,0 +1,77 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Measures how much a {@link VectorQuantizer} changes exact top-k cosine search, compared to float32.
+ * <p>
+ * Both searches are brute force, and the quantized one compares the stored values the way the service does, so the
+ * result is the recall of a flat index on the quantized data type. Approximate indexes lose some more on top of it.
+ */
+public class QuantizationRecall {
+
+    private final List<float[]> corpus;
+
+    private final List<float[]> queries;
+
+    private final int k;
+
+    /**
+     * Uses {@code queryCount} vectors sampled from the corpus as queries; the query itself is excluded from its results.
+     */
+    public QuantizationRecall(List<float[]> corpus, int queryCount, int k, long seed) {
+        this.corpus = corpus;
+        this.k = k;
+        var random = new Random(seed);
+        this.queries = new ArrayList<>();
+        for (int i = 0; i < Math.min(queryCount, corpus.size()); i++) {
+            queries.add(corpus.get(random.nextInt(corpus.size())));
+        }
+    }
+
+    /**
+     * Returns the average fraction of the float32 top-k found by the top-k over quantized vectors.
+     */
+    public double recall(VectorQuantizer quantizer) {
+        var stored = corpus.stream().map(quantizer::quantize).toList();
+        double total = 0;
+        for (var query : queries) {
+            var expected = topK(corpus, query, query);
+            var actual = topK(stored, quantizer.quantize(query), query);
+            if (expected.isEmpty()) {
+                total += 1;
+                continue;
+            }
+            int found = 0;
+            for (var id : actual) {
+                if (expected.contains(id)) {
+                    found++;
+                }
+            }
+            total += (double) found / expected.size();
+        }
+        return queries.isEmpty() ? 1 : total / queries.size();
+    }
+
+    private HashSet<Integer> topK(List<float[]> vectors, float[] query, float[] exclude) {
+        var heap = new PriorityQueue<double[]>((a, b) -> Double.compare(a[0], b[0]));
+        for (int i = 0; i < vectors.size(); i++) {
+            if (corpus.get(i) == exclude) {
+                continue;
+            }
+            heap.add(new double[]{VectorMath.cosine(query, vectors.get(i)), i});
+            if (heap.size() > k) {
+                heap.poll();
+            }
+        }
+        var ids = new HashSet<Integer>();
+        for (var entry : heap) {
+            ids.add((int) entry[1]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,351 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+import com.azure.cosmos.models.CosmosContainerProperties;
+import com.azure.cosmos.models.CosmosVectorDataType;
+import com.azure.cosmos.models.CosmosVectorDistanceFunction;
+import com.azure.cosmos.models.CosmosVectorEmbedding;
+import com.azure.cosmos.models.CosmosVectorEmbeddingPolicy;
+import com.azure.cosmos.models.CosmosVectorIndexSpec;
+import com.azure.cosmos.models.CosmosVectorIndexType;
+import com.azure.cosmos.models.ExcludedPath;
+import com.azure.cosmos.models.IncludedPath;
+import com.azure.cosmos.models.IndexingMode;
+import com.azure.cosmos.models.IndexingPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The vector embedding policy and vector index of a container, built once and applied to new containers or checked
+ * against existing ones.
+ * <p>
+ * Both policies are fixed when a container is created, so a mismatch with an existing container can only be fixed by
+ * recreating it; {@link #validate(CosmosContainerProperties)} reports it at startup instead of at the first query.
+ */
+public final class VectorIndexPolicy {
+
+    private static final Map<String, Integer> MODEL_DIMENSIONS = Map.of(
+            "text-embedding-ada-002", 1536,
+            "text-embedding-3-small", 1536,
+            "text-embedding-3-large", 3072);
+
+    private final String path;
+
+    private final int dimensions;
+
+    private final CosmosVectorDataType dataType;
+
+    private final CosmosVectorDistanceFunction distanceFunction;
+
+    private final CosmosVectorIndexType indexType;
+
+    private final Integer quantizationSizeInBytes;
+
+    private final Integer indexingSearchListSize;
+
+    private final List<String> vectorIndexShardKey;
+
+    private VectorIndexPolicy(Builder builder) {
+        this.path = builder.path;
+        this.dimensions = builder.dimensions;
+        this.dataType = builder.dataType;
+        this.distanceFunction = builder.distanceFunction;
+        this.indexType = builder.indexType;
+        this.quantizationSizeInBytes = builder.quantizationSizeInBytes;
+        this.indexingSearchListSize = builder.indexingSearchListSize;
+        this.vectorIndexShardKey = builder.vectorIndexShardKey;
+    }
+
+    public static Builder builder(int dimensions) {
+        return new Builder(dimensions);
+    }
+
+    /**
+     * Returns the number of dimensions of the vectors produced by an OpenAI embedding model.
+     */
+    public static int dimensionsOf(String embeddingModel) {
+        var dimensions = MODEL_DIMENSIONS.get(embeddingModel);
+        if (dimensions == null) {
+            throw new IllegalArgumentException("Unknown dimensions for embedding model " + embeddingModel
+                    + ", set them explicitly.");
+        }
+        return dimensions;
+    }
+
+    /**
+     * Sets the vector embedding policy of the container, and an indexing policy that indexes the given paths and the
+     * vector index, and excludes everything else.
+     */
+    public CosmosContainerProperties applyTo(CosmosContainerProperties properties, String... includedPaths) {
+        properties.setVectorEmbeddingPolicy(toEmbeddingPolicy());
+
+        IndexingPolicy indexingPolicy = new IndexingPolicy();
+        indexingPolicy.setIndexingMode(IndexingMode.CONSISTENT);
+        indexingPolicy.setExcludedPaths(List.of(new ExcludedPath("/*")));
+        indexingPolicy.setIncludedPaths(Arrays.stream(includedPaths).map(IncludedPath::new).toList());
+        indexingPolicy.setVectorIndexes(List.of(toIndexSpec()));
+        properties.setIndexingPolicy(indexingPolicy);
+        return properties;
+    }
+
+    public CosmosVectorEmbeddingPolicy toEmbeddingPolicy() {
+        CosmosVectorEmbedding embedding = new CosmosVectorEmbedding();
+        embedding.setPath(path);
+        embedding.setDataType(dataType);
+        embedding.setEmbeddingDimensions(dimensions);
+        embedding.setDistanceFunction(distanceFunction);
+        CosmosVectorEmbeddingPolicy policy = new CosmosVectorEmbeddingPolicy();
+        policy.setCosmosVectorEmbeddings(List.of(embedding));
+        return policy;
+    }
+
+    public CosmosVectorIndexSpec toIndexSpec() {
+        CosmosVectorIndexSpec spec = new CosmosVectorIndexSpec();
+        spec.setPath(path);
+        spec.setType(indexType.toString());
+        if (quantizationSizeInBytes != null) {
+            spec.setQuantizationSizeInBytes(quantizationSizeInBytes);
+        }
+        if (indexingSearchListSize != null) {
+            spec.setIndexingSearchListSize(indexingSearchListSize);
+        }
+        if (vectorIndexShardKey != null) {
+            spec.setVectorIndexShardKey(vectorIndexShardKey);
+        }
+        return spec;
+    }
+
+    /**
+     * Compares the policies of an existing container with this one.
+     *
+     * @return a description of each difference; empty when the container matches
+     */
+    public List<String> validate(CosmosContainerProperties existing) {
+        var problems = new ArrayList<String>();
+        var embeddings = existing.getVectorEmbeddingPolicy() != null
+                ? existing.getVectorEmbeddingPolicy().getVectorEmbeddings() : null;
+        var embedding = embeddings == null ? null : embeddings.stream()
+                .filter(e -> path.equals(e.getPath())).findFirst().orElse(null);
+        if (embedding == null) {
+            problems.add("no vector embedding policy for " + path);
+        } else {
+            if (embedding.getEmbeddingDimensions() == null || embedding.getEmbeddingDimensions() != dimensions) {
+                problems.add("dimensions are " + embedding.getEmbeddingDimensions() + ", expected " + dimensions);
+            }
+            if (embedding.getDataType() != dataType) {
+                problems.add("data type is " + embedding.getDataType() + ", expected " + dataType);
+            }
+            if (embedding.getDistanceFunction() != distanceFunction) {
+                problems.add("distance function is " + embedding.getDistanceFunction() + ", expected " + distanceFunction);
+            }
+        }
+
+        var indexes = existing.getIndexingPolicy() != null ? existing.getIndexingPolicy().getVectorIndexes() : null;
+        var index = indexes == null ? null : indexes.stream()
+                .filter(i -> path.equals(i.getPath())).findFirst().orElse(null);
+        if (index == null) {
+            problems.add("no vector index on " + path);
+        } else if (!indexType.toString().equalsIgnoreCase(index.getType())) {
+            problems.add("index type is " + index.getType() + ", expected " + indexType);
+        }
+        return problems;
+    }
+
+    /**
+     * Checks a stored or about to be stored vector against the policy.
+     *
+     * @return a description of the problem, or {@code null} when the vector fits
+     */
+    public String validateVector(float[] vector) {
+        if (vector.length != dimensions) {
+            return "has " + vector.length + " dimensions, expected " + dimensions;
+        }
+        if (dataType == CosmosVectorDataType.INT8 || dataType == CosmosVectorDataType.UINT8) {
+            float min = dataType == CosmosVectorDataType.INT8 ? -128 : 0;
+            float max = dataType == CosmosVectorDataType.INT8 ? 127 : 255;
+            for (float value : vector) {
+                if (value < min || value > max || value != Math.rint(value)) {
+                    return "has value " + value + " that is not a valid " + dataType;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether {@code VectorDistance} is a distance with this policy, smaller for closer vectors, rather than a
+     * similarity: with the euclidean distance function.
+     */
+    public boolean isDistance() {
+        return distanceFunction == CosmosVectorDistanceFunction.EUCLIDEAN;
+    }
+
+    /**
+     * The bound on {@code VectorDistance} that keeps the stored vectors with a cosine similarity of at least
+     * {@code minSimilarity} to the query. Embeddings have unit length, so it is the similarity itself with cosine and
+     * dotProduct, and with euclidean the distance {@code sqrt(2 - 2 * minSimilarity)} between unit vectors. int8 and
+     * uint8 vectors are scaled each by its own factor, so with euclidean their distances say nothing of the angle
+     * and there is no bound.
+     */
+    public double distanceCutOff(double minSimilarity) {
+        if (!isDistance()) {
+            return minSimilarity;
+        }
+        if (dataType == CosmosVectorDataType.INT8 || dataType == CosmosVectorDataType.UINT8) {
+            return Double.MAX_VALUE;
+        }
+        return Math.sqrt(Math.max(0, 2 - 2 * minSimilarity));
+    }
+
+    /**
+     * Whether a search result whose {@code VectorDistance} to the query is {@code score} passes the cutoff of
+     * {@code minSimilarity}, see {@link #distanceCutOff(double)}.
+     */
+    public boolean isWithinCutOff(double score, double minSimilarity) {
+        return isDistance() ? score <= distanceCutOff(minSimilarity) : score >= minSimilarity;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public CosmosVectorDataType getDataType() {
+        return dataType;
+    }
+
+    public CosmosVectorDistanceFunction getDistanceFunction() {
+        return distanceFunction;
+    }
+
+    public CosmosVectorIndexType getIndexType() {
+        return indexType;
+    }
+
+    @Override
+    public String toString() {
+        return "VectorIndexPolicy{" +
+                "path='" + path + '\'' +
+                ", dimensions=" + dimensions +
+                ", dataType=" + dataType +
+                ", distanceFunction=" + distanceFunction +
+                ", indexType=" + indexType +
+                ", quantizationSizeInBytes=" + quantizationSizeInBytes +
+                ", indexingSearchListSize=" + indexingSearchListSize +
+                ", vectorIndexShardKey=" + vectorIndexShardKey +
+                '}';
+    }
+
+    /**
+     * Looks up a Cosmos DB enum constant by its service name ({@code diskANN}) or Java name ({@code DISK_ANN}),
+     * ignoring case.
+     */
+    public static <T extends Enum<T>> T parse(Class<T> type, String value) {
+        return Arrays.stream(type.getEnumConstants())
+                .filter(constant -> constant.toString().equalsIgnoreCase(value) || constant.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown " + type.getSimpleName() + ": " + value));
+    }
+
+    public static final class Builder {
+
+        private final int dimensions;
+
+        private String path = "/embedding";
+
+        private CosmosVectorDataType dataType = CosmosVectorDataType.FLOAT32;
+
+        private CosmosVectorDistanceFunction distanceFunction = CosmosVectorDistanceFunction.COSINE;
+
+        private CosmosVectorIndexType indexType = CosmosVectorIndexType.DISK_ANN;
+
+        private Integer quantizationSizeInBytes;
+
+        private Integer indexingSearchListSize;
+
+        private List<String> vectorIndexShardKey;
+
+        private Builder(int dimensions) {
+            if (dimensions <= 0) {
+                throw new IllegalArgumentException("dimensions must be positive.");
+            }
+            this.dimensions = dimensions;
+        }
+
+        public Builder path(String path) {
+            this.path = Objects.requireNonNull(path);
+            return this;
+        }
+
+        public Builder dataType(CosmosVectorDataType dataType) {
+            this.dataType = Objects.requireNonNull(dataType);
+            return this;
+        }
+
+        public Builder distanceFunction(CosmosVectorDistanceFunction distanceFunction) {
+            this.distanceFunction = Objects.requireNonNull(distanceFunction);
+            return this;
+        }
+
+        /**
+         * flat keeps full vectors and gives exact results, but is limited to 505 dimensions. quantizedFlat and
+         * diskANN keep quantized vectors and are tuned with {@link #quantizationSizeInBytes}; diskANN also with
+         * {@link #indexingSearchListSize}.
+         */
+        public Builder indexType(CosmosVectorIndexType indexType) {
+            this.indexType = Objects.requireNonNull(indexType);
+            return this;
+        }
+
+        /**
+         * Bytes kept per quantized vector by quantizedFlat and diskANN indexes; larger values raise recall and RU.
+         */
+        public Builder quantizationSizeInBytes(Integer quantizationSizeInBytes) {
+            this.quantizationSizeInBytes = quantizationSizeInBytes;
+            return this;
+        }
+
+        /**
+         * Number of candidates diskANN considers while building the index (25 to 500); larger values raise recall
+         * and write cost.
+         */
+        public Builder indexingSearchListSize(Integer indexingSearchListSize) {
+            this.indexingSearchListSize = indexingSearchListSize;
+            return this;
+        }
+
+        /**
+         * Paths whose values split a quantizedFlat or diskANN index into smaller ones, for queries that filter on
+         * them.
+         */
+        public Builder vectorIndexShardKey(List<String> vectorIndexShardKey) {
+            this.vectorIndexShardKey = vectorIndexShardKey == null || vectorIndexShardKey.isEmpty()
+                    ? null : List.copyOf(vectorIndexShardKey);
+            return this;
+        }
+
+        public VectorIndexPolicy build() {
+            if (indexType == CosmosVectorIndexType.FLAT) {
+                if (quantizationSizeInBytes != null || indexingSearchListSize != null || vectorIndexShardKey != null) {
+                    throw new IllegalArgumentException("flat indexes take no quantization, search list or shard key settings.");
+                }
+                if (dimensions > 505) {
+                    throw new IllegalArgumentException("flat indexes support up to 505 dimensions, got " + dimensions + ".");
+                }
+            }
+            if (indexingSearchListSize != null && indexType != CosmosVectorIndexType.DISK_ANN) {
+                throw new IllegalArgumentException("indexingSearchListSize only applies to diskANN indexes.");
+            }
+            if (quantizationSizeInBytes != null && (quantizationSizeInBytes < 1 || quantizationSizeInBytes > dimensions)) {
+                throw new IllegalArgumentException("quantizationSizeInBytes must be between 1 and " + dimensions + ".");
+            }
+            return new VectorIndexPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+/**
+ * The loops behind {@link VectorMath}, over {@code length} components starting at the given offsets. Implementations
+ * don't check bounds beyond what array access does.
+ */
+interface VectorKernels {
+
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Cosine similarity, 0 when either vector is zero.
+     */
+    float cosine(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    int l2Squared(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+}
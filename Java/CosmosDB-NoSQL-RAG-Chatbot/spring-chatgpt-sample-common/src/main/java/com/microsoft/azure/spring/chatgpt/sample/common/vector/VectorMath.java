@@ -0,0 +1,280 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Similarity and distance of embedding vectors, and top-K search over many of them, for scoring vectors in process.
+ * <p>
+ * The loops use the Vector API (SIMD) when the project is built with the {@code vector-api} profile and the JVM runs
+ * with {@code --add-modules jdk.incubator.vector}, and plain loops otherwise; {@link #isAccelerated()} tells which.
+ * Setting the system property
+ * {@code vector-math.scalar=true} forces the plain loops. Results of the two can differ in the last bits, as they sum
+ * in different orders.
+ */
+public final class VectorMath {
+
+    /**
+     * How vectors are compared. Scores of {@code COSINE} and {@code DOT_PRODUCT} are similarities, higher is closer;
+     * the score of {@code EUCLIDEAN} is a distance, lower is closer.
+     */
+    public enum Metric { COSINE, DOT_PRODUCT, EUCLIDEAN }
+
+    /**
+     * A vector found by a top-K search, by its index in the searched vectors.
+     */
+    public record Match(int index, float score) {
+    }
+
+    private static final Logger log = Logger.getLogger(VectorMath.class.getName());
+
+    private static final VectorKernels KERNELS = loadKernels();
+
+    private VectorMath() {
+    }
+
+    // by name, so this class still loads when the incubator module or the kernels built against it aren't there
+    private static VectorKernels loadKernels() {
+        if (!Boolean.getBoolean("vector-math.scalar")
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (VectorKernels) Class.forName(VectorMath.class.getPackageName() + ".PanamaVectorKernels")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ClassNotFoundException e) {
+                log.warning("Vector API kernels not built, using scalar vector math; build with -Pvector-api.");
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warning("Vector API unavailable, using scalar vector math: " + e);
+            }
+        }
+        return new ScalarVectorKernels();
+    }
+
+    /**
+     * Whether the Vector API kernels are in use.
+     */
+    public static boolean isAccelerated() {
+        return !(KERNELS instanceof ScalarVectorKernels);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        checkLengths(a.length, b.length);
+        return KERNELS.dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Dot product of {@code length} components of two arrays, for vectors stored side by side in one array.
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+        return KERNELS.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Cosine similarity, 0 when either vector is zero. For vectors known to have unit length, {@link #dot} gives the
+     * same result in fewer operations.
+     */
+    public static float cosine(float[] a, float[] b) {
+        checkLengths(a.length, b.length);
+        return KERNELS.cosine(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Squared Euclidean distance; ranks the same as the distance without the square root.
+     */
+    public static float l2Squared(float[] a, float[] b) {
+        checkLengths(a.length, b.length);
+        return KERNELS.l2Squared(a, 0, b, 0, a.length);
+    }
+
+    public static float l2Squared(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        checkRange(a.length, aOffset, length);
+        checkRange(b.length, bOffset, length);
+        return KERNELS.l2Squared(a, aOffset, b, bOffset, length);
+    }
+
+    public static float norm(float[] a) {
+        return (float) Math.sqrt(KERNELS.dot(a, 0, a, 0, a.length));
+    }
+
+    /**
+     * Dot product of int8 vectors, exact.
+     */
+    public static int dot(byte[] a, byte[] b) {
+        checkLengths(a.length, b.length);
+        return KERNELS.dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Cosine similarity of int8 vectors, 0 when either vector is zero.
+     */
+    public static float cosine(byte[] a, byte[] b) {
+        checkLengths(a.length, b.length);
+        return cosine(KERNELS.dot(a, 0, b, 0, a.length), KERNELS.dot(a, 0, a, 0, a.length),
+                KERNELS.dot(b, 0, b, 0, b.length));
+    }
+
+    /**
+     * Squared Euclidean distance of int8 vectors, exact.
+     */
+    public static int l2Squared(byte[] a, byte[] b) {
+        checkLengths(a.length, b.length);
+        return KERNELS.l2Squared(a, 0, b, 0, a.length);
+    }
+
+    public static float score(Metric metric, float[] a, float[] b) {
+        return switch (metric) {
+            case COSINE -> cosine(a, b);
+            case DOT_PRODUCT -> dot(a, b);
+            case EUCLIDEAN -> (float) Math.sqrt(l2Squared(a, b));
+        };
+    }
+
+    public static float score(Metric metric, byte[] a, byte[] b) {
+        return switch (metric) {
+            case COSINE -> cosine(a, b);
+            case DOT_PRODUCT -> dot(a, b);
+            case EUCLIDEAN -> (float) Math.sqrt(l2Squared(a, b));
+        };
+    }
+
+    /**
+     * Finds the k vectors closest to the query.
+     *
+     * @return the matches, closest first
+     */
+    public static List<Match> topK(float[] query, List<float[]> vectors, int k, Metric metric) {
+        var top = new TopK(k, metric);
+        for (int i = 0; i < vectors.size(); i++) {
+            top.offer(i, score(metric, query, vectors.get(i)));
+        }
+        return top.toList();
+    }
+
+    /**
+     * Finds the k vectors closest to the query among {@code count} vectors stored one after the other in
+     * {@code matrix}, each as long as the query.
+     *
+     * @return the matches, closest first
+     */
+    public static List<Match> topK(float[] query, float[] matrix, int count, int k, Metric metric) {
+        int dimensions = query.length;
+        checkRange(matrix.length, 0, count * dimensions);
+        var top = new TopK(k, metric);
+        for (int i = 0, offset = 0; i < count; i++, offset += dimensions) {
+            float score = switch (metric) {
+                case COSINE -> KERNELS.cosine(query, 0, matrix, offset, dimensions);
+                case DOT_PRODUCT -> KERNELS.dot(query, 0, matrix, offset, dimensions);
+                case EUCLIDEAN -> (float) Math.sqrt(KERNELS.l2Squared(query, 0, matrix, offset, dimensions));
+            };
+            top.offer(i, score);
+        }
+        return top.toList();
+    }
+
+    /**
+     * Finds the k int8 vectors closest to the query.
+     *
+     * @return the matches, closest first
+     */
+    public static List<Match> topK(byte[] query, List<byte[]> vectors, int k, Metric metric) {
+        var top = new TopK(k, metric);
+        for (int i = 0; i < vectors.size(); i++) {
+            top.offer(i, score(metric, query, vectors.get(i)));
+        }
+        return top.toList();
+    }
+
+    static float cosine(float dot, float normA, float normB) {
+        return normA == 0 || normB == 0 ? 0 : (float) (dot / Math.sqrt((double) normA * normB));
+    }
+
+    private static void checkLengths(int a, int b) {
+        if (a != b) {
+            throw new IllegalArgumentException("Vectors have different dimensions: " + a + " and " + b + ".");
+        }
+    }
+
+    private static void checkRange(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for length " + arrayLength);
+        }
+    }
+
+    /**
+     * The k best scores seen, in a binary min-heap of parallel primitive arrays with the worst kept at the root, so
+     * each vector that doesn't make it costs one comparison and no allocation.
+     */
+    private static final class TopK {
+
+        private final int[] indexes;
+
+        // higher is closer: the similarity, or the negated distance
+        private final float[] keys;
+
+        private final boolean distance;
+
+        private int size;
+
+        TopK(int k, Metric metric) {
+            if (k < 0) {
+                throw new IllegalArgumentException("k must not be negative.");
+            }
+            this.indexes = new int[k];
+            this.keys = new float[k];
+            this.distance = metric == Metric.EUCLIDEAN;
+        }
+
+        void offer(int index, float score) {
+            float key = distance ? -score : score;
+            if (size < keys.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (keys[parent] <= key) {
+                        break;
+                    }
+                    keys[i] = keys[parent];
+                    indexes[i] = indexes[parent];
+                    i = parent;
+                }
+                keys[i] = key;
+                indexes[i] = index;
+            } else if (size > 0 && key > keys[0]) {
+                siftDown(index, key);
+            }
+        }
+
+        private void siftDown(int index, float key) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                indexes[i] = indexes[child];
+                i = child;
+            }
+            keys[i] = key;
+            indexes[i] = index;
+        }
+
+        List<Match> toList() {
+            var matches = new ArrayList<Match>(size);
+            for (int i = 0; i < size; i++) {
+                matches.add(new Match(indexes[i], distance ? -keys[i] : keys[i]));
+            }
+            matches.sort((a, b) -> distance ? Float.compare(a.score(), b.score()) : Float.compare(b.score(), a.score()));
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+import com.azure.cosmos.models.CosmosVectorDataType;
+
+/**
+ * Converts float32 embeddings to the values stored for a Cosmos DB vector data type, and back.
+ * <p>
+ * The quantized values are still carried in a {@code float[]}, as that is what goes over the wire:
+ * <ul>
+ *     <li>{@code float32} leaves the vector unchanged.</li>
+ *     <li>{@code float16} rounds each value to half precision, which is what the service keeps.</li>
+ *     <li>{@code int8} scales the vector so its largest component is 127 and rounds, which keeps the direction and so
+ *     the cosine similarity.</li>
+ *     <li>{@code uint8} maps each component from [-max, max] to [0, 255]. The offset changes cosine similarities, so
+ *     check its recall with {@link QuantizationRecall} before using it with the cosine distance function.</li>
+ * </ul>
+ * Dequantizing returns a vector with the original direction up to quantization error, not the original scale.
+ */
+public abstract class VectorQuantizer {
+
+    public static final VectorQuantizer FLOAT32 = new VectorQuantizer(CosmosVectorDataType.FLOAT32) {
+        @Override
+        public float[] quantize(float[] vector) {
+            return vector;
+        }
+
+        @Override
+        public float[] dequantize(float[] stored) {
+            return stored;
+        }
+    };
+
+    public static final VectorQuantizer FLOAT16 = new VectorQuantizer(CosmosVectorDataType.FLOAT16) {
+        @Override
+        public float[] quantize(float[] vector) {
+            var result = new float[vector.length];
+            for (int i = 0; i < vector.length; i++) {
+                result[i] = roundToHalf(vector[i]);
+            }
+            return result;
+        }
+
+        @Override
+        public float[] dequantize(float[] stored) {
+            return stored;
+        }
+    };
+
+    public static final VectorQuantizer INT8 = new VectorQuantizer(CosmosVectorDataType.INT8) {
+        @Override
+        public float[] quantize(float[] vector) {
+            float scale = 127 / maxAbs(vector);
+            var result = new float[vector.length];
+            for (int i = 0; i < vector.length; i++) {
+                result[i] = Math.max(-127, Math.min(127, Math.round(vector[i] * scale)));
+            }
+            return result;
+        }
+
+        @Override
+        public float[] dequantize(float[] stored) {
+            var result = new float[stored.length];
+            for (int i = 0; i < stored.length; i++) {
+                result[i] = stored[i] / 127;
+            }
+            return result;
+        }
+    };
+
+    public static final VectorQuantizer UINT8 = new VectorQuantizer(CosmosVectorDataType.UINT8) {
+        @Override
+        public float[] quantize(float[] vector) {
+            float scale = 127.5f / maxAbs(vector);
+            var result = new float[vector.length];
+            for (int i = 0; i < vector.length; i++) {
+                result[i] = Math.max(0, Math.min(255, Math.round(vector[i] * scale + 127.5f)));
+            }
+            return result;
+        }
+
+        @Override
+        public float[] dequantize(float[] stored) {
+            var result = new float[stored.length];
+            for (int i = 0; i < stored.length; i++) {
+                result[i] = stored[i] / 127.5f - 1;
+            }
+            return result;
+        }
+    };
+
+    private static final float HALF_MAX = 65504f;
+    private static final float HALF_MIN_NORMAL = 6.103515625e-05f;
+    private static final float HALF_SUBNORMAL_STEPS = 16777216f;  // 2^24
+
+    private final CosmosVectorDataType dataType;
+
+    private VectorQuantizer(CosmosVectorDataType dataType) {
+        this.dataType = dataType;
+    }
+
+    public static VectorQuantizer forDataType(CosmosVectorDataType dataType) {
+        return switch (dataType) {
+            case FLOAT32 -> FLOAT32;
+            case FLOAT16 -> FLOAT16;
+            case INT8 -> INT8;
+            case UINT8 -> UINT8;
+        };
+    }
+
+    public CosmosVectorDataType getDataType() {
+        return dataType;
+    }
+
+    /**
+     * Returns the values to store for the vector. The argument is not modified.
+     */
+    public abstract float[] quantize(float[] vector);
+
+    /**
+     * Returns a float32 vector pointing in the direction of the stored values.
+     */
+    public abstract float[] dequantize(float[] stored);
+
+    @Override
+    public String toString() {
+        return dataType.toString();
+    }
+
+    private static float maxAbs(float[] vector) {
+        float max = 0;
+        for (float value : vector) {
+            max = Math.max(max, Math.abs(value));
+        }
+        return max == 0 ? 1 : max;
+    }
+
+    /**
+     * Rounds to the nearest IEEE 754 half-precision value, ties to even.
+     */
+    static float roundToHalf(float value) {
+        float abs = Math.abs(value);
+        if (Float.isNaN(value) || abs == 0) {
+            return value;
+        }
+        if (abs >= HALF_MAX) {
+            return Math.copySign(HALF_MAX, value);
+        }
+        if (abs < HALF_MIN_NORMAL) {
+            return Math.round(value * HALF_SUBNORMAL_STEPS) / HALF_SUBNORMAL_STEPS;
+        }
+        int bits = Float.floatToRawIntBits(value);
+        // keep the 10 high mantissa bits of the 23
+        int rounded = (bits + 0x0FFF + ((bits >> 13) & 1)) & 0xFFFFE000;
+        return Float.intBitsToFloat(rounded);
+    }
+}
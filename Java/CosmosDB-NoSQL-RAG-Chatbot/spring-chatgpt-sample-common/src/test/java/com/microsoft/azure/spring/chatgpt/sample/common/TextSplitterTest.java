@@ -0,0 +1,157 @@
+package com.microsoft.azure.spring.chatgpt.sample.common;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that {@link TextSplitter#split(String, int)}, which encodes the text once, gives the same chunks with
+ * cl100k_base as the splitter did when it encoded every chunk again. The golden chunks come from that algorithm,
+ * kept here as {@link #splitByEncodingEachChunk}.
+ */
+class TextSplitterTest {
+
+    private static final int[] CHUNK_SIZES = {100, 250, 400};
+
+    private static final String[] SEPARATORS = {" ", " ", " ", ". ", "! ", "? ", ".\n", "\n", "\n\n", "... ", "?!\n",
+            ".\"", ". 1. ", "\n- "};
+
+    private static final String[] ASCII_WORDS = {"the", "vector", "store", "Cosmos", "DB", "embedding", "chunk",
+            "retrieval", "augmented", "generation", "of", "a", "is", "42", "3.14", "e.g.", "U.S.", "don't", "(see",
+            "below)", "--", "#", "https://example.com/a?b=c", "JSON", "\t", "    ", "x=1;", "Mr."};
+
+    private static final String[] MULTI_BYTE_WORDS = {"向量数据库", "检索增强生成", "。", "！", "？", "こんにちは世界",
+            "東京", "한국어", "문장", "🙂", "👩‍💻", "🚀🚀", "🇫🇷", "naïve", "café", "Ωmega", "ß", "—", "…", "«quote»",
+            "Привет", "مرحبا", "𝔘𝔫𝔦𝔠𝔬𝔡𝔢", "é"};
+
+    private final TextSplitter splitter = new TextSplitter();
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    @Test
+    void splitsAsciiTextLikeEncodingEachChunk() {
+        for (long seed = 0; seed < 20; seed++) {
+            assertSameChunks(text(new Random(seed), ASCII_WORDS, SEPARATORS, 3000));
+        }
+    }
+
+    @Test
+    void splitsMultiByteTextLikeEncodingEachChunk() {
+        for (long seed = 0; seed < 20; seed++) {
+            var random = new Random(seed);
+            var words = random.nextBoolean() ? MULTI_BYTE_WORDS : concat(MULTI_BYTE_WORDS, ASCII_WORDS);
+            assertSameChunks(text(random, words, SEPARATORS, 3000));
+        }
+    }
+
+    @Test
+    void splitsTextWithoutPunctuationLikeEncodingEachChunk() {
+        String[] spaces = {" ", " ", "  ", "\t"};
+        for (long seed = 0; seed < 10; seed++) {
+            var random = new Random(seed);
+            assertSameChunks(text(random, new String[]{"lorem", "ipsum", "dolor", "sit", "amet", "42"}, spaces, 3000));
+            assertSameChunks(text(random, new String[]{"向量", "数据库", "🙂", "東京"}, spaces, 3000));
+        }
+        assertSameChunks("a".repeat(5000));
+        assertSameChunks("🙂".repeat(1000));
+    }
+
+    @Test
+    void splitsEdgeCasesLikeEncodingEachChunk() {
+        assertSameChunks("");
+        assertSameChunks("   \n\n  ");
+        assertSameChunks("Short.");
+        assertSameChunks("\n".repeat(3000) + "text after many blank lines.");
+        assertSameChunks("!".repeat(3000));
+        assertSameChunks(("." + " ".repeat(7)).repeat(500));
+        assertSameChunks(("word" + ".".repeat(5) + "\n").repeat(400));
+    }
+
+    private void assertSameChunks(String text) {
+        for (int chunkSize : CHUNK_SIZES) {
+            assertThat(splitter.split(text, chunkSize))
+                    .as("chunks of %d tokens of %s", chunkSize, abbreviate(text))
+                    .isEqualTo(splitByEncodingEachChunk(text, chunkSize));
+        }
+    }
+
+    private static String text(Random random, String[] words, String[] separators, int minLength) {
+        var text = new StringBuilder();
+        while (text.length() < minLength) {
+            text.append(words[random.nextInt(words.length)]);
+            text.append(separators[random.nextInt(separators.length)]);
+        }
+        return text.toString();
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        var all = new ArrayList<>(List.of(first));
+        all.addAll(List.of(second));
+        return all.toArray(String[]::new);
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 80 ? text : text.substring(0, 80) + "...";
+    }
+
+    // the splitter before it encoded the text only once
+    private List<String> splitByEncodingEachChunk(String text, int chunkSize) {
+        if (text == null || text.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Integer> tokens = encoding.encode(text);
+        List<String> chunks = new ArrayList<>();
+        int num_chunks = 0;
+        while (!tokens.isEmpty() && num_chunks < 10000) {
+            List<Integer> chunk = tokens.subList(0, Math.min(chunkSize, tokens.size()));
+            String chunkText = encoding.decode(chunk);
+
+            if (chunkText.trim().isEmpty()) {
+                tokens = tokens.subList(chunk.size(), tokens.size());
+                continue;
+            }
+
+            int lastPunctuation = Math.max(
+                    chunkText.lastIndexOf('.'),
+                    Math.max(
+                            chunkText.lastIndexOf('?'),
+                            Math.max(
+                                    chunkText.lastIndexOf('!'),
+                                    chunkText.lastIndexOf('\n')
+                            )
+                    )
+            );
+
+            if (lastPunctuation != -1 && lastPunctuation > 350) {
+                chunkText = chunkText.substring(0, lastPunctuation + 1);
+            }
+            String chunk_text_to_append = chunkText.replace("\n", " ").trim();
+            if (chunk_text_to_append.length() > 5) {
+                chunks.add(chunk_text_to_append);
+            }
+
+            // a chunk that starts or ends inside a character may encode again to more tokens than are left, where
+            // this used to throw; the splitter ends the split there instead
+            tokens = tokens.subList(Math.min(encoding.encode(chunkText).size(), tokens.size()), tokens.size());
+
+            num_chunks++;
+        }
+
+        if (!tokens.isEmpty()) {
+            String remaining_text = encoding.decode(tokens).replace("\n", " ").trim();
+            if (remaining_text.length() > 5) {
+                chunks.add(remaining_text);
+            }
+        }
+
+        return chunks;
+    }
+}
@@ -0,0 +1,94 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddingCacheTest {
+
+    // header and slot layout, see EmbeddingCache
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_HEADER_SIZE = 44;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void readsEntriesBackAfterReopening() throws Exception {
+        var path = folder.resolve("cache.bin");
+        try (var cache = new EmbeddingCache(path, 10, 2)) {
+            for (int i = 0; i < 5; i++) {
+                cache.put(key(i), embedding(i));
+            }
+        }
+        try (var cache = new EmbeddingCache(path, 10, 2)) {
+            assertThat(cache.size()).isEqualTo(5);
+            for (int i = 0; i < 5; i++) {
+                assertThat(cache.get(key(i))).containsExactly(embedding(i));
+            }
+            assertThat(cache.get(key(5))).isNull();
+        }
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryAcrossReopening() throws Exception {
+        var path = folder.resolve("cache.bin");
+        try (var cache = new EmbeddingCache(path, 3, 1)) {
+            cache.put(key(0), embedding(0));
+            cache.put(key(1), embedding(1));
+            cache.put(key(2), embedding(2));
+            cache.get(key(0));
+        }
+        try (var cache = new EmbeddingCache(path, 3, 1)) {
+            cache.put(key(3), embedding(3));
+            assertThat(cache.get(key(1))).isNull();
+            assertThat(cache.get(key(0))).containsExactly(embedding(0));
+            assertThat(cache.getEvictions()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void dropsSlotsWhoseEmbeddingWasPartlyWritten() throws Exception {
+        var path = folder.resolve("cache.bin");
+        try (var cache = new EmbeddingCache(path, 10, 2)) {
+            cache.put(key(0), embedding(0));
+            cache.put(key(1), embedding(1));
+        }
+        // as if the process died with only part of the second slot on disk
+        int slotSize = SLOT_HEADER_SIZE + 4 * Float.BYTES;
+        try (var file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(HEADER_SIZE + slotSize + SLOT_HEADER_SIZE + Float.BYTES);
+            file.writeInt(0x12345678);
+        }
+        try (var cache = new EmbeddingCache(path, 10, 2)) {
+            assertThat(cache.size()).isEqualTo(1);
+            assertThat(cache.get(key(0))).containsExactly(embedding(0));
+            assertThat(cache.get(key(1))).isNull();
+        }
+    }
+
+    @Test
+    void copiesEmbeddingsInAndOut() throws Exception {
+        try (var cache = new EmbeddingCache(folder.resolve("cache.bin"), 10, 2)) {
+            var stored = embedding(0);
+            cache.put(key(0), stored);
+            stored[0] = -1;
+            cache.get(key(0))[1] = -1;
+
+            assertThat(cache.get(key(0))).containsExactly(embedding(0));
+        }
+    }
+
+    private static ByteBuffer key(int i) {
+        return EmbeddingCache.key("deployment", "model", "text " + i);
+    }
+
+    private static float[] embedding(int i) {
+        return new float[]{i, i + 0.5f, -i, 1};
+    }
+}
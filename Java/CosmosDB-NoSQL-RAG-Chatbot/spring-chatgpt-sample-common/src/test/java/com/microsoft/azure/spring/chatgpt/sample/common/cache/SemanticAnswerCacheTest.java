@@ -0,0 +1,90 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.cache;
+
+import com.azure.ai.openai.models.ChatCompletions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticAnswerCacheTest {
+
+    private final ChatCompletions first = answer("first");
+
+    private final ChatCompletions second = answer("second");
+
+    @Test
+    void answersQuestionsWithinTheSimilarityThreshold() {
+        var cache = new SemanticAnswerCache(0.95, Duration.ofHours(1), 10);
+        cache.put(new float[]{1, 0, 0}, List.of("a"), first);
+        cache.put(new float[]{0, 1, 0}, List.of("b"), second);
+
+        // cosine similarities 0.995 and 0.8 to the first question, whatever the length
+        assertThat(cache.get(new float[]{10, 1, 0})).isSameAs(first);
+        assertThat(cache.get(new float[]{0.8f, 0, 0.6f})).isNull();
+        assertThat(cache.get(new float[]{0, 2, 0.1f})).isSameAs(second);
+        assertThat(cache.get(new float[]{1, 0})).isNull();
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    void answersWithTheMostSimilarQuestion() {
+        var cache = new SemanticAnswerCache(0.9, Duration.ofHours(1), 10);
+        cache.put(new float[]{1, 0.3f}, List.of("a"), first);
+        cache.put(new float[]{1, 0.1f}, List.of("b"), second);
+
+        assertThat(cache.get(new float[]{1, 0})).isSameAs(second);
+    }
+
+    @Test
+    void dropsAnswersBuiltFromChangedChunks() {
+        var cache = new SemanticAnswerCache(0.95, Duration.ofHours(1), 10);
+        cache.put(new float[]{1, 0}, List.of("a", "b"), first);
+        cache.put(new float[]{0, 1}, List.of("c"), second);
+
+        cache.invalidate(List.of("b", "x"));
+
+        assertThat(cache.get(new float[]{1, 0})).isNull();
+        assertThat(cache.get(new float[]{0, 1})).isSameAs(second);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedAnswer() {
+        var cache = new SemanticAnswerCache(0.95, Duration.ofHours(1), 2);
+        cache.put(new float[]{1, 0, 0}, List.of("a"), first);
+        cache.put(new float[]{0, 1, 0}, List.of("b"), second);
+        cache.get(new float[]{1, 0, 0});
+
+        cache.put(new float[]{0, 0, 1}, List.of("c"), answer("third"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(new float[]{1, 0, 0})).isSameAs(first);
+        assertThat(cache.get(new float[]{0, 1, 0})).isNull();
+    }
+
+    @Test
+    void expiresAnswersAfterTheTtl() throws InterruptedException {
+        var cache = new SemanticAnswerCache(0.95, Duration.ofMillis(50), 10);
+        cache.put(new float[]{1, 0}, List.of("a"), first);
+        assertThat(cache.get(new float[]{1, 0})).isSameAs(first);
+
+        Thread.sleep(100);
+
+        assertThat(cache.get(new float[]{1, 0})).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    // the SDK type is final, with no public constructor
+    private static ChatCompletions answer(String id) {
+        try {
+            return new ObjectMapper().readValue("{\"id\": \"" + id + "\", \"created\": 0, \"choices\": []}",
+                    ChatCompletions.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.reader.SimpleFolderReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FolderWatcherTest {
+
+    private record Update(List<Path> files, List<String> deleted) {
+    }
+
+    @TempDir
+    Path temp;
+
+    private Path root;
+
+    private Path manifestPath;
+
+    private IndexedFolder folder;
+
+    private final BlockingQueue<Update> updates = new LinkedBlockingQueue<>();
+
+    private final IngestionPipeline pipeline = mock(IngestionPipeline.class);
+
+    private Thread thread;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        root = Files.createDirectory(temp.resolve("docs"));
+        manifestPath = temp.resolve("manifest.json");
+        folder = IndexedFolder.of(root, "docs");
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    void indexesWhatChangedSinceTheManifestThenWatchesTheFolder() throws Exception {
+        var unchanged = Files.writeString(root.resolve("unchanged.txt"), "unchanged");
+        var touched = Files.writeString(root.resolve("touched.txt"), "touched");
+        var changed = Files.writeString(root.resolve("changed.txt"), "changed");
+        var added = Files.writeString(root.resolve("added.md"), "added");
+        Files.writeString(root.resolve("ignored.pdf"), "not a supported file");
+        var manifest = new IndexManifest("docs");
+        manifest.getFiles().put("docs/unchanged.txt", IndexManifest.Entry.of(unchanged));
+        var touchedEntry = IndexManifest.Entry.of(touched);
+        manifest.getFiles().put("docs/touched.txt", new IndexManifest.Entry(touchedEntry.getSize(),
+                touchedEntry.getModified() - 1000, touchedEntry.getHash()));
+        manifest.getFiles().put("docs/changed.txt", new IndexManifest.Entry(7, 0, "old hash"));
+        manifest.getFiles().put("docs/deleted.txt", new IndexManifest.Entry(7, 0, "deleted hash"));
+        manifest.save(manifestPath);
+        succeedUpdates();
+
+        start();
+
+        var first = updates.poll(10, TimeUnit.SECONDS);
+        assertThat(first).isNotNull();
+        assertThat(first.files()).containsExactlyInAnyOrder(changed, added);
+        assertThat(first.deleted()).containsExactly("docs/deleted.txt");
+        var saved = awaitManifest(files -> files.contains("docs/added.md"));
+        assertThat(saved.getFiles()).containsOnlyKeys("docs/unchanged.txt", "docs/touched.txt", "docs/changed.txt",
+                "docs/added.md");
+        assertThat(saved.getFiles().get("docs/touched.txt").getModified()).isEqualTo(touchedEntry.getModified());
+
+        var watched = Files.writeString(root.resolve("watched.txt"), "watched");
+        Files.delete(changed);
+
+        var next = updates.poll(10, TimeUnit.SECONDS);
+        assertThat(next).isNotNull();
+        assertThat(next.files()).containsExactly(watched);
+        assertThat(next.deleted()).containsExactly("docs/changed.txt");
+        assertThat(awaitManifest(files -> files.contains("docs/watched.txt")).getFiles())
+                .containsOnlyKeys("docs/unchanged.txt", "docs/touched.txt", "docs/added.md", "docs/watched.txt");
+    }
+
+    @Test
+    void leavesFailedChangesOutOfTheManifest() throws Exception {
+        Files.writeString(root.resolve("added.txt"), "added");
+        when(pipeline.update(any(), anyList(), any())).thenAnswer(invocation -> {
+            record(invocation.getArgument(1), invocation.getArgument(2));
+            var stats = new IngestionStats();
+            stats.failures.increment();
+            return stats;
+        });
+
+        start();
+
+        assertThat(updates.poll(10, TimeUnit.SECONDS)).isNotNull();
+        thread.interrupt();
+        thread.join(5000);
+        assertThat(Files.exists(manifestPath)).isFalse();
+    }
+
+    private void succeedUpdates() throws Exception {
+        when(pipeline.update(any(), anyList(), any())).thenAnswer(invocation -> {
+            record(invocation.getArgument(1), invocation.getArgument(2));
+            return new IngestionStats();
+        });
+    }
+
+    private void record(List<Path> files, Collection<String> deleted) {
+        updates.add(new Update(List.copyOf(files), new ArrayList<>(deleted)));
+    }
+
+    private void start() {
+        var watcher = new FolderWatcher(folder, manifestPath, new SimpleFolderReader(root.toString()), pipeline,
+                Duration.ofMillis(500));
+        thread = new Thread(() -> {
+            try {
+                watcher.run();
+            } catch (InterruptedException e) {
+                // stopped by the test
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // the manifest is saved after the pipeline returns
+    private IndexManifest awaitManifest(Predicate<Set<String>> condition) throws Exception {
+        for (long deadline = System.currentTimeMillis() + 10_000; System.currentTimeMillis() < deadline; ) {
+            var manifest = IndexManifest.load(manifestPath, "docs");
+            if (condition.test(manifest.getFiles().keySet())) {
+                return manifest;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("The manifest was not saved in time.");
+    }
+}
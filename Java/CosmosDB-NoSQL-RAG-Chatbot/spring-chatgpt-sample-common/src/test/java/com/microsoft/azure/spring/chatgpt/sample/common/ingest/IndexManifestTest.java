@@ -0,0 +1,64 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexManifestTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void readsBackTheFilesItSaves() throws Exception {
+        var path = folder.resolve("manifest.json");
+        var manifest = new IndexManifest("docs");
+        manifest.getFiles().put("docs/b.txt", new IndexManifest.Entry(2, 20, "hash-b"));
+        manifest.getFiles().put("docs/a.txt", new IndexManifest.Entry(1, 10, "hash-a"));
+
+        manifest.save(path);
+        var loaded = IndexManifest.load(path, "docs");
+
+        assertThat(loaded.getRoot()).isEqualTo("docs");
+        assertThat(loaded.getFiles()).containsOnlyKeys("docs/a.txt", "docs/b.txt");
+        var entry = loaded.getFiles().get("docs/b.txt");
+        assertThat(entry.getSize()).isEqualTo(2);
+        assertThat(entry.getModified()).isEqualTo(20);
+        assertThat(entry.getHash()).isEqualTo("hash-b");
+        assertThat(Files.exists(folder.resolve("manifest.json.tmp"))).isFalse();
+    }
+
+    @Test
+    void startsEmptyWithoutAFileOrForAnotherFolder() throws Exception {
+        var path = folder.resolve("manifest.json");
+        assertThat(IndexManifest.load(path, "docs").getFiles()).isEmpty();
+
+        var manifest = new IndexManifest("docs");
+        manifest.getFiles().put("docs/a.txt", new IndexManifest.Entry(1, 10, "hash-a"));
+        manifest.save(path);
+
+        var other = IndexManifest.load(path, "notes");
+        assertThat(other.getRoot()).isEqualTo("notes");
+        assertThat(other.getFiles()).isEmpty();
+    }
+
+    @Test
+    void tellsUnchangedFilesBySizeAndModificationTime() throws Exception {
+        var file = Files.writeString(folder.resolve("a.txt"), "content");
+        var entry = IndexManifest.Entry.of(file);
+
+        assertThat(entry.getSize()).isEqualTo(7);
+        // SHA-256 of "content"
+        assertThat(entry.getHash()).isEqualTo("ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73");
+        assertThat(entry.matches(file)).isTrue();
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(entry.getModified() + 1000));
+        assertThat(entry.matches(file)).isFalse();
+        assertThat(IndexManifest.Entry.of(file).getHash()).isEqualTo(entry.getHash());
+    }
+}
@@ -0,0 +1,62 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ingest;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.EmbeddingBatcher;
+import com.microsoft.azure.spring.chatgpt.sample.common.TextSplitter;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.BulkWriteResult;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.VectorStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IngestionPipelineTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void countsEmbeddingsOfAnotherSizeAsFailuresAndWritesTheRest() throws Exception {
+        var files = List.of(
+                Files.writeString(folder.resolve("a.txt"), "The first file, embedded with three dimensions."),
+                Files.writeString(folder.resolve("b.txt"), "The second file, embedded with only two."),
+                Files.writeString(folder.resolve("c.txt"), "The third file, embedded with three again."));
+
+        var batcher = mock(EmbeddingBatcher.class);
+        when(batcher.countTokens(anyString())).thenReturn(10);
+        when(batcher.embed(anyList(), anyInt())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(text -> text.contains("only two") ? new float[2] : new float[3]).toList();
+        });
+
+        var written = new CopyOnWriteArrayList<CosmosEntity>();
+        var store = mock(VectorStore.class);
+        when(store.saveDocuments(any())).thenAnswer(invocation -> {
+            written.addAll(invocation.<Collection<CosmosEntity>>getArgument(0));
+            return mock(BulkWriteResult.class);
+        });
+
+        var properties = new IngestionProperties();
+        // files are read in order, so the first embedding sets the size
+        properties.setReadThreads(1);
+        var pipeline = new IngestionPipeline(new TextSplitter(), batcher, store, properties);
+
+        var stats = pipeline.run(IndexedFolder.of(folder, "docs"), files);
+
+        assertThat(stats.getFailures()).isEqualTo(1);
+        assertThat(stats.getChunksEmbedded()).isEqualTo(2);
+        assertThat(written).extracting(CosmosEntity::getSource).containsExactlyInAnyOrder("docs/a.txt", "docs/c.txt");
+    }
+}
@@ -0,0 +1,111 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.prompt;
+
+import com.azure.ai.openai.models.ChatMessage;
+import com.azure.ai.openai.models.ChatRole;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContextAssemblerTest {
+
+    // a token per word
+    private static final ToIntFunction<String> WORDS = text -> text.isBlank() ? 0 : text.trim().split("\\s+").length;
+
+    private final ContextAssembler assembler = new ContextAssembler(WORDS, new PromptProperties());
+
+    @Test
+    void takesChunksInOrderUntilTheBudgetIsSpent() {
+        var chunks = List.of(chunk("a", words("a", 5)), chunk("b", words("b", 5)), chunk("c", words("c", 5)));
+
+        // 5, then 5 and a separator
+        assertThat(assembler.select(chunks, 11)).containsExactly(words("a", 5), words("b", 5));
+        assertThat(assembler.select(chunks, 10)).containsExactly(words("a", 5));
+        assertThat(assembler.select(chunks, 4)).isEmpty();
+    }
+
+    @Test
+    void skipsAChunkThatDoesNotFitForSmallerOnesAfterIt() {
+        var chunks = List.of(chunk("a", words("a", 8)), chunk("b", words("b", 5)), chunk("c", words("c", 2)));
+
+        assertThat(assembler.select(chunks, 12)).containsExactly(words("a", 8), words("c", 2));
+    }
+
+    @Test
+    void usesStoredTokenCountsOverEncoding() {
+        var stored = new CosmosEntity("a", "a", words("a", 5), "docs/a.txt", 50, null);
+
+        assertThat(assembler.select(List.of(stored), 49)).isEmpty();
+        assertThat(assembler.select(List.of(stored), 50)).hasSize(1);
+    }
+
+    @Test
+    void dropsDuplicateAndOverlappingChunks() {
+        String first = "The quick brown fox jumps over the lazy dog near the river bank at dawn.";
+        String next = "near the river bank at dawn. Then it runs into the forest and hides.";
+        var chunks = List.of(
+                chunk("first", first),
+                new CosmosEntity("copy", "first", "same hash, other text", "docs/b.txt", null),
+                chunk("contained", "jumps over the lazy dog"),
+                // shares a sentence of 28 characters with the first, too short to count as an overlap
+                chunk("next", next),
+                chunk("overlapping", "fox jumps over the lazy dog near the river bank at dawn. Yes."),
+                chunk("other", "Something else entirely."));
+
+        assertThat(assembler.select(chunks, 1000)).containsExactly(first, next, "Something else entirely.");
+    }
+
+    @Test
+    void fitsTheContextInTheWindowLeftByTheConversationAndTheAnswer() {
+        var properties = new PromptProperties();
+        properties.setContextWindow(200);
+        properties.setAnswerTokens(50);
+        var assembler = new ContextAssembler(WORDS, properties);
+        var messages = List.of(
+                new ChatMessage(ChatRole.SYSTEM).setContent(words("system", 20)),
+                new ChatMessage(ChatRole.USER).setContent("question?"));
+        var chunks = new ArrayList<CosmosEntity>();
+        for (int i = 0; i < 20; i++) {
+            chunks.add(chunk("chunk" + i, words("chunk" + i, 10)));
+        }
+
+        var prompt = assembler.assemble(messages, chunks, "question?");
+
+        assertThat(prompt.tokens()).isLessThanOrEqualTo(200 - 50);
+        // one more chunk, with its separator, would not have fit
+        assertThat(prompt.tokens() + 11).isGreaterThan(200 - 50);
+        assertThat(prompt.messages()).hasSize(2);
+        assertThat(prompt.messages().get(0).getContent()).isEqualTo(words("system", 20));
+        assertThat(prompt.messages().get(1).getContent())
+                .isEqualTo(PromptTemplate.formatWithContext(chunks.subList(0, prompt.chunks()).stream()
+                        .map(CosmosEntity::getText).toList(), "question?"));
+    }
+
+    @Test
+    void neverGoesOverTheMaximumContextTokens() {
+        var properties = new PromptProperties();
+        properties.setMaxContextTokens(25);
+        var assembler = new ContextAssembler(WORDS, properties);
+        var chunks = new ArrayList<CosmosEntity>();
+        for (int i = 0; i < 5; i++) {
+            chunks.add(chunk("chunk" + i, words("chunk" + i, 10)));
+        }
+
+        var prompt = assembler.assemble(List.of(new ChatMessage(ChatRole.USER).setContent("q")), chunks, "q");
+
+        assertThat(prompt.chunks()).isEqualTo(2);
+    }
+
+    private static CosmosEntity chunk(String id, String text) {
+        return new CosmosEntity(id, id, text, "docs/" + id + ".txt", null);
+    }
+
+    private static String words(String word, int count) {
+        return String.join(" ", Collections.nCopies(count, word));
+    }
+}
@@ -0,0 +1,104 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.prompt;
+
+import com.azure.ai.openai.models.ChatMessage;
+import com.azure.ai.openai.models.ChatRole;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HistoryCompactorTest {
+
+    // a token per word
+    private static final ToIntFunction<ChatMessage> WORDS = message -> message.getContent().split(" ").length;
+
+    private final ChatMessage system = message(ChatRole.SYSTEM, "system", 10);
+
+    private final List<ChatMessage> conversation = List.of(system,
+            message(ChatRole.USER, "q1", 10), message(ChatRole.ASSISTANT, "a1", 30),
+            message(ChatRole.USER, "q2", 10), message(ChatRole.ASSISTANT, "a2", 30),
+            message(ChatRole.USER, "q3", 10));
+
+    @Test
+    void keepsAConversationThatFits() {
+        var compactor = new HistoryCompactor(WORDS, properties(80, false));
+
+        var compaction = compactor.compact(conversation);
+
+        assertThat(compaction.messages()).isEqualTo(conversation);
+        assertThat(compaction.savedTokens()).isZero();
+        assertThat(compactor.getSavedTokens()).isZero();
+    }
+
+    @Test
+    void keepsTheSystemMessageAndTheMostRecentTurnsThatFit() {
+        var compactor = new HistoryCompactor(WORDS, properties(40, false));
+
+        var compaction = compactor.compact(conversation);
+
+        assertThat(compaction.messages()).containsExactly(system, conversation.get(3), conversation.get(4),
+                conversation.get(5));
+        assertThat(compaction.originalTokens()).isEqualTo(100);
+        assertThat(compaction.tokens()).isEqualTo(60);
+        assertThat(compactor.getSavedTokens()).isEqualTo(40);
+    }
+
+    @Test
+    void doesNotStartWithAnAnswerWhoseQuestionIsLeftOut() {
+        var compactor = new HistoryCompactor(WORDS, properties(35, false));
+
+        var compaction = compactor.compact(conversation);
+
+        // a2 alone would fit, but not with q2
+        assertThat(compaction.messages()).containsExactly(system, conversation.get(5));
+    }
+
+    @Test
+    void replacesTheLeftOutTurnsWithASummaryOnceItIsReady() throws InterruptedException {
+        var requests = new CopyOnWriteArrayList<List<ChatMessage>>();
+        try (var compactor = new HistoryCompactor(WORDS, properties(40, true), request -> {
+            requests.add(request);
+            return "q1 was asked and a1 answered";
+        })) {
+            var first = compactor.compact(conversation);
+            assertThat(summaryOf(first)).isNull();
+            assertThat(first.messages()).hasSize(4);
+
+            HistoryCompactor.Compaction next = first;
+            for (long deadline = System.currentTimeMillis() + 5000;
+                 next.messages().size() == 4 && System.currentTimeMillis() < deadline; ) {
+                Thread.sleep(10);
+                next = compactor.compact(conversation);
+            }
+
+            assertThat(next.messages()).hasSize(5);
+            assertThat(next.messages().get(0)).isSameAs(system);
+            assertThat(summaryOf(next)).isSameAs(next.messages().get(1));
+            assertThat(next.messages().get(1).getContent()).endsWith("q1 was asked and a1 answered");
+            assertThat(next.messages().subList(2, 5)).isEqualTo(conversation.subList(3, 6));
+            assertThat(requests).hasSize(1);
+            assertThat(requests.get(0).get(1).getContent()).contains("q1").contains("a1").doesNotContain("q2");
+        }
+    }
+
+    private static ChatMessage summaryOf(HistoryCompactor.Compaction compaction) {
+        return compaction.messages().stream()
+                .filter(message -> message.getRole() == ChatRole.SYSTEM && message.getContent().startsWith("Summary"))
+                .findFirst().orElse(null);
+    }
+
+    private static HistoryProperties properties(int maxTokens, boolean summarize) {
+        var properties = new HistoryProperties();
+        properties.setMaxTokens(maxTokens);
+        properties.setSummarize(summarize);
+        return properties;
+    }
+
+    private static ChatMessage message(ChatRole role, String word, int words) {
+        return new ChatMessage(role).setContent(String.join(" ", Collections.nCopies(words, word)));
+    }
+}
@@ -0,0 +1,87 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveRateLimiterTest {
+
+    @Test
+    void admitsAFullBucketAtOnceThenPacesAtTheQuota() throws InterruptedException {
+        // 1000 tokens a second
+        var limiter = new AdaptiveRateLimiter(60_000, 10_000);
+
+        long start = System.nanoTime();
+        limiter.acquire(60_000);
+        assertThat(elapsedMillis(start)).isLessThan(500);
+
+        start = System.nanoTime();
+        limiter.acquire(200);
+        assertThat(elapsedMillis(start)).isBetween(150L, 2000L);
+    }
+
+    @Test
+    void pacesRequestsAtTheRequestQuota() throws InterruptedException {
+        // 10 requests a second
+        var limiter = new AdaptiveRateLimiter(1_000_000, 600);
+        for (int i = 0; i < 600; i++) {
+            limiter.acquire(1);
+        }
+
+        long start = System.nanoTime();
+        limiter.acquire(1);
+        assertThat(elapsedMillis(start)).isBetween(80L, 2000L);
+    }
+
+    @Test
+    void admitsARequestLargerThanTheBucket() throws InterruptedException {
+        var limiter = new AdaptiveRateLimiter(1000, 100);
+
+        long start = System.nanoTime();
+        limiter.acquire(5000);
+        assertThat(elapsedMillis(start)).isLessThan(500);
+    }
+
+    @Test
+    void slowsDownWhenThrottledAndRecoversOnSuccess() {
+        var limiter = new AdaptiveRateLimiter(60_000, 10_000);
+
+        limiter.onThrottled(Duration.ZERO);
+        limiter.onThrottled(Duration.ZERO);
+        assertThat(limiter.getRateFactor()).isEqualTo(0.25);
+        for (int i = 0; i < 10; i++) {
+            limiter.onThrottled(Duration.ZERO);
+        }
+        assertThat(limiter.getRateFactor()).isEqualTo(0.05);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+        assertThat(limiter.getRateFactor()).isEqualTo(1.0);
+    }
+
+    @Test
+    void pausesCallersForTheRetryAfterInterval() throws InterruptedException {
+        var limiter = new AdaptiveRateLimiter(6_000_000, 600_000);
+
+        limiter.onThrottled(Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        limiter.acquire(1);
+        assertThat(elapsedMillis(start)).isBetween(190L, 2000L);
+    }
+
+    @Test
+    void rejectsNonPositiveQuotas() {
+        assertThatThrownBy(() -> new AdaptiveRateLimiter(0, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AdaptiveRateLimiter(10, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
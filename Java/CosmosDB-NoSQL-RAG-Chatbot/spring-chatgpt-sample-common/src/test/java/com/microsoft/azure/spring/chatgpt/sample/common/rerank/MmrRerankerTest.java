@@ -0,0 +1,61 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.rerank;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MmrRerankerTest {
+
+    private static final float[] QUERY = {1, 0, 0};
+
+    // relevance 0.95
+    private final CosmosEntity best = doc("best", 0.95f, 0.312f, 0);
+
+    // relevance 0.9, 0.92 similar to best
+    private final CosmosEntity similar = doc("similar", 0.9f, 0.2f, 0.387f);
+
+    // relevance 0.8, 0.65 similar to best
+    private final CosmosEntity different = doc("different", 0.8f, -0.36f, -0.48f);
+
+    // the same chunk as best, found again
+    private final CosmosEntity duplicate = doc("duplicate", 0.94f, 0.33f, 0.01f);
+
+    @Test
+    void ranksByRelevanceAloneWithLambdaOne() {
+        var reranker = new MmrReranker(20, 1, 1.01);
+
+        assertThat(reranker.rerank(QUERY, List.of(different, similar, best), 3)).containsExactly(best, similar, different);
+    }
+
+    @Test
+    void prefersAChunkThatAddsSomethingOverAMoreRelevantRepeat() {
+        var reranker = new MmrReranker(20, 0.7, 0.95);
+
+        assertThat(reranker.rerank(QUERY, List.of(best, similar, different), 3)).containsExactly(best, different, similar);
+        assertThat(reranker.rerank(QUERY, List.of(best, similar, different), 2)).containsExactly(best, different);
+    }
+
+    @Test
+    void leavesOutNearDuplicatesOfPickedChunks() {
+        var reranker = new MmrReranker(20, 0.7, 0.95);
+
+        assertThat(reranker.rerank(QUERY, List.of(best, duplicate, similar, different), 4))
+                .containsExactly(best, different, similar);
+    }
+
+    @Test
+    void keepsTheSearchOrderWhenEmbeddingsAreMissing() {
+        var reranker = new MmrReranker(20, 0.7, 0.95);
+        var withoutEmbedding = new CosmosEntity("none", "none", "text", null);
+
+        assertThat(reranker.rerank(QUERY, List.of(different, withoutEmbedding, best), 2))
+                .containsExactly(different, withoutEmbedding);
+    }
+
+    private static CosmosEntity doc(String id, float... embedding) {
+        return new CosmosEntity(id, id, "text of " + id, embedding);
+    }
+}
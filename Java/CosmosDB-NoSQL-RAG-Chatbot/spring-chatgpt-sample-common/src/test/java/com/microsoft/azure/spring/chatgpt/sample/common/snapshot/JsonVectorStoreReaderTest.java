@@ -0,0 +1,77 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.snapshot;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonVectorStoreReaderTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void readsTheDocumentsOfTheStoreOneAtATime() throws IOException {
+        var path = write("{\"version\": {\"nested\": [1, 2]}, \"store\": {"
+                + "\"a\": {\"id\": \"a\", \"hash\": \"h\", \"text\": \"one\", \"embedding\": [1, 0]},"
+                + "\"b\": {\"hash\": \"h\", \"text\": \"two\", \"source\": \"docs/b.txt\", \"embedding\": [0.5, 1]}"
+                + "}, \"trailing\": true}");
+
+        try (var reader = new JsonVectorStoreReader(path)) {
+            assertThat(reader.hasNext()).isTrue();
+            var first = reader.next();
+            long afterFirst = reader.getBytesRead();
+            var second = reader.next();
+
+            assertThat(first.getId()).isEqualTo("a");
+            assertThat(first.getEmbedding()).containsExactly(1, 0);
+            // the key stands in for a missing id
+            assertThat(second.getId()).isEqualTo("b");
+            assertThat(second.getSource()).isEqualTo("docs/b.txt");
+            assertThat(afterFirst).isGreaterThan(0).isLessThan(reader.getBytesRead());
+            assertThat(reader.getBytesRead()).isLessThanOrEqualTo(Files.size(path));
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void skipsDocumentsWithoutBindingThem() throws IOException {
+        var path = write("{\"store\": {"
+                + "\"a\": {\"text\": \"one\", \"embedding\": [1]},"
+                + "\"b\": {\"text\": \"two\", \"embedding\": [2]},"
+                + "\"c\": {\"text\": \"three\", \"embedding\": [3]}}}");
+
+        try (var reader = new JsonVectorStoreReader(path)) {
+            assertThat(reader.skip(2)).isEqualTo(2);
+            assertThat(reader.stream().map(CosmosEntity::getId)).containsExactly("c");
+        }
+        try (var reader = new JsonVectorStoreReader(path)) {
+            assertThat(reader.skip(5)).isEqualTo(3);
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void readsNothingWithoutAStore() throws IOException {
+        try (var reader = new JsonVectorStoreReader(write("{\"other\": {\"a\": 1}}"))) {
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotAnObject() throws IOException {
+        var path = write("[{\"id\": \"a\"}]");
+
+        assertThatThrownBy(() -> new JsonVectorStoreReader(path)).isInstanceOf(IOException.class);
+    }
+
+    private Path write(String json) throws IOException {
+        return Files.writeString(folder.resolve("store.json"), json);
+    }
+}
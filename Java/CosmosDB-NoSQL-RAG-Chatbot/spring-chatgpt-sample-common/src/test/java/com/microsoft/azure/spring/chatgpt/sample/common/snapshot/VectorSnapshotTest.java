@@ -0,0 +1,91 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.snapshot;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VectorSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackTheDocumentsItWrites() throws IOException {
+        var docs = new ArrayList<CosmosEntity>();
+        docs.add(new CosmosEntity("a", "hash-a", "plain text", "docs/a.txt", 2, new float[]{1, -2.5f, 0}));
+        docs.add(new CosmosEntity("b", "hash-b", "ünïcødé — 文字", null, null, new float[]{Float.MIN_VALUE, 3, -0f}));
+        // longer than the writer's buffers
+        docs.add(new CosmosEntity("c", null, "x".repeat(3 << 20), "docs/c.txt", 1, new float[]{0.1f, 0.2f, 0.3f}));
+        var path = dir.resolve("store.snap");
+
+        assertThat(VectorSnapshotWriter.write(path, docs.stream())).isEqualTo(3);
+
+        try (var snapshot = VectorSnapshot.open(path)) {
+            assertThat(snapshot.size()).isEqualTo(3);
+            assertThat(snapshot.getDimensions()).isEqualTo(3);
+            for (int i = 0; i < docs.size(); i++) {
+                assertSameDocument(snapshot.get(i), docs.get(i));
+            }
+            assertThat(snapshot.stream(2).map(CosmosEntity::getId)).containsExactly("c");
+        }
+        try (var files = Files.list(dir)) {
+            assertThat(files).containsExactly(path);
+        }
+    }
+
+    @Test
+    void streamsSnapshotsAndJsonFilesAlike() throws IOException {
+        var json = dir.resolve("store.json");
+        Files.writeString(json, "{\"store\": {"
+                + "\"a\": {\"id\": \"a\", \"hash\": \"h\", \"text\": \"one\", \"embedding\": [1, 0]},"
+                + "\"b\": {\"id\": \"b\", \"hash\": \"h\", \"text\": \"two\", \"tokens\": 1, \"embedding\": [0, 1]}}}");
+        var snapshot = dir.resolve("store.snap");
+
+        List<CosmosEntity> fromJson;
+        try (var docs = VectorSnapshot.documents(json)) {
+            VectorSnapshotWriter.write(snapshot, docs);
+        }
+        try (var docs = VectorSnapshot.documents(json)) {
+            fromJson = docs.toList();
+        }
+
+        assertThat(VectorSnapshot.isSnapshot(json)).isFalse();
+        assertThat(VectorSnapshot.isSnapshot(snapshot)).isTrue();
+        try (var docs = VectorSnapshot.documents(snapshot)) {
+            var fromSnapshot = docs.toList();
+            assertThat(fromSnapshot).hasSameSizeAs(fromJson);
+            for (int i = 0; i < fromJson.size(); i++) {
+                assertSameDocument(fromSnapshot.get(i), fromJson.get(i));
+            }
+        }
+    }
+
+    @Test
+    void rejectsVectorsOfOtherDimensions() throws IOException {
+        var docs = Stream.of(new CosmosEntity("a", "h", "t", new float[]{1, 2}),
+                new CosmosEntity("b", "h", "t", new float[]{1, 2, 3}));
+
+        assertThatThrownBy(() -> VectorSnapshotWriter.write(dir.resolve("store.snap"), docs))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Document b has 3 dimensions");
+    }
+
+    private static void assertSameDocument(CosmosEntity actual, CosmosEntity expected) {
+        assertThat(actual.getId()).isEqualTo(expected.getId());
+        assertThat(actual.getHash()).isEqualTo(expected.getHash());
+        assertThat(actual.getText()).isEqualTo(expected.getText());
+        assertThat(actual.getSource()).isEqualTo(expected.getSource());
+        assertThat(actual.getTokens()).isEqualTo(expected.getTokens());
+        assertThat(actual.getEmbedding()).containsExactly(expected.getEmbedding());
+    }
+}
@@ -0,0 +1,46 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CosmosEntityJsonTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void readsBackTheEmbeddingItWrites() throws Exception {
+        float[] embedding = new float[3000];
+        for (int i = 0; i < embedding.length; i++) {
+            // quantized values are written as integers, the others as decimals
+            embedding[i] = i % 3 == 0 ? i % 256 - 128 : (float) Math.sin(i);
+        }
+        var doc = new CosmosEntity("id", "hash", "text", "docs/a.txt", 12, embedding);
+
+        String json = mapper.writeValueAsString(doc);
+        var read = mapper.readValue(json, CosmosEntity.class);
+
+        assertThat(json).contains("\"embedding\":[-128,");
+        assertThat(read.getEmbedding()).containsExactly(embedding);
+        assertThat(read.getId()).isEqualTo("id");
+        assertThat(read.getTokens()).isEqualTo(12);
+    }
+
+    @Test
+    void readsTheSimilarityScoreOfSearchResultsWithoutWritingIt() throws Exception {
+        var read = mapper.readValue("{\"id\":\"id\",\"embedding\":[1,0.5],\"SimilarityScore\":0.75}", CosmosEntity.class);
+
+        assertThat(read.getEmbedding()).containsExactly(1, 0.5f);
+        assertThat(read.getSimilarityScore()).isEqualTo(0.75);
+        assertThat(mapper.writeValueAsString(read)).doesNotContain("SimilarityScore");
+    }
+
+    @Test
+    void rejectsAnEmbeddingThatIsNotAnArrayOfNumbers() {
+        assertThatThrownBy(() -> mapper.readValue("{\"embedding\":[1,\"a\"]}", CosmosEntity.class))
+                .isInstanceOf(JsonMappingException.class);
+    }
+}
@@ -0,0 +1,63 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.store;
+
+import com.azure.cosmos.models.CosmosVectorDistanceFunction;
+import com.microsoft.azure.spring.chatgpt.sample.common.vector.VectorIndexPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryVectorStoreTest {
+
+    private static final int DIMENSIONS = 16;
+
+    @Test
+    void keepsLiveDocumentsWhenTheGraphIsRebuilt() {
+        var store = new InMemoryVectorStore(DIMENSIONS, new InMemoryStoreProperties());
+        var random = new Random(1);
+        var docs = IntStream.range(0, 200).mapToObj(i -> doc("doc-" + i, "text " + i, random)).toList();
+        store.saveDocuments(docs);
+
+        // well past the default threshold, so the graph is rebuilt at least once
+        store.removeDocuments(docs.subList(0, 100).stream().map(CosmosEntity::getId).toList());
+        var replaced = doc("doc-150", "new text", random);
+        store.saveDocument(replaced.getId(), replaced);
+
+        assertThat(store.size()).isEqualTo(100);
+        assertThat(store.getDocument("doc-0")).isNull();
+        assertThat(store.getDocument("doc-150").getText()).isEqualTo("new text");
+        for (var doc : docs.subList(100, 200)) {
+            var query = doc.getId().equals("doc-150") ? replaced.getEmbedding() : doc.getEmbedding();
+            assertThat(store.searchTopKNearest(query, 1)).extracting(CosmosEntity::getId).containsExactly(doc.getId());
+        }
+    }
+
+    @Test
+    void appliesTheCutOffInTheMetricOfTheIndexPolicy() {
+        var policy = VectorIndexPolicy.builder(2).distanceFunction(CosmosVectorDistanceFunction.EUCLIDEAN).build();
+        var store = new InMemoryVectorStore(policy, new InMemoryStoreProperties());
+        var docs = new ArrayList<CosmosEntity>();
+        // cosine similarities 1, 0.8, 0 and -0.6 to the query
+        docs.add(new CosmosEntity("same", "h", "t", new float[]{1, 0}));
+        docs.add(new CosmosEntity("close", "h", "t", new float[]{0.8f, 0.6f}));
+        docs.add(new CosmosEntity("orthogonal", "h", "t", new float[]{0, 1}));
+        docs.add(new CosmosEntity("opposite", "h", "t", new float[]{-0.6f, -0.8f}));
+        store.saveDocuments(docs);
+
+        assertThat(store.searchTopKNearest(new float[]{1, 0}, 4, 0.7)).extracting(CosmosEntity::getId)
+                .containsExactly("same", "close");
+        assertThat(store.searchTopKNearest(new float[]{1, 0}, 4)).extracting(CosmosEntity::getId)
+                .containsExactly("same", "close", "orthogonal", "opposite");
+    }
+
+    private static CosmosEntity doc(String id, String text, Random random) {
+        float[] embedding = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            embedding[i] = (float) random.nextGaussian();
+        }
+        return new CosmosEntity(id, "hash", text, "docs/" + id, embedding);
+    }
+}
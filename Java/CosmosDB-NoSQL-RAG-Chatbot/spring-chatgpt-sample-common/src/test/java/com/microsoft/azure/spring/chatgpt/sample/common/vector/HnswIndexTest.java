@@ -0,0 +1,95 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    private static final int K = 10;
+
+    @Test
+    void findsMostOfTheExactTopK() {
+        var random = new Random(7);
+        var vectors = randomVectors(2000, random);
+        var index = new HnswIndex(DIMENSIONS, 16, 100);
+        vectors.forEach(index::add);
+
+        assertThat(recall(index, vectors, randomVectors(50, random))).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void findsMostOfTheExactTopKAfterConcurrentInserts() {
+        var random = new Random(11);
+        var vectors = randomVectors(2000, random);
+        var index = new HnswIndex(DIMENSIONS, 16, 100);
+        IntStream.range(0, vectors.size()).parallel().forEach(i -> index.add(vectors.get(i)));
+
+        // nodes are numbered in insertion order, which a parallel build doesn't keep
+        var byNode = IntStream.range(0, index.size()).mapToObj(index::getVector).toList();
+        assertThat(recall(index, byNode, randomVectors(50, random))).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void returnsOnlyAcceptedNodesAndStillFillsK() {
+        var random = new Random(3);
+        var vectors = randomVectors(500, random);
+        var index = new HnswIndex(DIMENSIONS, 8, 50);
+        vectors.forEach(index::add);
+
+        var results = index.search(vectors.get(0), K, 20, node -> node % 10 == 0);
+
+        assertThat(results).hasSize(K).allMatch(neighbor -> neighbor.node() % 10 == 0);
+        assertThat(results.get(0).node()).isZero();
+        assertThat(results.get(0).score()).isCloseTo(1f, offset(1e-5f));
+    }
+
+    @Test
+    void returnsNeighborsMostSimilarFirst() {
+        var random = new Random(5);
+        var index = new HnswIndex(DIMENSIONS, 8, 50);
+        randomVectors(300, random).forEach(index::add);
+
+        var results = index.search(randomVectors(1, random).get(0), K, 50, node -> true);
+
+        assertThat(results).hasSize(K);
+        for (int i = 1; i < results.size(); i++) {
+            assertThat(results.get(i).score()).isLessThanOrEqualTo(results.get(i - 1).score());
+        }
+    }
+
+    private static double recall(HnswIndex index, List<float[]> vectors, List<float[]> queries) {
+        int found = 0;
+        for (var query : queries) {
+            var expected = new HashSet<Integer>();
+            VectorMath.topK(query, vectors, K, VectorMath.Metric.COSINE).forEach(match -> expected.add(match.index()));
+            for (var neighbor : index.search(query, K, 100, node -> true)) {
+                if (expected.contains(neighbor.node())) {
+                    found++;
+                }
+            }
+        }
+        return (double) found / (queries.size() * K);
+    }
+
+    private static List<float[]> randomVectors(int count, Random random) {
+        var vectors = new ArrayList<float[]>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSIONS];
+            for (int j = 0; j < DIMENSIONS; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,76 @@
+package com.microsoft.azure.spring.chatgpt.sample.common.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorQuantizerTest {
+
+    private static final int DIMENSIONS = 64;
+
+    @Test
+    void keepsMostOfTheFloat32TopK() {
+        var recall = new QuantizationRecall(randomVectors(2000, new Random(17)), 50, 10, 1);
+
+        assertThat(recall.recall(VectorQuantizer.FLOAT32)).isEqualTo(1.0);
+        assertThat(recall.recall(VectorQuantizer.FLOAT16)).isGreaterThanOrEqualTo(0.99);
+        assertThat(recall.recall(VectorQuantizer.INT8)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void keepsTheDirectionOfTheVector() {
+        for (var vector : randomVectors(20, new Random(23))) {
+            for (var quantizer : List.of(VectorQuantizer.FLOAT16, VectorQuantizer.INT8)) {
+                var restored = quantizer.dequantize(quantizer.quantize(vector));
+                assertThat(VectorMath.cosine(vector, restored)).as(quantizer.toString()).isGreaterThan(0.999f);
+            }
+        }
+    }
+
+    @Test
+    void storesInt8AndUint8InTheirRange() {
+        float[] vector = {-2, -0.5f, 0, 0.5f, 1};
+
+        assertThat(VectorQuantizer.INT8.quantize(vector)).containsExactly(-127, -32, 0, 32, 64);
+        assertThat(VectorQuantizer.UINT8.quantize(vector)).containsExactly(0, 96, 128, 159, 191);
+    }
+
+    @Test
+    void doesNotModifyTheArgument() {
+        float[] vector = {0.1f, -0.7f, 0.3f};
+
+        VectorQuantizer.FLOAT16.quantize(vector);
+        VectorQuantizer.INT8.quantize(vector);
+        VectorQuantizer.UINT8.quantize(vector);
+
+        assertThat(vector).containsExactly(0.1f, -0.7f, 0.3f);
+    }
+
+    @Test
+    void roundsToTheNearestHalfPrecisionValue() {
+        assertThat(VectorQuantizer.roundToHalf(1f)).isEqualTo(1f);
+        assertThat(VectorQuantizer.roundToHalf(0.1f)).isEqualTo(0.0999755859375f);
+        assertThat(VectorQuantizer.roundToHalf(-1f / 3)).isEqualTo(-0.333251953125f);
+        // halfway between two half values, to the one with an even mantissa
+        assertThat(VectorQuantizer.roundToHalf(1 + 0x1p-11f)).isEqualTo(1f);
+        assertThat(VectorQuantizer.roundToHalf(1 + 0x3p-11f)).isEqualTo(1 + 0x1p-9f);
+        assertThat(VectorQuantizer.roundToHalf(1e6f)).isEqualTo(65504f);
+        assertThat(VectorQuantizer.roundToHalf(1e-6f)).isEqualTo(17 * 0x1p-24f);
+    }
+
+    private static List<float[]> randomVectors(int count, Random random) {
+        var vectors = new ArrayList<float[]>(count);
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSIONS];
+            for (int j = 0; j < DIMENSIONS; j++) {
+                vector[j] = (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
@@ -2,19 +2,40 @@ package com.microsoft.azure.spring.chatgpt.sample.webapi;
 
 import com.azure.ai.openai.OpenAIClientBuilder;
 import com.azure.core.credential.AzureKeyCredential;
+import com.azure.cosmos.CosmosAsyncClient;
 import com.azure.cosmos.CosmosClientBuilder;
 import com.azure.cosmos.DirectConnectionConfig;
 import com.azure.spring.data.cosmos.config.AbstractCosmosConfiguration;
 import com.azure.spring.data.cosmos.config.CosmosConfig;
 import com.azure.spring.data.cosmos.core.CosmosTemplate;
 import com.azure.spring.data.cosmos.repository.config.EnableCosmosRepositories;
+import com.microsoft.azure.spring.chatgpt.sample.common.AsyncAzureOpenAIClient;
 import com.microsoft.azure.spring.chatgpt.sample.common.AzureOpenAIClient;
 import com.microsoft.azure.spring.chatgpt.sample.common.ChatPlanner;
+import com.microsoft.azure.spring.chatgpt.sample.common.ReactiveChatPlanner;
+import com.microsoft.azure.spring.chatgpt.sample.common.TextSplitter;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.EmbeddingCache;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.EmbeddingCacheProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.SemanticAnswerCache;
+import com.microsoft.azure.spring.chatgpt.sample.common.cache.SemanticCacheProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.metrics.ChatMetrics;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.ContextAssembler;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.HistoryCompactor;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.HistoryProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.prompt.PromptProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.rerank.MmrReranker;
+import com.microsoft.azure.spring.chatgpt.sample.common.rerank.RerankProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.BulkWriteProperties;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosDBVectorStore;
-import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntity;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosEntityRepository;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.InMemoryStoreProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.InMemoryVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.TieredVectorStore;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.VectorStore;
 import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosProperties;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.ReactiveCosmosVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.VectorIndexProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -23,16 +44,45 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.logging.Logger;
 
 
 @Configuration
-@EnableConfigurationProperties(CosmosProperties.class)
+@EnableConfigurationProperties({CosmosProperties.class, BulkWriteProperties.class,
+        EmbeddingCacheProperties.class, SemanticCacheProperties.class, VectorIndexProperties.class,
+        InMemoryStoreProperties.class, PromptProperties.class, HistoryProperties.class,
+        RerankProperties.class})
 @EnableCosmosRepositories(basePackages = "com.microsoft.azure.spring.chatgpt.sample.common.store")
 public class Config extends AbstractCosmosConfiguration {
 
     @Autowired
     private CosmosProperties properties;
+    @Autowired
+    private BulkWriteProperties bulkWriteProperties;
+
+    @Autowired
+    private VectorIndexProperties vectorIndexProperties;
+
+    @Autowired
+    private InMemoryStoreProperties inMemoryStoreProperties;
+
+    @Autowired
+    private EmbeddingCacheProperties embeddingCacheProperties;
+
+    @Autowired
+    private SemanticCacheProperties semanticCacheProperties;
+
+    @Autowired
+    private PromptProperties promptProperties;
+
+    @Autowired
+    private HistoryProperties historyProperties;
+
+    @Autowired
+    private RerankProperties rerankProperties;
+
     @Autowired
     private CosmosEntityRepository cosmosEntityRepository;
 
@@ -57,6 +107,14 @@ public class Config extends AbstractCosmosConfiguration {
     @Value("${vector-store.file}")
     private String vectorJsonFile;
 
+    private EmbeddingCache embeddingCache;
+
+    private SemanticAnswerCache answerCache;
+
+    private CosmosDBVectorStore cosmosStore;
+
+    private InMemoryVectorStore memoryStore;
+
     private Logger log = Logger.getLogger(Config.class.getName());
 
     public Config() throws IOException {
@@ -68,19 +126,99 @@ public class Config extends AbstractCosmosConfiguration {
     }
 
     @Bean
-    public ChatPlanner planner(AzureOpenAIClient openAIClient, VectorStore vectorStore) {
-        return new ChatPlanner(openAIClient, vectorStore);
+    public ChatPlanner planner(AzureOpenAIClient openAIClient, VectorStore vectorStore,
+                               HistoryCompactor historyCompactor) {
+        return new ChatPlanner(openAIClient, vectorStore, answerCache(vectorStore), contextAssembler(),
+                historyCompactor, reranker());
+    }
+
+    // null when reranking is disabled
+    private MmrReranker reranker() {
+        if (!rerankProperties.isEnabled()) {
+            return null;
+        }
+        return new MmrReranker(rerankProperties.getCandidates(), rerankProperties.getLambda(),
+                rerankProperties.getDuplicateThreshold());
+    }
+
+    @Bean
+    public ContextAssembler contextAssembler() {
+        return new ContextAssembler(new TextSplitter()::countTokens, promptProperties);
+    }
+
+    @Bean
+    public HistoryCompactor historyCompactor(AzureOpenAIClient openAIClient) {
+        // summaries are made on a background thread, so the blocking client is fine for both planners
+        return new HistoryCompactor(contextAssembler()::countTokens, historyProperties,
+                messages -> openAIClient.getChatCompletions(messages).getChoices().get(0).getMessage().getContent());
+    }
+
+    @Bean
+    public ReactiveChatPlanner reactivePlanner(CosmosAsyncClient cosmosAsyncClient, VectorStore vectorStore,
+                                               HistoryCompactor historyCompactor, ChatMetrics chatMetrics)
+            throws IOException {
+        var innerClient = new OpenAIClientBuilder()
+            .endpoint(endpoint)
+            .credential(new AzureKeyCredential(apiKey))
+            .buildAsyncClient();
+        var openAIClient = new AsyncAzureOpenAIClient(innerClient, embeddingDeploymentId, chatDeploymentId,
+                embeddingCache(), chatMetrics);
+        if (inMemoryStoreProperties.getMode() != InMemoryStoreProperties.Mode.COSMOS) {
+            return new ReactiveChatPlanner(openAIClient, vectorStore, answerCache(vectorStore), contextAssembler(),
+                    historyCompactor, reranker());
+        }
+        var container = cosmosAsyncClient.getDatabase(properties.getDatabaseName())
+                .getContainer(properties.getContainerName());
+        var indexPolicy = vectorIndexProperties.toPolicy(AzureOpenAIClient.EMBEDDING_MODEL);
+        return new ReactiveChatPlanner(openAIClient, new ReactiveCosmosVectorStore(container, indexPolicy),
+                answerCache(vectorStore), contextAssembler(), historyCompactor, reranker());
     }
 
     @Bean
-    public AzureOpenAIClient AzureOpenAIClient() {
+    public AzureOpenAIClient AzureOpenAIClient(ChatMetrics chatMetrics) throws IOException {
         var innerClient = new OpenAIClientBuilder()
             .endpoint(endpoint)
             .credential(new AzureKeyCredential(apiKey))
             .buildClient();
-        return new AzureOpenAIClient(innerClient, embeddingDeploymentId, chatDeploymentId);
+        return new AzureOpenAIClient(innerClient, embeddingDeploymentId, chatDeploymentId, embeddingCache(),
+                chatMetrics);
+    }
+
+    // exported at /actuator/prometheus
+    @Bean
+    public ChatMetrics chatMetrics(MeterRegistry meterRegistry) {
+        return new ChatMetrics(meterRegistry);
+    }
+
+    // the blocking and reactive clients share one cache, as two instances can't map the same file
+    private synchronized EmbeddingCache embeddingCache() throws IOException {
+        if (!embeddingCacheProperties.isEnabled()) {
+            return null;
+        }
+        if (embeddingCache == null) {
+            embeddingCache = new EmbeddingCache(Paths.get(embeddingCacheProperties.getPath()),
+                    embeddingCacheProperties.getMaxEntries(), embeddingCacheProperties.getMemoryEntries());
+        }
+        return embeddingCache;
     }
 
+    private synchronized SemanticAnswerCache answerCache(VectorStore vectorStore) {
+        if (!semanticCacheProperties.isEnabled()) {
+            return null;
+        }
+        if (answerCache == null) {
+            answerCache = new SemanticAnswerCache(semanticCacheProperties.getSimilarityThreshold(),
+                    Duration.ofSeconds(semanticCacheProperties.getTtlSeconds()), semanticCacheProperties.getMaxEntries());
+            vectorStore.addChangeListener(answerCache::invalidate);
+            // writes by other processes, such as the CLI, don't call the listener
+            if (inMemoryStoreProperties.getMode() != InMemoryStoreProperties.Mode.OFFLINE
+                    && semanticCacheProperties.getVersionCheckSeconds() > 0) {
+                new IndexVersionWatcher(cosmosStore(),
+                        Duration.ofSeconds(semanticCacheProperties.getVersionCheckSeconds()), answerCache::clear).start();
+            }
+        }
+        return answerCache;
+    }
 
     @Bean
     public CosmosClientBuilder cosmosClientBuilder() {
@@ -98,24 +236,43 @@ public class Config extends AbstractCosmosConfiguration {
                 .build();
     }
 
+    /**
+     * The store searches go to. It starts empty or partly filled; {@link #vectorStoreSeeder()} fills it in the
+     * background.
+     */
     @Bean
-    public VectorStore vectorStore() throws IOException {
-        CosmosDBVectorStore store = new CosmosDBVectorStore(cosmosEntityRepository, properties.getContainerName(), properties.getDatabaseName(),applicationContext);
-        String currentPath = new java.io.File(".").getCanonicalPath();;
-        String path = currentPath+vectorJsonFile.replace(  "\\", "//");
-        try{
-            Iterable<CosmosEntity> FirstDocFound = cosmosEntityRepository.findRecord("a598dfb0-c58e-457e-977f-70f2786b5940").stream().toList();
-            long FirstDocFoundSize = FirstDocFound.spliterator().getExactSizeIfKnown();
-            //if the query succeeds, then we have data in the database loaded from elsewhere, so we don't need to load from file
-            if (FirstDocFoundSize != 0) {
-                store.loadFromJsonFile(path);
-            }
+    public VectorStore vectorStore() {
+        var mode = inMemoryStoreProperties.getMode();
+        if (mode == InMemoryStoreProperties.Mode.OFFLINE) {
+            return memoryStore();
+        }
+        return mode == InMemoryStoreProperties.Mode.HOT ? new TieredVectorStore(cosmosStore(), memoryStore()) : cosmosStore();
+    }
+
+    @Bean
+    public VectorStoreSeeder vectorStoreSeeder() throws IOException {
+        String currentPath = new java.io.File(".").getCanonicalPath();
+        String path = currentPath + vectorJsonFile.replace("\\", "//");
+        var mode = inMemoryStoreProperties.getMode();
+        return new VectorStoreSeeder(Paths.get(path),
+                mode == InMemoryStoreProperties.Mode.OFFLINE ? null : cosmosStore(),
+                mode == InMemoryStoreProperties.Mode.COSMOS ? null : memoryStore());
+    }
+
+    private synchronized CosmosDBVectorStore cosmosStore() {
+        if (cosmosStore == null) {
+            cosmosStore = new CosmosDBVectorStore(cosmosEntityRepository, properties.getContainerName(), properties.getDatabaseName(), applicationContext, bulkWriteProperties, vectorIndexProperties);
+            // fail at startup rather than at the first query when the container was created with another vector policy
+            cosmosStore.createVectorIndex();
         }
-        catch (Exception e){
-            log.warning("checked for existing data failed, so loading from file....");
-            store.loadFromJsonFile(path);
-            log.info("loaded from file!");
+        return cosmosStore;
+    }
+
+    private synchronized InMemoryVectorStore memoryStore() {
+        if (memoryStore == null) {
+            memoryStore = new InMemoryVectorStore(vectorIndexProperties.toPolicy(AzureOpenAIClient.EMBEDDING_MODEL),
+                    inMemoryStoreProperties);
         }
-        return store;
+        return memoryStore;
     }
 }
@@ -0,0 +1,60 @@
+package com.microsoft.azure.spring.chatgpt.sample.webapi;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosDBVectorStore;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.logging.Logger;
+
+/**
+ * Polls the index version of the container in the background and calls {@code onChange} when it changes, so the
+ * semantic answer cache is also cleared when documents are written by another process, such as the CLI indexing a
+ * folder. The version doesn't tell which documents changed, so every cached answer is dropped; writes through this
+ * process's store still drop only the answers built from the chunks they change, right away.
+ */
+public class IndexVersionWatcher {
+
+    private final CosmosDBVectorStore store;
+
+    private final Duration interval;
+
+    private final Runnable onChange;
+
+    private Logger log = Logger.getLogger(IndexVersionWatcher.class.getName());
+
+    public IndexVersionWatcher(CosmosDBVectorStore store, Duration interval, Runnable onChange) {
+        this.store = store;
+        this.interval = interval;
+        this.onChange = onChange;
+    }
+
+    public void start() {
+        var thread = new Thread(this::watch, "index-version-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        String version = null;
+        boolean read = false;
+        while (true) {
+            try {
+                String current = store.readIndexVersion();
+                if (read && !Objects.equals(current, version)) {
+                    log.info("Documents of the vector store changed, clearing the answer cache.");
+                    onChange.run();
+                }
+                version = current;
+                read = true;
+            } catch (Exception e) {
+                log.warning("Failed to read the index version: " + e);
+            }
+            try {
+                Thread.sleep(interval.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.microsoft.azure.spring.chatgpt.sample.webapi;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.snapshot.VectorSnapshot;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosDBVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.InMemoryVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.SeedCheckpoint;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fills the vector store in the background once the application has started, so startup doesn't wait for it: loads
+ * the vector store file into Cosmos DB, then the in-memory store from Cosmos DB or the file, depending on the mode.
+ * <p>
+ * Progress of the Cosmos DB load is checkpointed in a {@link SeedCheckpoint} marker document, so a load interrupted
+ * by a crash or restart resumes where it stopped. Failed attempts are retried with backoff, resuming the same way.
+ * <p>
+ * As a health indicator it reports {@code OUT_OF_SERVICE} until the store can answer searches. It belongs in the
+ * readiness group only, so traffic is held back while the liveness probe stays up and a long load doesn't get the
+ * process restarted.
+ */
+public class VectorStoreSeeder implements ApplicationListener<ApplicationReadyEvent>, HealthIndicator {
+
+    private static final Duration INITIAL_RETRY_DELAY = Duration.ofSeconds(10);
+
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(5);
+
+    private static final int FINGERPRINT_BYTES = 1 << 20;
+
+    private enum Phase { WAITING, SEEDING, LOADING_MEMORY, READY }
+
+    private final Path file;
+
+    private final CosmosDBVectorStore cosmosStore;
+
+    private final InMemoryVectorStore memoryStore;
+
+    private volatile Phase phase = Phase.WAITING;
+
+    private volatile long position;
+
+    private volatile Exception lastError;
+
+    private Logger log = Logger.getLogger(VectorStoreSeeder.class.getName());
+
+    /**
+     * @param cosmosStore the store to load the file into, or {@code null} to search the file in memory only
+     * @param memoryStore the in-memory store to fill from Cosmos DB, or from the file without Cosmos DB; or
+     *                    {@code null} to search Cosmos DB
+     */
+    public VectorStoreSeeder(Path file, CosmosDBVectorStore cosmosStore, InMemoryVectorStore memoryStore) {
+        this.file = file;
+        this.cosmosStore = cosmosStore;
+        this.memoryStore = memoryStore;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        var thread = new Thread(this::seedWithRetries, "vector-store-seeder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void seedWithRetries() {
+        var delay = INITIAL_RETRY_DELAY;
+        while (true) {
+            try {
+                seed();
+                lastError = null;
+                phase = Phase.READY;
+                log.info("Vector store is ready.");
+                return;
+            } catch (Exception e) {
+                lastError = e;
+                log.log(Level.WARNING, "Seeding the vector store failed, retrying in " + delay.toSeconds() + "s", e);
+            }
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            delay = delay.multipliedBy(2).compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay.multipliedBy(2);
+        }
+    }
+
+    private void seed() throws IOException {
+        if (cosmosStore != null) {
+            phase = Phase.SEEDING;
+            seedCosmos();
+        }
+        // a retry reloads documents a failed attempt already added; they replace themselves by id
+        if (memoryStore != null) {
+            phase = Phase.LOADING_MEMORY;
+            try (var documents = cosmosStore != null ? cosmosStore.streamDocuments() : VectorSnapshot.documents(file)) {
+                memoryStore.load(documents);
+            }
+            log.info("Loaded " + memoryStore.size() + " documents to the in-memory vector store.");
+        }
+    }
+
+    private void seedCosmos() throws IOException {
+        // decided from the container alone first, so a replica whose image no longer ships the file, or a large file,
+        // costs nothing when the container is already loaded; the file is only read when it is going to be loaded
+        var checkpoint = cosmosStore.readSeedCheckpoint();
+        if (checkpoint == null && cosmosStore.hasDocuments()) {
+            log.info("The container has documents loaded elsewhere, not loading " + file);
+            return;
+        }
+        if (checkpoint != null && checkpoint.isComplete()) {
+            log.info("The container was already loaded from " + checkpoint.getFile() + ", not loading " + file);
+            return;
+        }
+
+        String fingerprint = fingerprint(file);
+        if (checkpoint == null || !fingerprint.equals(checkpoint.getFingerprint())) {
+            if (checkpoint != null) {
+                log.info("The interrupted load was from another file, loading " + file + " from the start");
+            }
+            checkpoint = new SeedCheckpoint(file.getFileName().toString(), fingerprint);
+            cosmosStore.saveSeedCheckpoint(checkpoint);
+        }
+
+        // fails if any document could not be written, so the checkpoint is only marked complete once all were, and
+        // the retry resumes from before the first that wasn't
+        var progress = checkpoint;
+        position = progress.getPosition();
+        cosmosStore.loadFromFile(file.toString(), progress.getPosition(), committed -> {
+            progress.setPosition(committed);
+            cosmosStore.saveSeedCheckpoint(progress);
+            position = committed;
+        });
+        progress.setComplete(true);
+        cosmosStore.saveSeedCheckpoint(progress);
+    }
+
+    // size and SHA-256 of the first and last megabyte: cheap for large files, and unlike the modification time it
+    // survives copying the file into an image
+    private static String fingerprint(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var digest = MessageDigest.getInstance("SHA-256");
+            long size = channel.size();
+            var buffer = ByteBuffer.allocate(FINGERPRINT_BYTES);
+            for (long start : new long[]{0, Math.max(0, size - FINGERPRINT_BYTES)}) {
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+                    // read until the buffer is full or the file ends
+                }
+                digest.update(buffer.flip());
+            }
+            return size + ":" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public boolean isReady() {
+        return phase == Phase.READY;
+    }
+
+    @Override
+    public Health health() {
+        var health = phase == Phase.READY ? Health.up() : Health.outOfService();
+        health.withDetail("phase", phase).withDetail("file", file.toString());
+        if (cosmosStore != null) {
+            health.withDetail("documentsLoaded", position);
+        }
+        if (lastError != null) {
+            health.withException(lastError);
+        }
+        return health.build();
+    }
+}
@@ -4,23 +4,105 @@ package com.microsoft.azure.spring.chatgpt.sample.webapi.controllers;
 import com.azure.ai.openai.models.ChatCompletions;
 import com.microsoft.azure.spring.chatgpt.sample.common.ChatPlanner;
 import com.microsoft.azure.spring.chatgpt.sample.webapi.models.ChatCompletionsRequest;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 @RestController
 @RequestMapping("/chat")
 public class ChatController {
 
+    private static final long STREAM_TIMEOUT_MILLIS = 120_000;
+
+    private static final int MAX_STREAMS = 200;  // Answers streamed at once, each holding a thread while it lasts
+
     public ChatController(ChatPlanner planner) {
         this.planner = planner;
     }
 
     private final ChatPlanner planner;
 
+    private final ExecutorService streamExecutor = new ThreadPoolExecutor(0, MAX_STREAMS, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), streamThreads());
+
+    private Logger log = Logger.getLogger(ChatController.class.getName());
+
     @PostMapping("/completions")
     public ChatCompletions chatCompletion(@RequestBody ChatCompletionsRequest request) {
         return planner.chat(request.getMessages());
     }
+
+    /**
+     * Streams the answer as Server-Sent Events: one {@code {"content": "..."}} event per fragment, then a
+     * {@code done} event. Retrieval runs before the response is opened, so its errors are returned as a regular
+     * error response, as is a {@code 503} when {@code MAX_STREAMS} answers are already streaming. The completion is
+     * cancelled when the client goes away or the stream times out.
+     */
+    @PostMapping(value = "/completions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatCompletionStream(@RequestBody ChatCompletionsRequest request) {
+        var fragments = planner.chatStream(request.getMessages());
+        var emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+        // closing the fragments cancels the completion call and stops its timing; the callbacks run on a container
+        // thread while the stream thread may still be sending, hence closing only once
+        var closed = new AtomicBoolean();
+        Runnable close = () -> {
+            if (closed.compareAndSet(false, true)) {
+                fragments.close();
+            }
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(e -> close.run());
+        try {
+            streamExecutor.execute(() -> {
+                try {
+                    for (var it = fragments.iterator(); it.hasNext(); ) {
+                        emitter.send(SseEmitter.event().data(Map.of("content", it.next()), MediaType.APPLICATION_JSON));
+                    }
+                    emitter.send(SseEmitter.event().name("done").data("[DONE]"));
+                    emitter.complete();
+                } catch (Exception e) {
+                    log.warning("Chat completion stream failed: " + e);
+                    emitter.completeWithError(e);
+                } finally {
+                    close.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            close.run();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many answers are streaming.");
+        }
+        return emitter;
+    }
+
+    private static ThreadFactory streamThreads() {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, "chat-stream-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @PreDestroy
+    public void close() {
+        streamExecutor.shutdownNow();
+    }
 }
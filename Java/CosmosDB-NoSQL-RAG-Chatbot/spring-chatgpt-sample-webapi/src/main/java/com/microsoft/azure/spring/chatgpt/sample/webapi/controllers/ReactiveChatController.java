@@ -0,0 +1,45 @@
+package com.microsoft.azure.spring.chatgpt.sample.webapi.controllers;
+
+import com.azure.ai.openai.models.ChatCompletions;
+import com.microsoft.azure.spring.chatgpt.sample.common.ReactiveChatPlanner;
+import com.microsoft.azure.spring.chatgpt.sample.webapi.models.ChatCompletionsRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of {@link ChatController}. The servlet thread is released as soon as the request is
+ * handed to the {@link ReactiveChatPlanner}, and the response is written when the reactive pipeline completes.
+ */
+@RestController
+@RequestMapping("/chat/reactive")
+public class ReactiveChatController {
+
+    public ReactiveChatController(ReactiveChatPlanner planner) {
+        this.planner = planner;
+    }
+
+    private final ReactiveChatPlanner planner;
+
+    @PostMapping("/completions")
+    public Mono<ChatCompletions> chatCompletion(@RequestBody ChatCompletionsRequest request) {
+        return planner.chat(request.getMessages());
+    }
+
+    /**
+     * Same events as {@link ChatController#chatCompletionStream}.
+     */
+    @PostMapping(value = "/completions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> chatCompletionStream(@RequestBody ChatCompletionsRequest request) {
+        return planner.chatStream(request.getMessages())
+                .map(content -> ServerSentEvent.<Object>builder(Map.of("content", content)).build())
+                .concatWith(Mono.just(ServerSentEvent.<Object>builder("[DONE]").event("done").build()));
+    }
+}
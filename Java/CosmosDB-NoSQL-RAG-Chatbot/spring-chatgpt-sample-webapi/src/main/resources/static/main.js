@@ -1,10 +1,37 @@
 const CONTEXT_MESSAGE_COUNT = 5;
 const DEFAULT_GREETING_MESSAGE = "Hello! How can I assist you today?";
-const API_URL = '/chat/completions';
+const API_URL = '/chat/completions/stream';
 const API_HEADER = {
   "Content-Type": "application/json",
 };
 
+// Yields the content of each Server-Sent Event of a streamed chat completion until the "done" event
+async function* readCompletionStream(response) {
+  const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+  let buffer = "";
+  while (true) {
+    const { value, done } = await reader.read();
+    if (done) {
+      return;
+    }
+    buffer += value.replace(/\r\n/g, "\n");
+    const events = buffer.split("\n\n");
+    buffer = events.pop();
+    for (const event of events) {
+      const lines = event.split("\n");
+      if (lines.some(line => line === "event:done" || line === "event: done")) {
+        return;
+      }
+      const data = lines.filter(line => line.startsWith("data:"))
+        .map(line => line.slice(5).replace(/^ /, ""))
+        .join("\n");
+      if (data !== "") {
+        yield JSON.parse(data).content;
+      }
+    }
+  }
+}
+
 var app = new Vue({
   el: '#main',
   data: {
@@ -115,26 +142,46 @@ var app = new Vue({
       });
 
       try {
-        const data = await response.json();
-        currentChat.messages.push({
-          sender: "bot",
-          text: data.choices[0].message.content,
-          timestamp: new Date().getTime()
-        });
+        if (!response.ok) {
+          throw new Error(`Chat request failed with status ${response.status}`);
+        }
+        let botMessage = null;
+        for await (const content of readCompletionStream(response)) {
+          if (botMessage === null) {
+            currentChat.messages.push({
+              sender: "bot",
+              text: "",
+              timestamp: new Date().getTime()
+            });
+            botMessage = currentChat.messages[currentChat.messages.length - 1];
+            this.removeJob(id, requestId);
+          }
+          botMessage.text += content;
+          setTimeout(() => {
+            this.scrollThreadToBottom();
+          }, 0);
+        }
 
         this.saveChatHistory();
       } finally {
-        const jobIndex = this.chatHistory.job[id].findIndex(job => job === requestId);
-        this.chatHistory.job[id].splice(jobIndex, 1);
-        if (this.chatHistory.job[id].length === 0) {
-          delete this.chatHistory.job[id];
-        }
+        this.removeJob(id, requestId);
       }
 
       setTimeout(() => {
         this.scrollThreadToBottom();
       }, 0);
     },
+    removeJob: function (id, requestId) {
+      const jobs = this.chatHistory.job[id];
+      const jobIndex = jobs ? jobs.findIndex(job => job === requestId) : -1;
+      if (jobIndex === -1) {
+        return;
+      }
+      jobs.splice(jobIndex, 1);
+      if (jobs.length === 0) {
+        delete this.chatHistory.job[id];
+      }
+    },
     removeChat: function (id) {
       const index = this.chatHistory.data.findIndex(chat => chat.id === id);
       this.chatHistory.data.splice(index, 1);
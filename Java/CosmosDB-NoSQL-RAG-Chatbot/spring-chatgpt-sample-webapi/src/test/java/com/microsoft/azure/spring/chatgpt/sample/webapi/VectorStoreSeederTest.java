@@ -0,0 +1,75 @@
+package com.microsoft.azure.spring.chatgpt.sample.webapi;
+
+import com.microsoft.azure.spring.chatgpt.sample.common.store.CosmosDBVectorStore;
+import com.microsoft.azure.spring.chatgpt.sample.common.store.SeedCheckpoint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VectorStoreSeederTest {
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void treatsMissingFileAsSeededWhenContainerHasDocuments() throws Exception {
+        var store = mock(CosmosDBVectorStore.class);
+        when(store.hasDocuments()).thenReturn(true);
+
+        var seeder = new VectorStoreSeeder(folder.resolve("missing.json"), store, null);
+        seeder.onApplicationEvent(null);
+
+        awaitReady(seeder);
+        verify(store, never()).loadFromFile(anyString(), anyLong(), any());
+        verify(store, never()).saveSeedCheckpoint(any());
+    }
+
+    @Test
+    void treatsMissingFileAsSeededWhenLoadIsComplete() throws Exception {
+        var checkpoint = new SeedCheckpoint("vector-store.json", "1:abc");
+        checkpoint.setComplete(true);
+        var store = mock(CosmosDBVectorStore.class);
+        when(store.readSeedCheckpoint()).thenReturn(checkpoint);
+
+        var seeder = new VectorStoreSeeder(folder.resolve("missing.json"), store, null);
+        seeder.onApplicationEvent(null);
+
+        awaitReady(seeder);
+        verify(store, never()).loadFromFile(anyString(), anyLong(), any());
+    }
+
+    @Test
+    void loadsFileIntoEmptyContainer() throws Exception {
+        var file = Files.writeString(folder.resolve("vector-store.json"), "{\"store\":{}}");
+        var store = mock(CosmosDBVectorStore.class);
+
+        var seeder = new VectorStoreSeeder(file, store, null);
+        seeder.onApplicationEvent(null);
+
+        awaitReady(seeder);
+        verify(store).loadFromFile(eq(file.toString()), eq(0L), any());
+        // the same checkpoint is saved as it progresses, so every save sees it complete by now
+        verify(store, atLeastOnce()).saveSeedCheckpoint(argThat(SeedCheckpoint::isComplete));
+    }
+
+    private static void awaitReady(VectorStoreSeeder seeder) throws InterruptedException {
+        for (int i = 0; i < 100 && !seeder.isReady(); i++) {
+            Thread.sleep(50);
+        }
+        assertThat(seeder.isReady()).as("seeder is ready").isTrue();
+    }
+}
@@ -47,4 +47,29 @@ public class AppConfig {
             StringUtils.defaultString(StringUtils.trimToNull(
                             System.getenv().get("OPENAI_MAX_TOKEN")),
                     "1000")));
+    // dimensions of the vectors of the embedding deployment; 1536 for text-embedding-ada-002
+    public static int cosmosVectorDimensions = Integer.parseInt(System.getProperty("COSMOS_VECTOR_DIMENSIONS",
+            StringUtils.defaultString(StringUtils.trimToNull(
+                            System.getenv().get("COSMOS_VECTOR_DIMENSIONS")),
+                    "1536")));
+    public static String cosmosVectorDistanceFunction = System.getProperty("COSMOS_VECTOR_DISTANCE_FUNCTION",
+            StringUtils.defaultString(StringUtils.trimToNull(
+                            System.getenv().get("COSMOS_VECTOR_DISTANCE_FUNCTION")),
+                    "cosine"));
+    public static String cosmosVectorDataType = System.getProperty("COSMOS_VECTOR_DATA_TYPE",
+            StringUtils.defaultString(StringUtils.trimToNull(
+                            System.getenv().get("COSMOS_VECTOR_DATA_TYPE")),
+                    "float32"));
+    public static String cosmosVectorIndexType = System.getProperty("COSMOS_VECTOR_INDEX_TYPE",
+            StringUtils.defaultString(StringUtils.trimToNull(
+                            System.getenv().get("COSMOS_VECTOR_INDEX_TYPE")),
+                    "diskANN"));
+    public static int cosmosVectorQuantizationBytes = Integer.parseInt(System.getProperty("COSMOS_VECTOR_QUANTIZATION_BYTES",
+            StringUtils.defaultString(StringUtils.trimToNull(
+                            System.getenv().get("COSMOS_VECTOR_QUANTIZATION_BYTES")),
+                    "0")));
+    public static int cosmosVectorIndexingSearchListSize = Integer.parseInt(System.getProperty("COSMOS_VECTOR_INDEXING_SEARCH_LIST_SIZE",
+            StringUtils.defaultString(StringUtils.trimToNull(
+                            System.getenv().get("COSMOS_VECTOR_INDEXING_SEARCH_LIST_SIZE")),
+                    "0")));
 }
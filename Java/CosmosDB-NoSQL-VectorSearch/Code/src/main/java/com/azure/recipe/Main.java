@@ -1,5 +1,10 @@
 package com.azure.recipe;
 
+import com.azure.cosmos.models.CosmosVectorDataType;
+import com.azure.cosmos.models.CosmosVectorDistanceFunction;
+import com.azure.cosmos.models.CosmosVectorEmbedding;
+import com.azure.cosmos.models.CosmosVectorIndexSpec;
+import com.azure.cosmos.models.CosmosVectorIndexType;
 import com.azure.recipe.model.Recipe;
 import com.azure.recipe.service.CosmosDbService;
 import com.azure.recipe.service.OpenAIService;
@@ -43,7 +48,9 @@ public class Main {
         CosmosDbService cosmosDbService = new CosmosDbService(AppConfig.cosmosUri,
                 AppConfig.cosmosKey,
                 AppConfig.cosmosDatabase,
-                AppConfig.cosmosContainer
+                AppConfig.cosmosContainer,
+                vectorEmbedding(),
+                vectorIndexSpec()
         );
         int recipeWithEmbedding = cosmosDbService.getRecipeCount(true);
         int recipeWithNoEmbedding = cosmosDbService.getRecipeCount(false);
@@ -55,6 +62,37 @@ public class Main {
         return cosmosDbService;
     }
 
+    private static CosmosVectorEmbedding vectorEmbedding() {
+        CosmosVectorEmbedding embedding = new CosmosVectorEmbedding();
+        embedding.setPath("/embedding");
+        embedding.setDataType(parse(CosmosVectorDataType.class, AppConfig.cosmosVectorDataType));
+        embedding.setEmbeddingDimensions(AppConfig.cosmosVectorDimensions);
+        embedding.setDistanceFunction(parse(CosmosVectorDistanceFunction.class, AppConfig.cosmosVectorDistanceFunction));
+        return embedding;
+    }
+
+    private static CosmosVectorIndexSpec vectorIndexSpec() {
+        CosmosVectorIndexType indexType = parse(CosmosVectorIndexType.class, AppConfig.cosmosVectorIndexType);
+        CosmosVectorIndexSpec indexSpec = new CosmosVectorIndexSpec();
+        indexSpec.setPath("/embedding");
+        indexSpec.setType(indexType.toString());
+        if (indexType != CosmosVectorIndexType.FLAT && AppConfig.cosmosVectorQuantizationBytes > 0) {
+            indexSpec.setQuantizationSizeInBytes(AppConfig.cosmosVectorQuantizationBytes);
+        }
+        if (indexType == CosmosVectorIndexType.DISK_ANN && AppConfig.cosmosVectorIndexingSearchListSize > 0) {
+            indexSpec.setIndexingSearchListSize(AppConfig.cosmosVectorIndexingSearchListSize);
+        }
+        return indexSpec;
+    }
+
+    // accepts the service name (diskANN) or the Java name (DISK_ANN) of a Cosmos DB enum constant
+    private static <T extends Enum<T>> T parse(Class<T> type, String value) {
+        return Arrays.stream(type.getEnumConstants())
+                .filter(constant -> constant.toString().equalsIgnoreCase(value) || constant.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown " + type.getSimpleName() + ": " + value));
+    }
+
     private static OpenAIService initOpenAIService() {
         return new OpenAIService(AppConfig.openAIEndpoint,
                 AppConfig.openAIKey,
@@ -112,7 +150,7 @@ public class Main {
     }
 
     private static void uploadAndVectorizeDocs(List<Recipe> recipes) throws JsonProcessingException {
-        Map<String, List<Double>> dictEmbeddings = new HashMap<>();
+        Map<String, float[]> dictEmbeddings = new HashMap<>();
         int recipeWithEmbedding = 0;
         int recipeWithNoEmbedding = 0;
         int recipeCount = 0;
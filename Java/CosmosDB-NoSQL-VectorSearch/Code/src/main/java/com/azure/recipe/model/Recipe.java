@@ -9,7 +9,7 @@ public class Recipe {
     public String id;
     public String name;
     public String description;
-    public List<Double> embedding;
+    public float[] embedding;
     public String cuisine;
     public String difficulty;
     public String prepTime;
@@ -15,7 +15,20 @@ public class CosmosDbService {
 
     CosmosAsyncContainer container;
 
-    public CosmosDbService(String endpoint, String key, String databaseName, String containerName) {
+    /**
+     * Creates the container with the given vector embedding and index if it doesn't exist. If it exists, checks that
+     * it was created with the same ones and that its stored vectors have the expected dimensions, since neither can
+     * be changed on an existing container.
+     *
+     * @param embedding  the embedding policy of {@code /embedding}; recipes are stored as floats, so only the float32
+     *                   and float16 data types can be used
+     * @param indexSpec  the vector index on {@code /embedding}
+     */
+    public CosmosDbService(String endpoint, String key, String databaseName, String containerName,
+                           CosmosVectorEmbedding embedding, CosmosVectorIndexSpec indexSpec) {
+        if (embedding.getDataType() != CosmosVectorDataType.FLOAT32 && embedding.getDataType() != CosmosVectorDataType.FLOAT16) {
+            throw new IllegalArgumentException("Unsupported vector data type for recipes: " + embedding.getDataType());
+        }
 
         CosmosAsyncClient cosmosAsyncClient = new CosmosClientBuilder()
                 .endpoint(endpoint)
@@ -29,11 +42,6 @@ public class CosmosDbService {
 
         //set vector embedding policy
         CosmosVectorEmbeddingPolicy cosmosVectorEmbeddingPolicy = new CosmosVectorEmbeddingPolicy();
-        CosmosVectorEmbedding embedding = new CosmosVectorEmbedding();
-        embedding.setPath("/embedding");
-        embedding.setDataType(CosmosVectorDataType.FLOAT32);
-        embedding.setDimensions(8L);
-        embedding.setDistanceFunction(CosmosVectorDistanceFunction.COSINE);
         cosmosVectorEmbeddingPolicy.setCosmosVectorEmbeddings(Arrays.asList(embedding));
         collectionDefinition.setVectorEmbeddingPolicy(cosmosVectorEmbeddingPolicy);
 
@@ -45,10 +53,7 @@ public class CosmosDbService {
         IncludedPath includedPath1 = new IncludedPath("/name/?");
         IncludedPath includedPath2 = new IncludedPath("/description/?");
         indexingPolicy.setIncludedPaths(ImmutableList.of(includedPath1, includedPath2));
-        CosmosVectorIndexSpec cosmosVectorIndexSpec = new CosmosVectorIndexSpec();
-        cosmosVectorIndexSpec.setPath("/embedding");
-        cosmosVectorIndexSpec.setType(CosmosVectorIndexType.DISK_ANN.toString());
-        indexingPolicy.setVectorIndexes(Arrays.asList(cosmosVectorIndexSpec));
+        indexingPolicy.setVectorIndexes(Arrays.asList(indexSpec));
         collectionDefinition.setIndexingPolicy(indexingPolicy);
 
         //create container
@@ -56,6 +61,45 @@ public class CosmosDbService {
         CosmosAsyncDatabase database = cosmosAsyncClient.getDatabase(databaseName);
         CosmosContainerResponse containerResponse = database.createContainerIfNotExists(collectionDefinition, throughputProperties).block();
         this.container = database.getContainer(containerResponse.getProperties().getId());
+        validateVectorPolicy(containerResponse.getProperties(), embedding, indexSpec);
+    }
+
+    private void validateVectorPolicy(CosmosContainerProperties existing, CosmosVectorEmbedding embedding,
+                                      CosmosVectorIndexSpec indexSpec) {
+        List<String> problems = new ArrayList<>();
+        CosmosVectorEmbedding existingEmbedding = existing.getVectorEmbeddingPolicy() == null ? null
+                : existing.getVectorEmbeddingPolicy().getVectorEmbeddings().stream()
+                .filter(e -> embedding.getPath().equals(e.getPath())).findFirst().orElse(null);
+        if (existingEmbedding == null) {
+            problems.add("no vector embedding policy for " + embedding.getPath());
+        } else if (!Objects.equals(existingEmbedding.getEmbeddingDimensions(), embedding.getEmbeddingDimensions())
+                || existingEmbedding.getDataType() != embedding.getDataType()
+                || existingEmbedding.getDistanceFunction() != embedding.getDistanceFunction()) {
+            problems.add("vector embedding policy is " + existingEmbedding.getEmbeddingDimensions() + " "
+                    + existingEmbedding.getDataType() + " " + existingEmbedding.getDistanceFunction()
+                    + ", expected " + embedding.getEmbeddingDimensions() + " " + embedding.getDataType() + " "
+                    + embedding.getDistanceFunction());
+        }
+        CosmosVectorIndexSpec existingIndex = existing.getIndexingPolicy().getVectorIndexes() == null ? null
+                : existing.getIndexingPolicy().getVectorIndexes().stream()
+                .filter(i -> indexSpec.getPath().equals(i.getPath())).findFirst().orElse(null);
+        if (existingIndex == null || !indexSpec.getType().equalsIgnoreCase(existingIndex.getType())) {
+            problems.add("vector index is " + (existingIndex == null ? "missing" : existingIndex.getType())
+                    + ", expected " + indexSpec.getType());
+        }
+
+        SqlQuerySpec sample = new SqlQuerySpec("SELECT TOP 10 c.id, ARRAY_LENGTH(c.embedding) AS dimensions FROM c WHERE IS_ARRAY(c.embedding)");
+        container.queryItems(sample, new CosmosQueryRequestOptions(), Map.class).toIterable().forEach(doc -> {
+            Object dimensions = doc.get("dimensions");
+            if (dimensions instanceof Number n && n.intValue() != embedding.getEmbeddingDimensions()) {
+                problems.add("recipe " + doc.get("id") + " has " + n + " dimensions");
+            }
+        });
+
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Container " + existing.getId() + " doesn't match the vector policy: "
+                    + String.join("; ", problems));
+        }
     }
 
     public int getRecipeCount(boolean withEmbedding) {
@@ -85,9 +129,9 @@ public class CosmosDbService {
         cosmosBulkOperationResponseFlux.blockLast();
     }
 
-    public Iterable<Recipe> vectorSearch(List<Double> vector){
+    public Iterable<Recipe> vectorSearch(float[] vector){
         ArrayList<SqlParameter> paramList = new ArrayList<SqlParameter>();
-        paramList.add(new SqlParameter("@embedding", vector.stream().map(aDouble -> (Float) (float) aDouble.doubleValue()).collect(Collectors.toList()).toArray()));
+        paramList.add(new SqlParameter("@embedding", vector));
         SqlQuerySpec querySpec = new SqlQuerySpec("SELECT TOP 3 c.name, c.description, c.embedding, c.cuisine, c.difficulty, c.prepTime, c.cookTime, c.totalTime, c.servings, c.ingredients, c.instructions,  VectorDistance(c.embedding,@embedding) AS SimilarityScore   FROM c ORDER BY VectorDistance(c.embedding,@embedding)", paramList);
         ArrayList<Recipe> filteredRecipes = (ArrayList<Recipe>) container.queryItems(querySpec, new CosmosQueryRequestOptions(), Recipe.class).collectList().block();
         return filteredRecipes;
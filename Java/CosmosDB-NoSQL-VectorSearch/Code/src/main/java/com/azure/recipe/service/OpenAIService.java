@@ -67,7 +67,7 @@ public class OpenAIService {
         }
     }
 
-    public List<Double> getEmbeddings(String query) {
+    public float[] getEmbeddings(String query) {
         try {
             EmbeddingsOptions options = new EmbeddingsOptions(List.of(query));
             options.setUser("");
@@ -76,7 +76,12 @@ public class OpenAIService {
 
             List<EmbeddingItem> embeddings = response.getData();
 
-            return embeddings.get(0).getEmbedding().stream().toList();
+            List<Double> embedding = embeddings.get(0).getEmbedding();
+            float[] vector = new float[embedding.size()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = embedding.get(i).floatValue();
+            }
+            return vector;
         } catch (Exception ex) {
             log.error("GetEmbeddingsAsync Exception:", ex);
             ex.printStackTrace();
@@ -10,7 +10,6 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Slf4j
 public class Main {
@@ -105,11 +104,7 @@ public class Main {
         var embeddingVector = openAIEmbeddingService.getEmbeddings(userQuery);
 
         log.info("Performing Vector Search..");
-        List<Float> embeddings = embeddingVector.stream()
-                .map(aDouble -> (Float) (float) aDouble.doubleValue())
-                .collect(Collectors.toList());
-
-        var ids = cogSearchService.singleVectorSearch(embeddings);
+        var ids = cogSearchService.singleVectorSearch(embeddingVector);
 
         log.info("Retrieving recipe(s) from Cosmos DB (RAG pattern)..");
         var retrivedDocs = cosmosDbService.getRecipes(ids);
@@ -136,7 +131,7 @@ public class Main {
     }
 
     private static void generateEmbeddings() throws JsonProcessingException {
-        Map<String, List<Double>> dictEmbeddings = new HashMap<>();
+        Map<String, float[]> dictEmbeddings = new HashMap<>();
         int recipeWithEmbedding = 0;
         int recipeWithNoEmbedding = 0;
         int recipeCount = 0;
@@ -14,6 +14,7 @@ import com.azure.search.documents.models.SearchQueryVector;
 import com.azure.search.documents.util.SearchPagedIterable;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -54,12 +55,18 @@ public class CognitiveSearchService {
         return false;
     }
 
-    public List<String> singleVectorSearch(List<Float> queryEmbeddings) {
+    public List<String> singleVectorSearch(float[] queryEmbeddings) {
+
+        // the search SDK only takes the query vector as a List<Float>, so it is boxed here for the request alone
+        List<Float> value = new ArrayList<>(queryEmbeddings.length);
+        for (float f : queryEmbeddings) {
+            value.add(f);
+        }
 
         var vector = new SearchQueryVector();
         vector.setKNearestNeighborsCount(3);
         vector.setFields("embedding");
-        vector.setValue(queryEmbeddings);
+        vector.setValue(value);
 
         var searchOptions = new SearchOptions();
         searchOptions.setVector(vector);
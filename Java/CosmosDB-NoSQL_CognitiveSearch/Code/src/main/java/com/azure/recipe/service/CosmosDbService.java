@@ -90,7 +90,7 @@ public class CosmosDbService {
     }
 
 
-    public void updateRecipesAsync(Map<String, List<Double>> dictInput) {
+    public void updateRecipesAsync(Map<String, float[]> dictInput) {
         List<CosmosItemOperation> itemOperations = dictInput
                 .entrySet()
                 .stream()